@@ -147,7 +147,18 @@ public class NodeToSVGConverter {
         double x = 0;
         double y = 0;
 
-        if (node instanceof Parent) {
+        if (node instanceof VectorConvertible) {
+            // drawn shapes, such as those on a canvas, are exported as the shapes they stand for
+            element = document.createElement("g");
+
+            for (Node vectorNode : ((VectorConvertible) node).toVectorNodes()) {
+                Element childElement = convertNodeToElement(vectorNode, document);
+
+                if (childElement != null) {
+                    element.appendChild(childElement);
+                }
+            }
+        } else if (node instanceof Parent) {
             element = document.createElement("g");
 
             for (Node child : ((Parent) node).getChildrenUnmodifiable()) {
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2014 CIRDLES.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cirdles.jfxutils;
+
+import java.util.List;
+import javafx.scene.Node;
+
+/**
+ * A node whose contents can't be converted to vectors as they are, such as a <code>Canvas</code>, but which can supply
+ * shapes drawing the same thing. {@link NodeToSVGConverter} exports those shapes in place of the node.
+ *
+ * @author John Zeringue <john.joseph.zeringue@gmail.com>
+ */
+public interface VectorConvertible {
+
+    /**
+     * Creates shapes that draw what this node shows, in this node's coordinates.
+     *
+     * @return the shapes, in drawing order
+     */
+    List<Node> toVectorNodes();
+}
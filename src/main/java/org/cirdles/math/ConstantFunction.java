@@ -15,6 +15,8 @@
  */
 package org.cirdles.math;
 
+import java.util.Arrays;
+
 /**
  * A constant function, that is, a function that returns the same value for all inputs.
  */
@@ -25,6 +27,11 @@ public class ConstantFunction extends Function {
      */
     public static final ConstantFunction ZERO_FUNCTION = new ConstantFunction(0);
 
+    /**
+     * The constant function that always returns one.
+     */
+    public static final ConstantFunction ONE_FUNCTION = new ConstantFunction(1);
+
     private final double value;
 
     /**
@@ -47,6 +54,20 @@ public class ConstantFunction extends Function {
         return value;
     }
 
+    @Override
+    public void of(double[] xs, double[] dest) {
+        Arrays.fill(dest, 0, xs.length, value);
+    }
+
+    /**
+     * Returns the value of this function.
+     *
+     * @return the value of this function
+     */
+    public double value() {
+        return value;
+    }
+
     /**
      * Returns a function representing the first derivative of this function. For constant functions, this is always the
      * zero function.
@@ -58,4 +79,21 @@ public class ConstantFunction extends Function {
         return ZERO_FUNCTION;
     }
 
+    /**
+     * Returns whether another object is a constant function with the same value, so that equal constants in an
+     * expression are recognized as the same subexpression.
+     *
+     * @param object the other object
+     * @return whether the other object is an equal constant function
+     */
+    @Override
+    public boolean equals(Object object) {
+        return object instanceof ConstantFunction
+                && Double.compare(value, ((ConstantFunction) object).value) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Double.hashCode(value);
+    }
 }
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2014 CIRDLES.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cirdles.math;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A plan for evaluating one or more functions at many points together. The expression trees of the functions are
+ * flattened into a list of their distinct subexpressions, operands before the nodes that use them, so that a
+ * subexpression shared within or between the functions, such as <code>exp(LAMBDA * t)</code> in a curve and its
+ * derivative, is computed once per point. Each subexpression is computed for every point before the next, which keeps
+ * the inner loops free of virtual calls.
+ * <p>
+ * Functions that aren't built from {@link Expression} nodes are treated as leaves and evaluated with their own
+ * {@link Function#of(double[], double[])}.
+ */
+class Evaluation {
+
+    private final Function[] nodes;
+    private final int[][] operandSlots;
+    private final int[] rootSlots;
+
+    Evaluation(Function... roots) {
+        Map<Function, Integer> slots = new HashMap<>();
+        List<Function> nodeList = new ArrayList<>();
+        List<int[]> operandSlotList = new ArrayList<>();
+
+        rootSlots = new int[roots.length];
+        for (int r = 0; r < roots.length; r++) {
+            rootSlots[r] = add(roots[r], slots, nodeList, operandSlotList);
+        }
+
+        nodes = nodeList.toArray(new Function[nodeList.size()]);
+        operandSlots = operandSlotList.toArray(new int[operandSlotList.size()][]);
+    }
+
+    private static int add(Function node, Map<Function, Integer> slots, List<Function> nodeList,
+                           List<int[]> operandSlotList) {
+        Integer slot = slots.get(node);
+        if (slot != null) {
+            return slot;
+        }
+
+        int[] operands = new int[0];
+        if (node instanceof Expression) {
+            Function[] operandNodes = ((Expression) node).operands();
+            operands = new int[operandNodes.length];
+
+            for (int i = 0; i < operandNodes.length; i++) {
+                operands[i] = add(operandNodes[i], slots, nodeList, operandSlotList);
+            }
+        }
+
+        slots.put(node, nodeList.size());
+        nodeList.add(node);
+        operandSlotList.add(operands);
+
+        return nodeList.size() - 1;
+    }
+
+    /**
+     * Evaluates the functions at many points.
+     *
+     * @param xs the points
+     * @param dests an array per function, in the order the functions were given, to write its values to; each must be
+     * at least as long as <code>xs</code>
+     */
+    void evaluate(double[] xs, double[]... dests) {
+        int count = xs.length;
+        double[][] values = new double[nodes.length][];
+
+        for (int n = 0; n < nodes.length; n++) {
+            values[n] = new double[count];
+
+            if (operandSlots[n].length == 0) {
+                nodes[n].of(xs, values[n]);
+            } else {
+                double[][] operandValues = new double[operandSlots[n].length][];
+                for (int i = 0; i < operandValues.length; i++) {
+                    operandValues[i] = values[operandSlots[n][i]];
+                }
+
+                ((Expression) nodes[n]).apply(operandValues, values[n], count);
+            }
+        }
+
+        for (int r = 0; r < rootSlots.length; r++) {
+            System.arraycopy(values[rootSlots[r]], 0, dests[r], 0, count);
+        }
+    }
+}
@@ -0,0 +1,357 @@
+/*
+ * Copyright 2014 CIRDLES.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cirdles.math;
+
+import java.util.Arrays;
+import static org.cirdles.math.ConstantFunction.*;
+
+/**
+ * A node of an expression tree built by the arithmetic of {@link Function}. Nodes are immutable and compare equal when
+ * they have the same structure, so that an expression can be evaluated with each distinct subexpression computed
+ * once; see {@link Evaluation}. A node derives its derivative once and keeps it.
+ * <p>
+ * The factory methods fold constants and drop additions of zero and multiplications by one as they build nodes, which
+ * keeps derivatives from growing with terms that can only ever be zero.
+ */
+abstract class Expression extends Function {
+
+    private final Function[] operands;
+    private final int hash;
+
+    private volatile Function prime;
+    private volatile Evaluation evaluation;
+
+    Expression(Function... operands) {
+        this.operands = operands;
+        this.hash = 31 * getClass().hashCode() + Arrays.hashCode(operands);
+    }
+
+    static Function sum(Function left, Function right) {
+        if (left instanceof ConstantFunction && right instanceof ConstantFunction) {
+            return new ConstantFunction(valueOf(left) + valueOf(right));
+        } else if (ZERO_FUNCTION.equals(left)) {
+            return right;
+        } else if (ZERO_FUNCTION.equals(right)) {
+            return left;
+        }
+
+        return new Sum(left, right);
+    }
+
+    static Function difference(Function left, Function right) {
+        if (left instanceof ConstantFunction && right instanceof ConstantFunction) {
+            return new ConstantFunction(valueOf(left) - valueOf(right));
+        } else if (ZERO_FUNCTION.equals(right)) {
+            return left;
+        } else if (ZERO_FUNCTION.equals(left)) {
+            return product(new ConstantFunction(-1), right);
+        }
+
+        return new Difference(left, right);
+    }
+
+    static Function product(Function left, Function right) {
+        // constants are kept on the left so that they can be gathered together
+        if (right instanceof ConstantFunction && !(left instanceof ConstantFunction)) {
+            return product(right, left);
+        }
+
+        if (left instanceof ConstantFunction) {
+            double value = valueOf(left);
+
+            if (right instanceof ConstantFunction) {
+                return new ConstantFunction(value * valueOf(right));
+            } else if (value == 0) {
+                return ZERO_FUNCTION;
+            } else if (value == 1) {
+                return right;
+            } else if (right instanceof Product && ((Product) right).left() instanceof ConstantFunction) {
+                Product product = (Product) right;
+                return product(new ConstantFunction(value * valueOf(product.left())), product.right());
+            }
+        }
+
+        return new Product(left, right);
+    }
+
+    static Function quotient(Function left, Function right) {
+        if (left instanceof ConstantFunction && right instanceof ConstantFunction) {
+            return new ConstantFunction(valueOf(left) / valueOf(right));
+        } else if (ZERO_FUNCTION.equals(left)) {
+            return ZERO_FUNCTION;
+        } else if (ONE_FUNCTION.equals(right)) {
+            return left;
+        }
+
+        return new Quotient(left, right);
+    }
+
+    static Function exp(Function argument) {
+        if (argument instanceof ConstantFunction) {
+            return new ConstantFunction(Math.exp(valueOf(argument)));
+        }
+
+        return new Exp(argument);
+    }
+
+    static Function expm1(Function argument) {
+        if (argument instanceof ConstantFunction) {
+            return new ConstantFunction(Math.expm1(valueOf(argument)));
+        }
+
+        return new Expm1(argument);
+    }
+
+    private static double valueOf(Function constant) {
+        return ((ConstantFunction) constant).value();
+    }
+
+    final Function[] operands() {
+        return operands;
+    }
+
+    final Function left() {
+        return operands[0];
+    }
+
+    final Function right() {
+        return operands[1];
+    }
+
+    /**
+     * Computes the value of this node at many points from the values of its operands at the same points.
+     *
+     * @param operandValues the values of each operand, in order
+     * @param dest the array to write the values to
+     * @param count the number of points
+     */
+    abstract void apply(double[][] operandValues, double[] dest, int count);
+
+    /**
+     * Builds the derivative of this node, which {@link #prime()} then keeps.
+     *
+     * @return the derivative
+     */
+    abstract Function derive();
+
+    @Override
+    public final Function prime() {
+        Function result = prime;
+        if (result == null) {
+            prime = result = derive();
+        }
+
+        return result;
+    }
+
+    /**
+     * Evaluates this expression at many points, computing each distinct subexpression once per point and a whole array
+     * at a time.
+     *
+     * @param xs the points
+     * @param dest the array to write the values to, at least as long as <code>xs</code>
+     */
+    @Override
+    public void of(double[] xs, double[] dest) {
+        Evaluation result = evaluation;
+        if (result == null) {
+            evaluation = result = new Evaluation(this);
+        }
+
+        result.evaluate(xs, dest);
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        if (this == object) {
+            return true;
+        } else if (object == null || object.getClass() != getClass() || object.hashCode() != hash) {
+            return false;
+        }
+
+        return Arrays.equals(operands, ((Expression) object).operands);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    private static class Sum extends Expression {
+
+        Sum(Function left, Function right) {
+            super(left, right);
+        }
+
+        @Override
+        public double of(double x) {
+            return left().of(x) + right().of(x);
+        }
+
+        @Override
+        void apply(double[][] operandValues, double[] dest, int count) {
+            double[] left = operandValues[0];
+            double[] right = operandValues[1];
+
+            for (int i = 0; i < count; i++) {
+                dest[i] = left[i] + right[i];
+            }
+        }
+
+        @Override
+        Function derive() {
+            return sum(left().prime(), right().prime());
+        }
+    }
+
+    private static class Difference extends Expression {
+
+        Difference(Function left, Function right) {
+            super(left, right);
+        }
+
+        @Override
+        public double of(double x) {
+            return left().of(x) - right().of(x);
+        }
+
+        @Override
+        void apply(double[][] operandValues, double[] dest, int count) {
+            double[] left = operandValues[0];
+            double[] right = operandValues[1];
+
+            for (int i = 0; i < count; i++) {
+                dest[i] = left[i] - right[i];
+            }
+        }
+
+        @Override
+        Function derive() {
+            return difference(left().prime(), right().prime());
+        }
+    }
+
+    private static class Product extends Expression {
+
+        Product(Function left, Function right) {
+            super(left, right);
+        }
+
+        @Override
+        public double of(double x) {
+            double left = left().of(x);
+
+            // a square evaluates its operand once
+            return left * (right() == left() ? left : right().of(x));
+        }
+
+        @Override
+        void apply(double[][] operandValues, double[] dest, int count) {
+            double[] left = operandValues[0];
+            double[] right = operandValues[1];
+
+            for (int i = 0; i < count; i++) {
+                dest[i] = left[i] * right[i];
+            }
+        }
+
+        @Override
+        Function derive() {
+            return sum(product(left().prime(), right()), product(left(), right().prime()));
+        }
+    }
+
+    private static class Quotient extends Expression {
+
+        Quotient(Function left, Function right) {
+            super(left, right);
+        }
+
+        @Override
+        public double of(double x) {
+            return left().of(x) / right().of(x);
+        }
+
+        @Override
+        void apply(double[][] operandValues, double[] dest, int count) {
+            double[] left = operandValues[0];
+            double[] right = operandValues[1];
+
+            for (int i = 0; i < count; i++) {
+                dest[i] = left[i] / right[i];
+            }
+        }
+
+        @Override
+        Function derive() {
+            return quotient(difference(product(left().prime(), right()), product(left(), right().prime())),
+                            product(right(), right()));
+        }
+    }
+
+    private static class Exp extends Expression {
+
+        Exp(Function argument) {
+            super(argument);
+        }
+
+        @Override
+        public double of(double x) {
+            return Math.exp(left().of(x));
+        }
+
+        @Override
+        void apply(double[][] operandValues, double[] dest, int count) {
+            double[] argument = operandValues[0];
+
+            for (int i = 0; i < count; i++) {
+                dest[i] = Math.exp(argument[i]);
+            }
+        }
+
+        @Override
+        Function derive() {
+            // the derivative shares this node
+            return product(left().prime(), this);
+        }
+    }
+
+    private static class Expm1 extends Expression {
+
+        Expm1(Function argument) {
+            super(argument);
+        }
+
+        @Override
+        public double of(double x) {
+            return Math.expm1(left().of(x));
+        }
+
+        @Override
+        void apply(double[][] operandValues, double[] dest, int count) {
+            double[] argument = operandValues[0];
+
+            for (int i = 0; i < count; i++) {
+                dest[i] = Math.expm1(argument[i]);
+            }
+        }
+
+        @Override
+        Function derive() {
+            return product(left().prime(), exp(left()));
+        }
+    }
+}
@@ -15,8 +15,6 @@
  */
 package org.cirdles.math;
 
-import static java.lang.Math.*; // abs, random
-
 /**
  * A generic function from R to R.
  */
@@ -30,6 +28,20 @@ public abstract class Function {
      */
     public abstract double of(double x);
 
+    /**
+     * Returns the values of this function at many points. Functions built with the arithmetic below evaluate a whole
+     * array at once, computing each distinct subexpression once per point; other functions are evaluated one point at a
+     * time.
+     *
+     * @param xs values in the domain of the function
+     * @param dest the array to write the values to, at least as long as <code>xs</code>
+     */
+    public void of(double[] xs, double[] dest) {
+        for (int i = 0; i < xs.length; i++) {
+            dest[i] = of(xs[i]);
+        }
+    }
+
     /**
      * Returns another function representing the first derivative of the function.
      *
@@ -44,23 +56,15 @@ public abstract class Function {
     /**
      * Returns the function resulting from adding another function to this one. Both the value and derivative of the new
      * function are formed by adding the values and derivatives of the operands, respectively.
+     * <p>
+     * This and the other arithmetic methods build an expression tree whose nodes keep their derivatives once found.
+     * Constant operands are folded together, and adding zero or multiplying by one returns the other operand.
      *
      * @param function the other function
      * @return a new function resulting from the addition of this function and the other
      */
     public Function plus(Function function) {
-        return new Function() {
-
-            @Override
-            public double of(double x) {
-                return Function.this.of(x) + function.of(x);
-            }
-
-            @Override
-            public Function prime() throws UnsupportedOperationException {
-                return Function.this.prime().plus(function.prime());
-            }
-        };
+        return Expression.sum(this, function);
     }
 
     /**
@@ -71,57 +75,69 @@ public abstract class Function {
      * @return a new function resulting from subtracting the other function from this one
      */
     public Function minus(Function function) {
-        return new Function() {
+        return Expression.difference(this, function);
+    }
 
-            @Override
-            public double of(double x) {
-                return Function.this.of(x) - function.of(x);
-            }
+    /**
+     * Returns the function resulting from multiplying this function by another. Its derivative follows the product
+     * rule.
+     *
+     * @param function the other function
+     * @return a new function resulting from multiplying this function by the other
+     */
+    public Function times(Function function) {
+        return Expression.product(this, function);
+    }
 
-            @Override
-            public Function prime() throws UnsupportedOperationException {
-                return Function.this.prime().minus(function.prime());
-            }
-        };
+    /**
+     * Returns the function resulting from dividing this function by another. Its derivative follows the quotient rule.
+     *
+     * @param function the other function
+     * @return a new function resulting from dividing this function by the other
+     */
+    public Function dividedBy(Function function) {
+        return Expression.quotient(this, function);
     }
 
     /**
-     * Finds a zero for this function using the <a href="http://en.wikipedia.org/wiki/Newton's_method">Newton-Raphson
-     * method</a> to a fixed precision. If the derivative of this function becomes too small to safely divide, the
-     * algorithm will terminate early.
+     * Returns the exponential of this function, <code>e^f(x)</code>.
+     *
+     * @return a new function resulting from raising e to this function
+     */
+    public Function exp() {
+        return Expression.exp(this);
+    }
+
+    /**
+     * Returns the exponential of this function minus one, <code>e^f(x) - 1</code>, which is accurate where the
+     * function is close to zero; see {@link Math#expm1(double)}.
+     *
+     * @return a new function resulting from raising e to this function and subtracting one
+     */
+    public Function expm1() {
+        return Expression.expm1(this);
+    }
+
+    /**
+     * Finds a zero for this function near one to a fixed precision, using a {@link RootFinder}.
      *
      * @return a zero for this function
+     * @throws ArithmeticException if the function doesn't change sign
      */
     public double zero() {
         return zero(1e-10);
     }
 
     /**
-     * Finds a zero for this function using the <a href="http://en.wikipedia.org/wiki/Newton's_method">Newton-Raphson
-     * method</a> to the given precision. If the derivative of this function becomes too small to safely divide, the
-     * algorithm will terminate early.
+     * Finds a zero for this function near one to the given relative precision, using a {@link RootFinder}. The search
+     * widens an interval around one until the function changes sign over it, then narrows it down with Newton steps
+     * kept in check by bisection, so unlike plain Newton-Raphson it always finds a zero if the interval does.
      *
      * @param precision the precision to be used for finding a zero
      * @return a zero of this function
+     * @throws ArithmeticException if the function doesn't change sign
      */
     public double zero(double precision) {
-        double epsilon = 1e-14;
-        double x0, x1 = 1;
-
-        while (this.prime().of(x1) == 0) {
-            x1 += random();
-        }
-
-        do {
-            x0 = x1;
-
-            if (abs(this.prime().of(x0)) < epsilon) {
-                break;
-            }
-
-            x1 = x0 - this.of(x0) / this.prime().of(x0);
-        } while (abs(x1 - x0) / abs(x1) > precision);
-
-        return x1;
+        return new RootFinder(precision, 0, RootFinder.DEFAULT_MAX_ITERATIONS).findZero(this, 1);
     }
 }
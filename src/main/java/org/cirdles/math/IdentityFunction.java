@@ -0,0 +1,58 @@
+/*
+ * Copyright 2014 CIRDLES.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cirdles.math;
+
+/**
+ * The identity function, that is, a function that returns its input. It's the variable that expressions built with the
+ * arithmetic of {@link Function} are written in.
+ */
+public class IdentityFunction extends Function {
+
+    /**
+     * The identity function.
+     */
+    public static final IdentityFunction IDENTITY_FUNCTION = new IdentityFunction();
+
+    private IdentityFunction() {
+    }
+
+    /**
+     * Returns the value of this function at x, which for the identity function is x itself.
+     *
+     * @param x the x
+     * @return x
+     */
+    @Override
+    public double of(double x) {
+        return x;
+    }
+
+    @Override
+    public void of(double[] xs, double[] dest) {
+        System.arraycopy(xs, 0, dest, 0, xs.length);
+    }
+
+    /**
+     * Returns a function representing the first derivative of this function, which for the identity function is the
+     * constant function one.
+     *
+     * @return the constant function one
+     */
+    @Override
+    public Function prime() {
+        return ConstantFunction.ONE_FUNCTION;
+    }
+}
@@ -24,6 +24,9 @@ import static org.cirdles.math.ConstantFunction.*;
  */
 public class ParametricCurve2D extends ParametricCurve3D {
 
+    private volatile ParametricCurve2D prime;
+    private volatile Evaluation evaluation;
+
     public ParametricCurve2D(Function x, Function y) {
         super(x, y, ZERO_FUNCTION);
     }
@@ -32,9 +35,50 @@ public class ParametricCurve2D extends ParametricCurve3D {
     public Vector2D of(double t) {
         return new Vector2D(x().of(t), y().of(t));
     }
-    
+
+    /**
+     * Evaluates this curve at many values of t, writing the coordinates into arrays rather than allocating a vector
+     * per point. The two coordinates are evaluated together, so a subexpression they share is computed once per point.
+     *
+     * @param ts the values of t
+     * @param xs the array to write the x coordinates to, at least as long as <code>ts</code>
+     * @param ys the array to write the y coordinates to, at least as long as <code>ts</code>
+     */
+    public void evaluate(double[] ts, double[] xs, double[] ys) {
+        Evaluation result = evaluation;
+        if (result == null) {
+            evaluation = result = new Evaluation(x(), y());
+        }
+
+        result.evaluate(ts, xs, ys);
+    }
+
+    /**
+     * Evaluates the derivative of this curve at many values of t, in the same way as
+     * {@link #evaluate(double[], double[], double[])}.
+     *
+     * @param ts the values of t
+     * @param xs the array to write dx/dt to, at least as long as <code>ts</code>
+     * @param ys the array to write dy/dt to, at least as long as <code>ts</code>
+     * @throws UnsupportedOperationException if either coordinate has no derivative
+     */
+    public void evaluatePrime(double[] ts, double[] xs, double[] ys) throws UnsupportedOperationException {
+        prime().evaluate(ts, xs, ys);
+    }
+
+    /**
+     * Returns the derivative of this curve, which is built the first time it's asked for and then kept.
+     *
+     * @return the derivative
+     * @throws UnsupportedOperationException if either coordinate has no derivative
+     */
     @Override
     public ParametricCurve2D prime() throws UnsupportedOperationException {
-        return new ParametricCurve2D(x().prime(), y().prime());
+        ParametricCurve2D result = prime;
+        if (result == null) {
+            prime = result = new ParametricCurve2D(x().prime(), y().prime());
+        }
+
+        return result;
     }
 }
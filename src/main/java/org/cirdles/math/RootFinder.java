@@ -0,0 +1,243 @@
+/*
+ * Copyright 2014 CIRDLES.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cirdles.math;
+
+import static java.lang.Math.*; // abs, max, min
+
+/**
+ * Finds zeros of functions from R to R within a bracket, that is, an interval over which the function changes sign.
+ * Each step is a Newton step when the function has a derivative and a secant step through the ends of the bracket when
+ * it doesn't, and falls back to bisection whenever that step would leave the bracket or fail to shrink it quickly
+ * enough. The bracket shrinks on every step, so the search always converges, and it's deterministic.
+ * <p>
+ * A root finder counts the iterations and evaluations of its last search, and so shouldn't be shared between threads.
+ */
+public class RootFinder {
+
+    /**
+     * The default largest number of iterations in a search.
+     */
+    public static final int DEFAULT_MAX_ITERATIONS = 100;
+
+    // the largest number of times a bracket is doubled in size while looking for a sign change
+    private static final int MAX_EXPANSIONS = 1100;
+
+    private final double relativeTolerance;
+    private final double absoluteTolerance;
+    private final int maxIterations;
+
+    private int iterations;
+    private int evaluations;
+
+    /**
+     * Creates a root finder that finds zeros to a relative precision of 1e-10.
+     */
+    public RootFinder() {
+        this(1e-10, 0, DEFAULT_MAX_ITERATIONS);
+    }
+
+    /**
+     * Creates a root finder that stops once a step is smaller than
+     * <code>absoluteTolerance + relativeTolerance * |x|</code>.
+     *
+     * @param relativeTolerance the tolerance relative to the size of the zero
+     * @param absoluteTolerance the absolute tolerance, which matters for zeros near zero
+     * @param maxIterations the largest number of iterations in a search
+     */
+    public RootFinder(double relativeTolerance, double absoluteTolerance, int maxIterations) {
+        this.relativeTolerance = relativeTolerance;
+        this.absoluteTolerance = absoluteTolerance;
+        this.maxIterations = maxIterations;
+    }
+
+    /**
+     * Finds a zero of a function near a guess, by doubling an interval around the guess until the function changes
+     * sign over it and then searching that bracket. A sign change that turns out to be a pole, where the function ends
+     * up larger than at the ends of the bracket, is passed over.
+     *
+     * @param function the function
+     * @param guess where to start looking
+     * @return a zero of the function
+     * @throws ArithmeticException if the function never changes sign
+     */
+    public double findZero(Function function, double guess) {
+        iterations = 0;
+        evaluations = 0;
+
+        double valueAtGuess = evaluate(function, guess);
+        if (valueAtGuess == 0) {
+            return guess;
+        }
+
+        double step = max(abs(guess), 1);
+        double lower = guess;
+        double upper = guess;
+        double valueAtLower = valueAtGuess;
+        double valueAtUpper = valueAtGuess;
+
+        for (int i = 0; i < MAX_EXPANSIONS && !Double.isInfinite(step); i++) {
+            double nextUpper = guess + step;
+            double valueAtNextUpper = evaluate(function, nextUpper);
+            if (changesSign(valueAtUpper, valueAtNextUpper)) {
+                double zero = search(function, derivativeOf(function), upper, nextUpper);
+                if (abs(evaluate(function, zero)) <= min(abs(valueAtUpper), abs(valueAtNextUpper))) {
+                    return zero;
+                }
+            }
+
+            double nextLower = guess - step;
+            double valueAtNextLower = evaluate(function, nextLower);
+            if (changesSign(valueAtLower, valueAtNextLower)) {
+                double zero = search(function, derivativeOf(function), nextLower, lower);
+                if (abs(evaluate(function, zero)) <= min(abs(valueAtLower), abs(valueAtNextLower))) {
+                    return zero;
+                }
+            }
+
+            upper = nextUpper;
+            lower = nextLower;
+            valueAtUpper = valueAtNextUpper;
+            valueAtLower = valueAtNextLower;
+            step *= 2;
+        }
+
+        throw new ArithmeticException("The function doesn't change sign around " + guess + ".");
+    }
+
+    /**
+     * Finds a zero of a function within a bracket.
+     *
+     * @param function the function
+     * @param lower one end of the bracket
+     * @param upper the other end of the bracket
+     * @return a zero of the function between the ends
+     * @throws IllegalArgumentException if the function has the same sign at both ends
+     */
+    public double findZero(Function function, double lower, double upper) {
+        return findZero(function, derivativeOf(function), lower, upper);
+    }
+
+    /**
+     * Finds a zero of a function within a bracket, using a derivative that has already been worked out.
+     *
+     * @param function the function
+     * @param derivative the function's derivative, or <code>null</code> to use secant steps
+     * @param lower one end of the bracket
+     * @param upper the other end of the bracket
+     * @return a zero of the function between the ends
+     * @throws IllegalArgumentException if the function has the same sign at both ends
+     */
+    public double findZero(Function function, Function derivative, double lower, double upper) {
+        iterations = 0;
+        evaluations = 0;
+
+        return search(function, derivative, lower, upper);
+    }
+
+    /**
+     * Returns the number of steps the last search took, not counting the search for a bracket.
+     *
+     * @return the number of iterations
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Returns the number of times the last search evaluated the function or its derivative.
+     *
+     * @return the number of evaluations
+     */
+    public int getEvaluations() {
+        return evaluations;
+    }
+
+    private double search(Function function, Function derivative, double lower, double upper) {
+        double valueAtLower = evaluate(function, lower);
+        double valueAtUpper = evaluate(function, upper);
+
+        if (valueAtLower == 0) {
+            return lower;
+        } else if (valueAtUpper == 0) {
+            return upper;
+        } else if (!changesSign(valueAtLower, valueAtUpper)) {
+            throw new IllegalArgumentException(
+                    "The function doesn't change sign between " + lower + " and " + upper + ".");
+        }
+
+        // keep the function negative at a and positive at b
+        double a = valueAtLower < 0 ? lower : upper;
+        double b = valueAtLower < 0 ? upper : lower;
+        double valueAtA = valueAtLower < 0 ? valueAtLower : valueAtUpper;
+        double valueAtB = valueAtLower < 0 ? valueAtUpper : valueAtLower;
+
+        double x = (a + b) / 2;
+        double value = evaluate(function, x);
+        double stepBeforeLast = abs(b - a);
+        double step = stepBeforeLast;
+
+        for (int i = 0; value != 0 && i < maxIterations; i++) {
+            iterations++;
+
+            if (value < 0) {
+                a = x;
+                valueAtA = value;
+            } else {
+                b = x;
+                valueAtB = value;
+            }
+
+            double slope = derivative != null ? evaluate(derivative, x) : (valueAtB - valueAtA) / (b - a);
+            double next = x - value / slope;
+
+            // bisect if the step leaves the bracket or isn't at least halving the step before last
+            if (!(next > min(a, b) && next < max(a, b)) || abs(2 * value) > abs(stepBeforeLast * slope)) {
+                stepBeforeLast = step;
+                next = (a + b) / 2;
+            } else {
+                stepBeforeLast = step;
+            }
+
+            step = abs(next - x);
+            x = next;
+
+            if (step <= absoluteTolerance + relativeTolerance * abs(x) || x == a || x == b) {
+                break;
+            }
+
+            value = evaluate(function, x);
+        }
+
+        return x;
+    }
+
+    private double evaluate(Function function, double x) {
+        evaluations++;
+        return function.of(x);
+    }
+
+    private static Function derivativeOf(Function function) {
+        try {
+            return function.prime();
+        } catch (UnsupportedOperationException ex) {
+            return null;
+        }
+    }
+
+    private static boolean changesSign(double a, double b) {
+        return a < 0 && b > 0 || a > 0 && b < 0;
+    }
+}
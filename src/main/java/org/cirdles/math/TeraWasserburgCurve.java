@@ -15,8 +15,9 @@
  */
 package org.cirdles.math;
 
-import static java.lang.Math.*;            // exp, expm1, pow
-import static org.cirdles.math.Constant.*; // LAMBDA_235, LAMBDA_238, R238_235S
+import static java.lang.Math.*;                    // exp, expm1
+import static org.cirdles.math.Constant.*;         // LAMBDA_235, LAMBDA_238, R238_235S
+import static org.cirdles.math.IdentityFunction.*; // IDENTITY_FUNCTION
 
 /**
  *
@@ -24,51 +25,53 @@ import static org.cirdles.math.Constant.*; // LAMBDA_235, LAMBDA_238, R238_235S
  */
 public class TeraWasserburgCurve extends ParametricCurve2D {
 
-    private static Function X_COMPONENT = new Function() {
+    private static final Function EXPM1_238
+            = new ConstantFunction(LAMBDA_238.value()).times(IDENTITY_FUNCTION).expm1();
 
-        @Override
-        public double of(double t) {
-            return 1 / expm1(LAMBDA_238.value() * t);
-        }
+    private static final Function EXPM1_235
+            = new ConstantFunction(LAMBDA_235.value()).times(IDENTITY_FUNCTION).expm1();
 
-        @Override
-        public Function prime() throws UnsupportedOperationException {
-            return new Function() {
+    // both components divide by e^(LAMBDA_238 t) - 1, which evaluating them together computes once
+    private static final Function X_COMPONENT = ConstantFunction.ONE_FUNCTION.dividedBy(EXPM1_238);
 
-                @Override
-                public double of(double t) {
-                    return -LAMBDA_238.value() * exp(LAMBDA_238.value() * t)
-                            / pow(expm1(LAMBDA_238.value() * t), 2);
-                }
-            };
-        }
-    };
+    private static final Function Y_COMPONENT
+            = EXPM1_235.dividedBy(new ConstantFunction(R238_235S.value()).times(EXPM1_238));
 
-    private static Function Y_COMPONENT = new Function() {
+    public TeraWasserburgCurve() {
+        super(X_COMPONENT, Y_COMPONENT);
+    }
 
-        @Override
-        public double of(double t) {
-            return expm1(LAMBDA_235.value() * t)
-                    / (R238_235S.value() * expm1(LAMBDA_238.value() * t));
-        }
+    @Override
+    public void evaluate(double[] ts, double[] xs, double[] ys) {
+        double lambda235 = LAMBDA_235.value();
+        double lambda238 = LAMBDA_238.value();
+        double ratio = R238_235S.value();
 
-        @Override
-        public Function prime() throws UnsupportedOperationException {
-            return new Function() {
+        for (int i = 0; i < ts.length; i++) {
+            double expm1238 = expm1(lambda238 * ts[i]);
 
-                @Override
-                public double of(double t) {
-                    return -(LAMBDA_235.value() * exp(LAMBDA_235.value() * t)
-                            - exp(LAMBDA_238.value() * t)
-                            * (LAMBDA_238.value() + LAMBDA_235.value() * exp(LAMBDA_235.value() * t)
-                            - LAMBDA_238.value() * exp(LAMBDA_235.value() * t)))
-                            / (R238_235S.value() * pow(expm1(LAMBDA_238.value() * t), 2));
-                }
-            };
+            xs[i] = 1 / expm1238;
+            ys[i] = expm1(lambda235 * ts[i]) / (ratio * expm1238);
         }
-    };
+    }
 
-    public TeraWasserburgCurve() {
-        super(X_COMPONENT, Y_COMPONENT);
+    @Override
+    public void evaluatePrime(double[] ts, double[] xs, double[] ys) {
+        double lambda235 = LAMBDA_235.value();
+        double lambda238 = LAMBDA_238.value();
+        double ratio = R238_235S.value();
+
+        for (int i = 0; i < ts.length; i++) {
+            double exp235 = exp(lambda235 * ts[i]);
+            double exp238 = exp(lambda238 * ts[i]);
+            double expm1235 = expm1(lambda235 * ts[i]);
+            double expm1238 = expm1(lambda238 * ts[i]);
+            double denominator = ratio * expm1238;
+
+            // the quotient rule, as the derivatives of the components are built
+            xs[i] = -lambda238 * exp238 / (expm1238 * expm1238);
+            ys[i] = (lambda235 * exp235 * denominator - expm1235 * (ratio * lambda238) * exp238)
+                    / (denominator * denominator);
+        }
     }
 }
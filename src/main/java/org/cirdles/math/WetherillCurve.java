@@ -15,8 +15,9 @@
  */
 package org.cirdles.math;
 
-import static java.lang.Math.*;            // exp, expm1, pow
-import static org.cirdles.math.Constant.*; // LAMBDA_235, LAMBDA_238
+import static java.lang.Math.*;                    // exp, expm1
+import static org.cirdles.math.Constant.*;         // LAMBDA_235, LAMBDA_238
+import static org.cirdles.math.IdentityFunction.*; // IDENTITY_FUNCTION
 
 /**
  *
@@ -24,45 +25,36 @@ import static org.cirdles.math.Constant.*; // LAMBDA_235, LAMBDA_238
  */
 public class WetherillCurve extends ParametricCurve2D {
     
-    private static Function X_COMPONENT = new Function() { // x(t)
+    // e^(LAMBDA t) - 1 for each decay constant; the derivatives share e^(LAMBDA t)
+    private static final Function X_COMPONENT
+            = new ConstantFunction(LAMBDA_235.value()).times(IDENTITY_FUNCTION).expm1(); // x(t)
 
-            @Override
-            public double of(double t) {
-                return expm1(LAMBDA_235.value() * t);
-            }
+    private static final Function Y_COMPONENT
+            = new ConstantFunction(LAMBDA_238.value()).times(IDENTITY_FUNCTION).expm1(); // y(t)
 
-            @Override
-            public Function prime() {
-                return new Function() {
-
-                    @Override
-                    public double of(double t) {
-                        return LAMBDA_235.value() * exp(LAMBDA_235.value() * t);
-                    }
-                };
-            }
-        };
-    
-    private static Function Y_COMPONENT = new Function() { // y(t)
+    public WetherillCurve() {
+        super(X_COMPONENT, Y_COMPONENT);
+    }
 
-            @Override
-            public double of(double t) {
-                return expm1(LAMBDA_238.value() * t);
-            }
+    @Override
+    public void evaluate(double[] ts, double[] xs, double[] ys) {
+        double lambda235 = LAMBDA_235.value();
+        double lambda238 = LAMBDA_238.value();
 
-            @Override
-            public Function prime() {
-                return new Function() {
+        for (int i = 0; i < ts.length; i++) {
+            xs[i] = expm1(lambda235 * ts[i]);
+            ys[i] = expm1(lambda238 * ts[i]);
+        }
+    }
 
-                    @Override
-                    public double of(double t) {
-                        return LAMBDA_238.value() * exp(LAMBDA_238.value() * t);
-                    }
-                };
-            }
-        };
+    @Override
+    public void evaluatePrime(double[] ts, double[] xs, double[] ys) {
+        double lambda235 = LAMBDA_235.value();
+        double lambda238 = LAMBDA_238.value();
 
-    public WetherillCurve() {
-        super(X_COMPONENT, Y_COMPONENT);
+        for (int i = 0; i < ts.length; i++) {
+            xs[i] = lambda235 * exp(lambda235 * ts[i]);
+            ys[i] = lambda238 * exp(lambda238 * ts[i]);
+        }
     }
 }
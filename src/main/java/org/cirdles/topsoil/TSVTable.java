@@ -18,15 +18,28 @@ package org.cirdles.topsoil;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.ReadOnlyObjectWrapper;
 import javafx.beans.value.ObservableValue;
 import javafx.scene.control.TableView;
 import javafx.scene.input.Clipboard;
 import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyEvent;
+import org.cirdles.topsoil.table.Field;
+import org.cirdles.topsoil.table.NumberField;
 import org.cirdles.topsoil.table.Record;
+import org.cirdles.topsoil.table.RecordStore;
+import org.cirdles.topsoil.table.RecordTableColumn;
+import org.cirdles.topsoil.utils.BinaryTableReader;
 import org.cirdles.topsoil.utils.TSVTableReader;
+import org.cirdles.topsoil.utils.TableReadTask;
 import org.cirdles.topsoil.utils.TSVTableWriter;
 import org.cirdles.topsoil.utils.TableReader;
 import org.cirdles.topsoil.utils.TableWriter;
@@ -42,12 +55,23 @@ public class TSVTable extends TableView<Record> {
     // zroe means ignore, positive means fill to this count if data not present
     private int requiredColumnCount;
 
+    private final ReadOnlyObjectWrapper<TableReadTask> importTask = new ReadOnlyObjectWrapper<>();
+
+    private final TSVTableAutosave autosave;
+
     public TSVTable() {
+        this(TSVTableAutosave.DEFAULT_DELAY_MILLIS, TSVTableAutosave.EXECUTOR);
+    }
+
+    TSVTable(long autosaveDelayMillis, ScheduledThreadPoolExecutor autosaveExecutor) {
         this.requiredColumnCount = 0;
+        this.autosave = new TSVTableAutosave(this, autosaveDelayMillis, autosaveExecutor);
         
         this.setOnKeyPressed((KeyEvent event) -> {
             if (event.isShortcutDown() && event.getCode().equals(KeyCode.V)) {
                 pasteFromClipboard();
+            } else if (event.getCode().equals(KeyCode.ESCAPE)) {
+                cancelImport();
             }
         });
 
@@ -69,48 +93,152 @@ public class TSVTable extends TableView<Record> {
     }
 
     /**
-     * Pastes the contents of the clipboard into this table.
+     * Pastes the contents of the clipboard into this table in the background.
      */
     public void pasteFromClipboard() {
         Tools.yesNoPrompt("Does the pasted data contain headers?", response -> {
-            TableReader tableReader = new TSVTableReader(response);
-            tableReader.read(Clipboard.getSystemClipboard().getString(), this);
+            String src = Clipboard.getSystemClipboard().getString();
+            startImport(new TableReadTask(new TSVTableReader(response), src, this));
+        });
+    }
 
-            if (savePath != null) {
-                saveToPath(savePath);
-            }
+    /**
+     * Reads a file into this table in the background, replacing its contents. The table is saved once the file has
+     * been read; if the import is cancelled or fails, the table is left as it was.
+     *
+     * @param loadPath the file to read
+     * @param expectingHeader whether the first line of the file holds the column names
+     */
+    public void importFromPath(Path loadPath, boolean expectingHeader) {
+        TSVTableReader tableReader = new TSVTableReader(expectingHeader, Runtime.getRuntime().availableProcessors());
+
+        try {
+            startImport(new TableReadTask(tableReader, loadPath, this));
+        } catch (IOException ex) {
+            Logger.getLogger(Topsoil.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+
+    private void startImport(TableReadTask task) {
+        // only the latest import gets to fill the table
+        cancelImport();
+
+        // a cancelled or failed import puts the old table back, which is what's saved already
+        task.setOnSucceeded(event -> save());
+        task.setOnFailed(event -> {
+            Logger.getLogger(Topsoil.class.getName()).log(Level.SEVERE, null, task.getException());
         });
+
+        importTask.set(task);
+
+        Thread thread = new Thread(task, "Topsoil import");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Whether an import has been started and hasn't finished yet.
+     *
+     * @return whether an import is running
+     */
+    public boolean isImporting() {
+        return importTask.get() != null && importTask.get().isRunning();
+    }
+
+    /**
+     * Stops the import in progress, if any, putting back the columns and rows the table had before it started.
+     */
+    public void cancelImport() {
+        if (importTask.get() != null) {
+            importTask.get().cancel();
+        }
+    }
+
+    /**
+     * The most recently started import, which may have finished.
+     *
+     * @return the import task property
+     */
+    public ReadOnlyObjectProperty<TableReadTask> importTaskProperty() {
+        return importTask.getReadOnlyProperty();
     }
 
     /**
      * Clears the items and columns in the table.
      */
     public void clear() {
-        getItems().clear();
-        getColumns().clear();
+        setContents(Collections.emptyList(), Collections.emptyList());
+    }
+
+    /**
+     * Replaces the columns and rows of the table. Each list is replaced with a single <code>setAll</code>, so the
+     * table skin and anything observing the items see one change rather than one per row.
+     *
+     * @param fields the fields to show as columns, in order
+     * @param rows the new rows
+     */
+    public void setContents(List<Field<?>> fields, Collection<Record> rows) {
+        List<RecordTableColumn<?>> columns = new ArrayList<>(fields.size());
+        for (Field<?> field : fields) {
+            columns.add(new RecordTableColumn<>(field));
+        }
+
+        getColumns().setAll(columns);
+        getItems().setAll(rows);
     }
     
+    /**
+     * Reads the table from its save path. If a binary session file at least as recent as the TSV file is next to it,
+     * the session file is read instead, which is much faster.
+     */
     public void load() {
-        if (savePath != null) {
-            loadFromPath(savePath);
+        if (savePath == null) {
+            return;
+        }
+
+        Path sessionPath = getSessionPath();
+        try {
+            if (Files.exists(sessionPath) && (!Files.exists(savePath)
+                    || Files.getLastModifiedTime(sessionPath).compareTo(Files.getLastModifiedTime(savePath)) >= 0)) {
+                new BinaryTableReader().read(sessionPath, this);
+                autosave.markSaved(true);
+                return;
+            }
+        } catch (IOException ex) {
+            // the TSV file is still there to fall back on
+            Logger.getLogger(Topsoil.class.getName()).log(Level.WARNING, null, ex);
         }
+
+        loadFromPath(savePath);
     }
 
+    /**
+     * Reads a file into the table, replacing its contents in one go once the whole file has been read.
+     *
+     * @param loadPath the file to read
+     */
     public void loadFromPath(Path loadPath) {
         if (Files.exists(loadPath)) {
-            TableReader tableReader = new TSVTableReader(true);
+            TableReader tableReader = new TSVTableReader(true, Runtime.getRuntime().availableProcessors());
             try {
                 tableReader.read(loadPath, this);
+
+                if (loadPath.equals(savePath)) {
+                    // the session file is missing or out of date
+                    autosave.markSaved(false);
+                }
             } catch (IOException ex) {
                 Logger.getLogger(Topsoil.class.getName()).log(Level.SEVERE, null, ex);
             }
         }
     }
-    
+
+    /**
+     * Saves the table at its save path in the background, if it has changed since it was last saved. Changes to the
+     * table are saved automatically after a short delay anyway; this skips the delay.
+     */
     public void save() {
-        if (savePath != null) {
-            saveToPath(savePath);
-        }
+        autosave.saveNow();
     }
 
     /**
@@ -135,6 +263,36 @@ public class TSVTable extends TableView<Record> {
         return getColumns().size() >= requiredColumnCount;
     }
 
+    /**
+     * Adds numeric columns of zeroes, named "fill-1", "fill-2" and so on, until the table has the required number of
+     * columns. The rows are padded in memory, so nothing needs to be saved and read back.
+     */
+    public void fillMissingColumns() {
+        int columnCount = getColumns().size();
+
+        List<RecordTableColumn<?>> fillColumns = new ArrayList<>();
+        for (int i = columnCount; i < requiredColumnCount; i++) {
+            NumberField fill = new NumberField("fill-" + (i - columnCount + 1));
+
+            for (Record row : getItems()) {
+                RecordStore store = row.getStore();
+                if (store != null && !store.hasField(fill)) {
+                    store.addField(fill);
+                }
+
+                row.setDouble(fill, 0);
+            }
+
+            fillColumns.add(new RecordTableColumn<>(fill));
+        }
+
+        getColumns().addAll(fillColumns);
+    }
+
+    TSVTableAutosave getAutosave() {
+        return autosave;
+    }
+
     /**
      * Gets the saveToPath path.
      *
@@ -144,6 +302,25 @@ public class TSVTable extends TableView<Record> {
         return savePath;
     }
 
+    /**
+     * Gets the path of the binary session file kept next to the save path, which has the same name with a ".bin"
+     * extension.
+     *
+     * @return the session path, or <code>null</code> if there is no save path
+     */
+    public Path getSessionPath() {
+        if (savePath == null) {
+            return null;
+        }
+
+        String name = savePath.getFileName().toString();
+        if (name.endsWith(".tsv")) {
+            name = name.substring(0, name.length() - ".tsv".length());
+        }
+
+        return savePath.resolveSibling(name + ".bin");
+    }
+
     /**
      * Sets the saveToPath path.
      *
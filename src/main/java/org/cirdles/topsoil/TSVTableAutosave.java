@@ -0,0 +1,311 @@
+/*
+ * Copyright 2014 CIRDLES.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cirdles.topsoil;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javafx.application.Platform;
+import javafx.beans.InvalidationListener;
+import javafx.collections.ListChangeListener;
+import javafx.event.EventHandler;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableColumn.CellEditEvent;
+import org.cirdles.topsoil.table.Field;
+import org.cirdles.topsoil.table.NumberField;
+import org.cirdles.topsoil.table.Record;
+import org.cirdles.topsoil.table.RecordStore;
+import org.cirdles.topsoil.utils.BinaryTableWriter;
+import org.cirdles.topsoil.utils.TSVTableWriter;
+
+/**
+ * Keeps the save file of a {@link TSVTable} up to date in the background. Every change to the table restarts a short
+ * delay, and only once the table has been left alone for that long is it written, so a burst of edits or the batches
+ * of an import cause one write rather than many. Writes happen on a single background thread, in order.
+ * <p>
+ * The rows already in the files are tracked, along with which of them have been edited since. When rows have only
+ * been added at the end or edited (the usual cases while importing, pasting or correcting a value), only those rows
+ * are copied from the table and the files are updated with them: see {@link TSVTableWriter#update} and
+ * {@link BinaryTableWriter#update}, which overwrites edited numbers in place. Rows of a TSV file are only a line each
+ * when all of the fields are numeric, so edits to a table with text in it are saved by writing the whole table, as is
+ * any other change to the rows or columns, such as removing rows or renaming a column. Either way, the TSV file is
+ * replaced atomically, and the binary session file (see {@link BinaryTableWriter}), which lets the table be reopened
+ * quickly, is updated after it.
+ * <p>
+ * The records of a table are views onto storage that the JavaFX Application Thread keeps changing, so the rows to be
+ * saved are copied into a store of their own (see {@link RecordStore#copyOf(List, List)}) before being handed to the
+ * background thread.
+ *
+ * @author John Zeringue <john.joseph.zeringue@gmail.com>
+ */
+public class TSVTableAutosave {
+
+    /**
+     * How long the table must go unchanged before it is saved.
+     */
+    public static final long DEFAULT_DELAY_MILLIS = 500;
+
+    // one thread for every table, so that writes to the same file never overlap
+    static final ScheduledThreadPoolExecutor EXECUTOR = newExecutor();
+
+    private final TSVTable table;
+    private final long delayMillis;
+    private final ScheduledThreadPoolExecutor executor;
+
+    // only touched on the JavaFX Application Thread
+    private ScheduledFuture<?> pendingSave;
+    private boolean dirty;
+    private Path savedPath;
+
+    // the number of rows in the files, or -1 if they have to be written in full, and which of those rows were edited
+    private int savedRowCount = -1;
+    private final BitSet editedRows = new BitSet();
+
+    // how many saves of each kind have been started, for tests
+    private int fullSaveCount;
+    private int partialSaveCount;
+
+    private final EventHandler<CellEditEvent<Record, Object>> editHandler = event -> {
+        rowChanged(event.getTablePosition().getRow());
+    };
+
+    private final InvalidationListener nameListener = observable -> columnsChanged();
+
+    public TSVTableAutosave(TSVTable table, long delayMillis) {
+        this(table, delayMillis, EXECUTOR);
+    }
+
+    TSVTableAutosave(TSVTable table, long delayMillis, ScheduledThreadPoolExecutor executor) {
+        this.table = table;
+        this.delayMillis = delayMillis;
+        this.executor = executor;
+
+        table.getItems().addListener((ListChangeListener.Change<? extends Record> change) -> {
+            while (change.next()) {
+                // rows added at the end can still be appended
+                if (change.getFrom() < savedRowCount) {
+                    writeInFull();
+                }
+            }
+
+            saveLater();
+        });
+
+        table.getColumns().addListener((ListChangeListener.Change<? extends TableColumn<Record, ?>> change) -> {
+            while (change.next()) {
+                for (TableColumn<Record, ?> column : change.getRemoved()) {
+                    column.removeEventHandler(TableColumn.<Record, Object>editCommitEvent(), editHandler);
+                    column.textProperty().removeListener(nameListener);
+                }
+
+                for (TableColumn<Record, ?> column : change.getAddedSubList()) {
+                    column.addEventHandler(TableColumn.<Record, Object>editCommitEvent(), editHandler);
+                    column.textProperty().addListener(nameListener);
+                }
+            }
+
+            columnsChanged();
+        });
+    }
+
+    /**
+     * Records that the save file matches the table as it is now, for instance because the table was just loaded from
+     * it.
+     *
+     * @param sessionSaved whether the session file matches the table too; if not, both files are written shortly
+     */
+    public void markSaved(boolean sessionSaved) {
+        cancelPendingSave();
+
+        dirty = false;
+        savedPath = table.getSavePath();
+        savedRowCount = sessionSaved ? table.getItems().size() : -1;
+        editedRows.clear();
+
+        if (!sessionSaved) {
+            saveLater();
+        }
+    }
+
+    /**
+     * Saves the table once it has gone unchanged for the delay.
+     */
+    public void saveLater() {
+        dirty = true;
+        cancelPendingSave();
+
+        if (executor.isShutdown()) {
+            return;
+        }
+
+        pendingSave = executor.schedule(() -> Platform.runLater(this::saveNow), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Starts saving the table right away, if it has changed since it was last saved. The rows to be saved are copied on
+     * the calling thread, which must be the JavaFX Application Thread, and the copies are written in the background.
+     */
+    public void saveNow() {
+        cancelPendingSave();
+
+        Path path = table.getSavePath();
+        if (!dirty || path == null || table.isImporting() || executor.isShutdown()) {
+            // an import saves the table once it's done
+            return;
+        }
+
+        Path sessionPath = table.getSessionPath();
+        List<Field<?>> tableFields = TSVTableWriter.fieldsOf(table);
+        List<Record> items = table.getItems();
+        TSVTableWriter tableWriter = new TSVTableWriter(true, table.getRequiredColumnCount());
+
+        boolean numeric = tableFields.stream().allMatch(field -> field instanceof NumberField);
+        boolean full = !path.equals(savedPath) || savedRowCount < 0 || !editedRows.isEmpty() && !numeric;
+
+        int[] edited = full ? new int[0] : editedRows.stream().toArray();
+        int from = full ? 0 : savedRowCount;
+
+        dirty = false;
+        savedPath = path;
+        savedRowCount = items.size();
+        editedRows.clear();
+
+        if (!full && edited.length == 0 && from == items.size()) {
+            // the files already match the table
+            return;
+        }
+
+        // the edited rows, if any, and then the rows not in the files yet
+        List<Record> changed = new ArrayList<>(edited.length + items.size() - from);
+        for (int row : edited) {
+            changed.add(items.get(row));
+        }
+        changed.addAll(items.subList(from, items.size()));
+
+        RecordStore snapshot = RecordStore.copyOf(tableFields, changed);
+        List<Field<?>> fields = snapshot.getFields();
+        List<Record> rows = snapshot.asList();
+        List<Record> editedCopies = rows.subList(0, edited.length);
+        List<Record> appendedCopies = rows.subList(edited.length, rows.size());
+
+        if (full) {
+            fullSaveCount++;
+        } else {
+            partialSaveCount++;
+        }
+
+        executor.execute(() -> {
+            try {
+                if (full) {
+                    tableWriter.write(fields, rows, path);
+                    new BinaryTableWriter().write(fields, rows, sessionPath);
+                } else {
+                    tableWriter.update(fields, edited, editedCopies, appendedCopies, path);
+
+                    // written last, so that it's never older than the TSV file it stands in for
+                    new BinaryTableWriter().update(fields, edited, editedCopies, appendedCopies, sessionPath);
+                }
+            } catch (IOException ex) {
+                Logger.getLogger(TSVTableAutosave.class.getName()).log(Level.SEVERE, null, ex);
+
+                // the files can't be trusted any more, so an update is tried again as a full write
+                Platform.runLater(() -> {
+                    writeInFull();
+
+                    if (full) {
+                        dirty = true;
+                    } else {
+                        saveLater();
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Waits for the writes already started to finish, which is worth doing before the application exits. Saves still
+     * waiting out their delay are dropped.
+     *
+     * @param timeoutMillis the longest time to wait
+     */
+    public static void awaitWrites(long timeoutMillis) {
+        awaitWrites(EXECUTOR, timeoutMillis);
+    }
+
+    static void awaitWrites(ScheduledThreadPoolExecutor executor, long timeoutMillis) {
+        executor.shutdown();
+
+        try {
+            executor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static ScheduledThreadPoolExecutor newExecutor() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "Topsoil autosave");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // saves that are still waiting out their delay can't happen once the application is exiting
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+
+        return executor;
+    }
+
+    int getFullSaveCount() {
+        return fullSaveCount;
+    }
+
+    int getPartialSaveCount() {
+        return partialSaveCount;
+    }
+
+    private void rowChanged(int row) {
+        // rows that aren't in the files yet are saved anyway
+        if (row < savedRowCount) {
+            editedRows.set(row);
+        }
+
+        saveLater();
+    }
+
+    private void columnsChanged() {
+        writeInFull();
+        saveLater();
+    }
+
+    private void writeInFull() {
+        savedRowCount = -1;
+        editedRows.clear();
+    }
+
+    private void cancelPendingSave() {
+        if (pendingSave != null) {
+            pendingSave.cancel(false);
+            pendingSave = null;
+        }
+    }
+}
@@ -52,6 +52,8 @@ public class Topsoil extends Application {
     public static final String NOT_ENOUGH_COLUMNS_MESSAGE = "Careful, you don't have enough columns to create an ErrorEllipse Chart";
     public static final String NOT_ENOUGH_COLUMNS_MESSAGE_2 = "You are missing data columns, so Topsoil is supplying columns of zeroes to support an ErrorEllipse Chart";
 
+    private TopsoilMainWindow mainWindow;
+
     @Override
     public void start(Stage primaryStage) throws Exception {
         // create the Topsoil folder if it doesn't exist
@@ -70,10 +72,21 @@ public class Topsoil extends Application {
             Logger.getLogger(Topsoil.class.getName()).log(Level.INFO, "Old Topsoil path not empty");
         }
         
-        primaryStage.setScene(new Scene(new TopsoilMainWindow()));
+        mainWindow = new TopsoilMainWindow();
+        primaryStage.setScene(new Scene(mainWindow));
         primaryStage.show();
     }
 
+    @Override
+    public void stop() {
+        // the table is saved in the background, so let the last save finish
+        if (mainWindow != null) {
+            mainWindow.saveTable();
+        }
+
+        TSVTableAutosave.awaitWrites(10000);
+    }
+
     /**
      * The main() method is ignored in correctly deployed JavaFX application. main() serves only as fallback in case the
      * application can not be launched through deployment artifacts, e.g., in IDEs with limited FX support. NetBeans
@@ -15,12 +15,10 @@
  */
 package org.cirdles.topsoil;
 
-import java.io.IOException;
 import java.net.URL;
 import java.nio.file.Path;
 import java.util.ResourceBundle;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import javafx.beans.binding.Bindings;
 import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
 import javafx.event.ActionEvent;
@@ -31,11 +29,8 @@ import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import javafx.stage.Window;
 import org.cirdles.javafx.CustomVBox;
-import org.cirdles.topsoil.table.Record;
-import org.cirdles.topsoil.utils.TSVTableReader;
-import org.cirdles.topsoil.utils.TSVTableWriter;
-import org.cirdles.topsoil.utils.TableReader;
-import org.cirdles.topsoil.utils.TableWriter;
+import org.cirdles.topsoil.utils.TableReadTask;
+import org.controlsfx.control.TaskProgressView;
 import org.controlsfx.dialog.Dialogs;
 
 /**
@@ -46,6 +41,7 @@ import org.controlsfx.dialog.Dialogs;
 public class TopsoilMainWindow extends CustomVBox implements Initializable {
 
     @FXML private TSVTable dataTable;
+    @FXML private TaskProgressView<TableReadTask> importProgress;
 
     // JFB
     private final int ERROR_CHART_REQUIRED_COL_COUNT = 5;
@@ -63,6 +59,14 @@ public class TopsoilMainWindow extends CustomVBox implements Initializable {
         dataTable.setSavePath(Topsoil.LAST_TABLE_PATH);
         dataTable.load();
 
+        // show imports while they run, the view drops them once they're done
+        importProgress.visibleProperty().bind(Bindings.isNotEmpty(importProgress.getTasks()));
+        importProgress.managedProperty().bind(importProgress.visibleProperty());
+        dataTable.importTaskProperty().addListener((ObservableValue<? extends TableReadTask> observable,
+                                                    TableReadTask oldTask, TableReadTask newTask) -> {
+            importProgress.getTasks().add(newTask);
+        });
+
         // set the window title to something like "Topsoil [0.3.4]"
         String applicationName = resources.getString("applicationName");
         String applicationVersion = resources.getString("applicationVersion");
@@ -114,16 +118,7 @@ public class TopsoilMainWindow extends CustomVBox implements Initializable {
         dataTable.setRequiredColumnCount(ERROR_CHART_REQUIRED_COL_COUNT);
 
         Tools.yesNoPrompt("Does the selected file contain headers?", response -> {
-            TableReader tableReader = new TSVTableReader(response);
-
-            try {
-                tableReader.read(filePath, dataTable);
-            } catch (IOException ex) {
-                Logger.getLogger(Topsoil.class.getName()).log(Level.SEVERE, null, ex);
-            }
-
-            TableWriter<Record> tableWriter = new TSVTableWriter(true, dataTable.getRequiredColumnCount());
-            tableWriter.write(dataTable, Topsoil.LAST_TABLE_PATH);
+            dataTable.importFromPath(filePath, response);
         });
     }
 
@@ -141,14 +136,20 @@ public class TopsoilMainWindow extends CustomVBox implements Initializable {
 
         if (!dataTable.hasRequiredColumnCount()) {
             Dialogs.create().message(Topsoil.NOT_ENOUGH_COLUMNS_MESSAGE_2).showWarning();
-            dataTable.save();
-            dataTable.load();
+            dataTable.fillMissingColumns();
         }
 
         new ColumnSelectorDialog(dataTable).show();
 
     }
 
+    /**
+     * Saves the table right away rather than after the usual delay.
+     */
+    void saveTable() {
+        dataTable.save();
+    }
+
     @FXML
     private void pasteFromClipboard(ActionEvent event) {
         dataTable.pasteFromClipboard();
@@ -25,4 +25,15 @@ import javafx.scene.chart.XYChart.Data;
  */
 public interface DataConverter<T> {
     public T convert(Data data);
+
+    /**
+     * Returns a number that changes whenever the value converted from a <code>Data</code> would change, which lets
+     * converted values be cached. Converters that can't tell return the same number every time.
+     *
+     * @param data the data that would be converted
+     * @return the revision of the data's converted value
+     */
+    public default long getRevision(Data data) {
+        return 0;
+    }
 }
@@ -16,6 +16,7 @@
 package org.cirdles.topsoil.chart;
 
 import static java.lang.Math.*;
+import javafx.animation.AnimationTimer;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.SimpleBooleanProperty;
@@ -37,7 +38,11 @@ import org.cirdles.topsoil.Tools;
  * <p>
  * A <code>XYChart</code>, supporting to be moved by drag and drop, in which only numbers are accepted.</p>
  * <p>
- * In addition to supporting drag and drop, it also support zoom via right clicking and scrolling.
+ * In addition to supporting drag and drop, it also support zoom via right clicking and scrolling.</p>
+ * <p>
+ * Panning and zooming don't move the axes on every mouse event. They move a pending plot window, which is applied to
+ * all four axis bounds at once on the next pulse, so the plot is laid out at most once per frame. While the chart is
+ * being dragged, the plot children are only translated, and the window is applied once the drag settles.</p>
  *
  * @author John
  * @see XYChart
@@ -50,6 +55,28 @@ public abstract class NumberChart extends XYChart<Number, Number> {
 
     private static final int MINSIDE_DRAGWINDOW = 3;
 
+    // how long a drag must pause before the plot is laid out again
+    private static final long DRAG_SETTLE_NANOS = 150000000;
+
+    // the plot window the axes are heading to: minimum x, maximum x, minimum y and maximum y
+    private final double[] pendingWindow = new double[4];
+    private boolean windowPending;
+
+    private boolean dragging;
+    private long lastDragNanos;
+
+    private final AnimationTimer windowTimer = new AnimationTimer() {
+
+        @Override
+        public void handle(long now) {
+            if (!windowPending) {
+                stop();
+            } else if (!dragging || now - lastDragNanos >= DRAG_SETTLE_NANOS) {
+                applyPendingWindow();
+            }
+        }
+    };
+
     private final BooleanProperty lockToQ1 = new SimpleBooleanProperty(true);
 
     public NumberChart() {
@@ -81,6 +108,7 @@ public abstract class NumberChart extends XYChart<Number, Number> {
         setOnKeyTyped((KeyEvent keyEvent) -> {
             System.out.printf("'%s'\n", keyEvent.getCharacter());
             if (keyEvent.getCharacter().equals(" ")) {
+                cancelPendingWindow();
                 xAxis.setAutoRanging(true);
                 yAxis.setAutoRanging(true);
 
@@ -90,8 +118,11 @@ public abstract class NumberChart extends XYChart<Number, Number> {
 
         setOnMouseDragged((MouseEvent mouseEvent) -> {
             if (mouseEvent.getButton().equals(MouseButton.PRIMARY)) {
-                shiftPlotWindowConstraint((mouseDraggedX.get() - mouseEvent.getX()) / xAxis.getWidth() * getXRange(),
-                                          -(mouseDraggedY.get() - mouseEvent.getY()) / yAxis.getHeight() * getYRange());
+                double[] window = getTargetWindow();
+                lastDragNanos = System.nanoTime();
+
+                shiftPlotWindowConstraint((mouseDraggedX.get() - mouseEvent.getX()) / xAxis.getWidth() * (window[1] - window[0]),
+                                          -(mouseDraggedY.get() - mouseEvent.getY()) / yAxis.getHeight() * (window[3] - window[2]));
 
                 mouseDraggedX.set(mouseEvent.getX());
                 mouseDraggedY.set(mouseEvent.getY());
@@ -119,6 +150,7 @@ public abstract class NumberChart extends XYChart<Number, Number> {
 
             if (mouseEvent.getButton().equals(MouseButton.PRIMARY)) {
                 ((Node) mouseEvent.getSource()).setCursor(Cursor.HAND);
+                dragging = true;
 
                 mouseDraggedX.set(mouseEvent.getX());
                 mouseDraggedY.set(mouseEvent.getY());
@@ -128,6 +160,9 @@ public abstract class NumberChart extends XYChart<Number, Number> {
         setOnMouseReleased((MouseEvent mouseEvent) -> {
             if (mouseEvent.getButton().equals(MouseButton.PRIMARY)) {
                 ((Node) mouseEvent.getSource()).setCursor(Cursor.DEFAULT);
+
+                // the next pulse applies whatever the drag left pending
+                dragging = false;
             } else if (mouseEvent.getButton().equals(MouseButton.SECONDARY)) {
                 dragSelect.setVisible(false);
 
@@ -153,8 +188,10 @@ public abstract class NumberChart extends XYChart<Number, Number> {
         });
 
         setOnScroll((ScrollEvent scrollEvent) -> {
-            double zoomX = xAxis.getValueForDisplay(scrollEvent.getX() - xAxis.getLayoutX()).doubleValue();
-            double zoomY = yAxis.getValueForDisplay(scrollEvent.getY() - yAxis.getLayoutY()).doubleValue();
+            // several scroll events can arrive before the axes move, so zoom about the point in the pending window
+            double[] window = getTargetWindow();
+            double zoomX = window[0] + (scrollEvent.getX() - xAxis.getLayoutX()) / xAxis.getWidth() * (window[1] - window[0]);
+            double zoomY = window[3] - (scrollEvent.getY() - yAxis.getLayoutY()) / yAxis.getHeight() * (window[3] - window[2]);
 
             shiftPlotWindowFree(-zoomX, -zoomY);
             scalePlotWindow(1 - scrollEvent.getDeltaY() / 400);
@@ -171,15 +208,17 @@ public abstract class NumberChart extends XYChart<Number, Number> {
 
     }
 
-    private double getXRange() {
-        return xAxis.getUpperBound() - xAxis.getLowerBound();
-    }
-
-    private double getYRange() {
-        return yAxis.getUpperBound() - yAxis.getLowerBound();
-    }
-
+    /**
+     * Sets the bounds of both axes right away, dropping any window still pending from panning or zooming.
+     *
+     * @param minXValue the lower bound of the x axis
+     * @param maxXValue the upper bound of the x axis
+     * @param minYValue the lower bound of the y axis
+     * @param maxYValue the upper bound of the y axis
+     */
     protected final void setPlotWindow(double minXValue, double maxXValue, double minYValue, double maxYValue) {
+        cancelPendingWindow();
+
         xAxis.setAutoRanging(false);
         yAxis.setAutoRanging(false);
 
@@ -198,14 +237,16 @@ public abstract class NumberChart extends XYChart<Number, Number> {
      * @param yAmount
      */
     protected final void shiftPlotWindowConstraint(double xAmount, double yAmount) {
+        double[] window = getTargetWindow();
+
         //Determining bounds
         if (lockToQ1.get()) {
-            if (xAxis.getLowerBound() + xAmount < 0) {
-                xAmount = -xAxis.getLowerBound();
+            if (window[0] + xAmount < 0) {
+                xAmount = -window[0];
             }
 
-            if (yAxis.getLowerBound() + yAmount < 0) {
-                yAmount = -yAxis.getLowerBound();
+            if (window[2] + yAmount < 0) {
+                yAmount = -window[2];
             }
         }
 
@@ -219,17 +260,89 @@ public abstract class NumberChart extends XYChart<Number, Number> {
      * @param yAmount
      */
     protected final void shiftPlotWindowFree(double xAmount, double yAmount) {
-        setPlotWindow(xAxis.getLowerBound() + xAmount,
-                      xAxis.getUpperBound() + xAmount,
-                      yAxis.getLowerBound() + yAmount,
-                      yAxis.getUpperBound() + yAmount);
+        double[] window = getTargetWindow();
+        requestPlotWindow(window[0] + xAmount,
+                          window[1] + xAmount,
+                          window[2] + yAmount,
+                          window[3] + yAmount);
     }
 
     protected final void scalePlotWindow(double factor) {
-        setPlotWindow(xAxis.getLowerBound() * factor,
-                      xAxis.getUpperBound() * factor,
-                      yAxis.getLowerBound() * factor,
-                      yAxis.getUpperBound() * factor);
+        double[] window = getTargetWindow();
+        requestPlotWindow(window[0] * factor,
+                          window[1] * factor,
+                          window[2] * factor,
+                          window[3] * factor);
+    }
+
+    /**
+     * Moves the pending plot window, which the axes take on at the next pulse, or once the drag in progress settles.
+     * While dragging, the plot children are translated to follow the window in the meantime.
+     *
+     * @param minXValue the lower bound of the x axis
+     * @param maxXValue the upper bound of the x axis
+     * @param minYValue the lower bound of the y axis
+     * @param maxYValue the upper bound of the y axis
+     */
+    protected final void requestPlotWindow(double minXValue, double maxXValue, double minYValue, double maxYValue) {
+        pendingWindow[0] = minXValue;
+        pendingWindow[1] = maxXValue;
+        pendingWindow[2] = minYValue;
+        pendingWindow[3] = maxYValue;
+        windowPending = true;
+
+        if (dragging) {
+            // only a shift can be shown by translating, and a drag only shifts
+            double translateX = -(minXValue - xAxis.getLowerBound()) / getXRange() * xAxis.getWidth();
+            double translateY = (minYValue - yAxis.getLowerBound()) / getYRange() * yAxis.getHeight();
+            translatePlotChildren(translateX, translateY);
+        }
+
+        windowTimer.start();
+    }
+
+    /**
+     * Returns the window the axes are heading to, which is where they are if nothing is pending. The array is shared,
+     * so it must not be kept or changed.
+     *
+     * @return the minimum x, maximum x, minimum y and maximum y
+     */
+    private double[] getTargetWindow() {
+        if (!windowPending) {
+            pendingWindow[0] = xAxis.getLowerBound();
+            pendingWindow[1] = xAxis.getUpperBound();
+            pendingWindow[2] = yAxis.getLowerBound();
+            pendingWindow[3] = yAxis.getUpperBound();
+        }
+
+        return pendingWindow;
+    }
+
+    private void applyPendingWindow() {
+        setPlotWindow(pendingWindow[0], pendingWindow[1], pendingWindow[2], pendingWindow[3]);
+    }
+
+    private void cancelPendingWindow() {
+        if (windowPending) {
+            windowPending = false;
+            windowTimer.stop();
+            translatePlotChildren(0, 0);
+        }
+    }
+
+    private void translatePlotChildren(double translateX, double translateY) {
+        for (Node node : getPlotChildren()) {
+            node.setTranslateX(translateX);
+            node.setTranslateY(translateY);
+        }
+    }
+
+    private double getXRange() {
+        return xAxis.getUpperBound() - xAxis.getLowerBound();
+    }
+
+    private double getYRange() {
+        return yAxis.getUpperBound() - yAxis.getLowerBound();
     }
 
     @Override
@@ -242,16 +355,20 @@ public abstract class NumberChart extends XYChart<Number, Number> {
     }
 
     private void moveBackToQ1() {
-        if (xAxis.getLowerBound() < 0) {
-            shiftPlotWindowFree(-xAxis.getLowerBound(), 0);
+        double[] window = getTargetWindow();
+
+        if (window[0] < 0) {
+            shiftPlotWindowFree(-window[0], 0);
         }
 
-        if (yAxis.getLowerBound() < 0) {
-            shiftPlotWindowFree(0, -yAxis.getLowerBound());
+        if (window[2] < 0) {
+            shiftPlotWindowFree(0, -window[2]);
         }
     }
 
     public void resetView() {
+        cancelPendingWindow();
+
         xAxis.setAutoRanging(false);
         yAxis.setAutoRanging(false);
 
@@ -0,0 +1,394 @@
+/*
+ * Copyright 2014 CIRDLES.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cirdles.topsoil.chart.concordia;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.cirdles.math.ConstantFunction;
+import org.cirdles.math.Function;
+import org.cirdles.math.ParametricCurve2D;
+import org.cirdles.math.RootFinder;
+import org.cirdles.math.TeraWasserburgCurve;
+import org.cirdles.math.WetherillCurve;
+
+/**
+ * The geometry of a concordia curve, worked out once and reused by every layout. The curve is sampled over its whole
+ * age range when the geometry is created, and the samples bracket the ages at which the curve crosses a window, so
+ * that finding the visible part of the curve only takes a few safeguarded Newton steps. Both coordinates of a
+ * concordia curve are monotonic in age, which is what makes the brackets safe.
+ * <p>
+ * The visible part is approximated by cubic Bezier pieces joined at knots on a lattice of ages, either evenly or
+ * split adaptively until each piece is within a tolerance of the curve on screen. The lattice only depends on the
+ * scale of the window, and adaptive splits halve its spacing, so the knots, with their derivatives, are kept while
+ * the chart is panned and only new ones are computed.
+ *
+ * @author John Zeringue <john.joseph.zeringue@gmail.com>
+ */
+public class ConcordiaGeometry {
+
+    /**
+     * The age of the Earth in years, past which concordia curves aren't drawn.
+     */
+    public static final double MAX_AGE = 4600000000.;
+
+    /**
+     * The youngest age in years drawn on a Tera-Wasserburg curve, which goes off to infinity as the age goes to zero.
+     */
+    public static final double MIN_TERA_WASSERBURG_AGE = 10000;
+
+    static final int SAMPLE_COUNT = 4096;
+
+    // the number of pieces adaptive approximation starts from, and how many times a piece can be halved
+    private static final int ADAPTIVE_PIECES = 4;
+    private static final int MAX_DEPTH = 20;
+
+    private static final int MAX_KNOTS = 4096;
+
+    private final ParametricCurve2D curve;
+    private final Function x;
+    private final Function y;
+    private final Function xPrime;
+    private final Function yPrime;
+
+    private final RootFinder rootFinder = new RootFinder(1e-12, 0, RootFinder.DEFAULT_MAX_ITERATIONS);
+
+    private final double minT;
+    private final double maxT;
+    private final double[] sampleX = new double[SAMPLE_COUNT];
+    private final double[] sampleY = new double[SAMPLE_COUNT];
+
+    // the knots of the current lattice and its subdivisions, by age: x, y, dx/dt and dy/dt
+    private double knotSpacing = Double.NaN;
+    private final Map<Double, double[]> knots = new LinkedHashMap<Double, double[]>(16, 0.75f, true) {
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Double, double[]> eldest) {
+            return size() > MAX_KNOTS;
+        }
+    };
+
+    private int knotsComputed;
+
+    /**
+     * Creates the geometry of a curve over a range of ages.
+     *
+     * @param curve the curve, both of whose coordinates must be monotonic over the range and have derivatives
+     * @param minT the youngest age drawn
+     * @param maxT the oldest age drawn
+     */
+    public ConcordiaGeometry(ParametricCurve2D curve, double minT, double maxT) {
+        this.curve = curve;
+        this.x = curve.x();
+        this.y = curve.y();
+        this.xPrime = x.prime();
+        this.yPrime = y.prime();
+        this.minT = minT;
+        this.maxT = maxT;
+
+        double[] sampleAges = new double[SAMPLE_COUNT];
+        for (int i = 0; i < SAMPLE_COUNT; i++) {
+            sampleAges[i] = sampleAge(i);
+        }
+
+        curve.evaluate(sampleAges, sampleX, sampleY);
+    }
+
+    /**
+     * Creates the geometry of a type of concordia curve over the ages it is drawn for.
+     *
+     * @param type the type of curve, other than {@link ConcordiaLineType#NONE}
+     * @return the geometry
+     */
+    public static ConcordiaGeometry of(ConcordiaLineType type) {
+        switch (type) {
+            case WETHERILL:
+                return new ConcordiaGeometry(new WetherillCurve(), 0, MAX_AGE);
+            case TERA_WASSERBURG:
+                return new ConcordiaGeometry(new TeraWasserburgCurve(), MIN_TERA_WASSERBURG_AGE, MAX_AGE);
+            default:
+                throw new IllegalArgumentException("There is no curve for " + type + ".");
+        }
+    }
+
+    public ParametricCurve2D getCurve() {
+        return curve;
+    }
+
+    /**
+     * Finds the ages over which the curve lies within a window.
+     *
+     * @param minX the left of the window
+     * @param maxX the right of the window
+     * @param minY the bottom of the window
+     * @param maxY the top of the window
+     * @return the youngest and oldest ages within the window, or <code>null</code> if the curve misses it
+     */
+    public double[] findAgeRange(double minX, double maxX, double minY, double maxY) {
+        double[] xRange = findAgeRange(sampleX, x, xPrime, minX, maxX);
+        double[] yRange = findAgeRange(sampleY, y, yPrime, minY, maxY);
+
+        if (xRange == null || yRange == null) {
+            return null;
+        }
+
+        double from = Math.max(xRange[0], yRange[0]);
+        double to = Math.min(xRange[1], yRange[1]);
+
+        return from < to ? new double[]{from, to} : null;
+    }
+
+    /**
+     * Approximates the curve between two ages with cubic Bezier pieces, in data coordinates. The pieces join at knots a
+     * power of two years apart, chosen so that there are between <code>pieces</code> and twice as many, plus the ends.
+     *
+     * @param fromT the age to start at
+     * @param toT the age to end at, greater than <code>fromT</code>
+     * @param pieces the smallest number of pieces between knots
+     * @return the start of the curve followed by the two control points and end of each piece, as x and y pairs
+     */
+    public double[] approximate(double fromT, double toT, int pieces) {
+        Pieces dest = new Pieces();
+        forEachLatticePiece(fromT, toT, pieces, (t0, knot0, t1, knot1) -> dest.add(knot0, knot1, t1 - t0));
+
+        return dest.toArray();
+    }
+
+    /**
+     * Approximates the curve between two ages with cubic Bezier pieces, in data coordinates, splitting pieces in half
+     * until the middle of each is within a tolerance of the curve on screen. Nearly straight stretches of the curve
+     * therefore take few pieces and sharp bends many.
+     *
+     * @param fromT the age to start at
+     * @param toT the age to end at, greater than <code>fromT</code>
+     * @param scaleX the number of pixels per unit of x
+     * @param scaleY the number of pixels per unit of y
+     * @param tolerance the largest distance in pixels allowed between a piece and the curve
+     * @return the start of the curve followed by the two control points and end of each piece, as x and y pairs
+     */
+    public double[] approximate(double fromT, double toT, double scaleX, double scaleY, double tolerance) {
+        Pieces dest = new Pieces();
+        forEachLatticePiece(fromT, toT, ADAPTIVE_PIECES,
+                            (t0, knot0, t1, knot1) -> subdivide(t0, knot0, t1, knot1, scaleX, scaleY, tolerance,
+                                                                0, dest));
+
+        return dest.toArray();
+    }
+
+    private void subdivide(double t0, double[] knot0, double t1, double[] knot1, double scaleX, double scaleY,
+                           double tolerance, int depth, Pieces dest) {
+        double tm = (t0 + t1) / 2;
+        double[] middle = tm > t0 && tm < t1 && depth < MAX_DEPTH ? knot(tm) : null;
+
+        if (middle != null) {
+            // the middle of a Hermite piece, against the curve at the middle age
+            double third = (t1 - t0) / 3;
+            double pieceX = (knot0[0] + knot1[0]) / 2 + 3 * third * (knot0[2] - knot1[2]) / 8;
+            double pieceY = (knot0[1] + knot1[1]) / 2 + 3 * third * (knot0[3] - knot1[3]) / 8;
+
+            if (Math.hypot((pieceX - middle[0]) * scaleX, (pieceY - middle[1]) * scaleY) > tolerance) {
+                subdivide(t0, knot0, tm, middle, scaleX, scaleY, tolerance, depth + 1, dest);
+                subdivide(tm, middle, t1, knot1, scaleX, scaleY, tolerance, depth + 1, dest);
+                return;
+            }
+        }
+
+        dest.add(knot0, knot1, t1 - t0);
+    }
+
+    /**
+     * Visits the pieces between the ends and the lattice knots in between, of which there are between
+     * <code>pieces</code> and twice as many.
+     */
+    private void forEachLatticePiece(double fromT, double toT, int pieces, PieceAction action) {
+        double spacing = Math.scalb(1, Math.getExponent((toT - fromT) / pieces));
+        if (spacing != knotSpacing) {
+            knots.clear();
+            knotSpacing = spacing;
+        }
+
+        knotsComputed = 0;
+
+        long firstKnot = (long) Math.floor(fromT / spacing) + 1;
+        long lastKnot = (long) Math.ceil(toT / spacing) - 1;
+
+        computeKnots(firstKnot, lastKnot, spacing);
+
+        double[] previous = evaluate(fromT);
+        double previousT = fromT;
+
+        for (long k = firstKnot; k <= lastKnot + 1; k++) {
+            double t = k <= lastKnot ? k * spacing : toT;
+            double[] next = k <= lastKnot ? knot(t) : evaluate(toT);
+
+            action.visit(previousT, previous, t, next);
+
+            previous = next;
+            previousT = t;
+        }
+    }
+
+    /**
+     * Returns the number of knots the last call to {@link #approximate(double, double, int)} computed rather than
+     * reused.
+     *
+     * @return the number of knots
+     */
+    public int getKnotsComputed() {
+        return knotsComputed;
+    }
+
+    private double sampleAge(int i) {
+        return minT + (maxT - minT) * i / (SAMPLE_COUNT - 1);
+    }
+
+    /**
+     * Computes the lattice knots between two indices that aren't kept yet, all in one pass over the curve.
+     */
+    private void computeKnots(long firstKnot, long lastKnot, double spacing) {
+        double[] ts = new double[(int) Math.max(0, lastKnot - firstKnot + 1)];
+        int count = 0;
+
+        for (long k = firstKnot; k <= lastKnot; k++) {
+            if (!knots.containsKey(k * spacing)) {
+                ts[count++] = k * spacing;
+            }
+        }
+
+        if (count == 0) {
+            return;
+        }
+
+        ts = Arrays.copyOf(ts, count);
+        double[] xs = new double[count];
+        double[] ys = new double[count];
+        double[] xPrimes = new double[count];
+        double[] yPrimes = new double[count];
+
+        curve.evaluate(ts, xs, ys);
+        curve.evaluatePrime(ts, xPrimes, yPrimes);
+
+        for (int i = 0; i < count; i++) {
+            knots.put(ts[i], new double[]{xs[i], ys[i], xPrimes[i], yPrimes[i]});
+        }
+
+        knotsComputed += count;
+    }
+
+    private double[] knot(double t) {
+        double[] knot = knots.get(t);
+        if (knot == null) {
+            knot = evaluate(t);
+            knots.put(t, knot);
+            knotsComputed++;
+        }
+
+        return knot;
+    }
+
+    private double[] evaluate(double t) {
+        return new double[]{x.of(t), y.of(t), xPrime.of(t), yPrime.of(t)};
+    }
+
+    @FunctionalInterface
+    private interface PieceAction {
+
+        void visit(double t0, double[] knot0, double t1, double[] knot1);
+    }
+
+    /**
+     * Collects Bezier pieces as they are made.
+     */
+    private static final class Pieces {
+
+        private double[] coordinates = new double[2 + 6 * 64];
+        private int size;
+
+        /**
+         * Adds the cubic Hermite piece between two knots, which matches the curve and its slope at both ends.
+         */
+        void add(double[] knot0, double[] knot1, double deltaT) {
+            if (size == 0) {
+                coordinates[size++] = knot0[0];
+                coordinates[size++] = knot0[1];
+            }
+
+            if (size + 6 > coordinates.length) {
+                coordinates = Arrays.copyOf(coordinates, coordinates.length * 2);
+            }
+
+            double third = deltaT / 3;
+            coordinates[size++] = knot0[0] + knot0[2] * third;
+            coordinates[size++] = knot0[1] + knot0[3] * third;
+            coordinates[size++] = knot1[0] - knot1[2] * third;
+            coordinates[size++] = knot1[1] - knot1[3] * third;
+            coordinates[size++] = knot1[0];
+            coordinates[size++] = knot1[1];
+        }
+
+        double[] toArray() {
+            return Arrays.copyOf(coordinates, size);
+        }
+    }
+
+    /**
+     * Finds the ages over which a monotonic coordinate lies between two values.
+     */
+    private double[] findAgeRange(double[] samples, Function coordinate, Function derivative, double min,
+                                  double max) {
+        boolean increasing = samples[SAMPLE_COUNT - 1] >= samples[0];
+        double first = increasing ? samples[0] : samples[SAMPLE_COUNT - 1];
+        double last = increasing ? samples[SAMPLE_COUNT - 1] : samples[0];
+
+        if (max < first || min > last) {
+            return null;
+        }
+
+        double from = findAge(samples, coordinate, derivative, increasing ? min : max, increasing);
+        double to = findAge(samples, coordinate, derivative, increasing ? max : min, increasing);
+
+        return new double[]{from, to};
+    }
+
+    /**
+     * Finds the age at which a monotonic coordinate takes a value, or the nearest end of the range if it never does.
+     * The samples bracket the age, which a root finder then narrows down.
+     */
+    private double findAge(double[] samples, Function coordinate, Function derivative, double value,
+                           boolean increasing) {
+        int low = 0;
+        int high = SAMPLE_COUNT - 1;
+
+        if (increasing ? value <= samples[low] : value >= samples[low]) {
+            return minT;
+        } else if (increasing ? value >= samples[high] : value <= samples[high]) {
+            return maxT;
+        }
+
+        // samples[low] and samples[high] are on either side of the value
+        while (high - low > 1) {
+            int middle = (low + high) >>> 1;
+            if (increasing == samples[middle] < value) {
+                low = middle;
+            } else {
+                high = middle;
+            }
+        }
+
+        return rootFinder.findZero(coordinate.minus(new ConstantFunction(value)), derivative,
+                                   sampleAge(low), sampleAge(high));
+    }
+}
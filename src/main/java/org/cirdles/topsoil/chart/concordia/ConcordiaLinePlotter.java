@@ -16,10 +16,8 @@
 package org.cirdles.topsoil.chart.concordia;
 
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
+import javafx.collections.ObservableList;
 import javafx.scene.Group;
 import javafx.scene.Node;
 import javafx.scene.shape.Circle;
@@ -29,10 +27,7 @@ import javafx.scene.shape.Path;
 import javafx.scene.shape.PathElement;
 import javafx.scene.text.Font;
 import javafx.scene.text.Text;
-import org.cirdles.math.ConstantFunction;
-import org.cirdles.math.CubicBezierCurve;
 import org.cirdles.math.ParametricCurve2D;
-import org.cirdles.math.WetherillCurve;
 import org.cirdles.topsoil.Tools;
 import org.cirdles.topsoil.chart.Plotter;
 import org.cirdles.topsoil.chart.TickGenerator;
@@ -43,12 +38,22 @@ import org.cirdles.topsoil.chart.TickGenerator;
  *
  * @author John Zeringue <john.joseph.zeringue@gmail.com>
  */
-public class ConcordiaLinePlotter extends Plotter<ParametricCurve2D, ErrorEllipseChart> {
+public class ConcordiaLinePlotter extends Plotter<ConcordiaGeometry, ErrorEllipseChart> {
 
+    // used when the chart's concordia line tolerance is turned off
     private static final int NUMBER_OF_PIECES = 50;
 
     private final TickGenerator tickGenerator;
 
+    // the nodes of the plot, kept from layout to layout and updated in place
+    private final Group lineAndTicks = new Group();
+    private final Path line = new Path();
+    private final MoveTo lineStart = new MoveTo();
+    private final List<Circle> tickMarks = new ArrayList<>();
+    private final List<Text> tickLabels = new ArrayList<>();
+    private int tickCount;
+    private Font tickFont;
+
     /**
      * Returns a new ConcordiaLinePlotter that plots to the given chart. Note that it does not add its output to the
      * chart, but instead leaves the layout as a chart responsibility.
@@ -59,101 +64,126 @@ public class ConcordiaLinePlotter extends Plotter<ParametricCurve2D, ErrorEllips
         super(chart);
 
         tickGenerator = new TickGenerator();
+
+        line.getElements().add(lineStart);
+        line.getStyleClass().add("concordia-line");
+        lineAndTicks.getChildren().add(line);
     }
 
     /**
-     * Plots the concordia line on the chart associated with this plotter. The root node returned by this method is a
-     * group containing the path approximated the line, circular tick marks, and tick mark labels.
+     * Plots the part of a concordia curve within the chart's axes, or returns <code>null</code> if the curve misses
+     * them. The same node is returned by every call, with its path and tick marks updated in place, so that a layout
+     * doesn't build a new scene graph for the line.
      *
-     * @param concordiaLine the concordia line segment to plot
+     * @param geometry the geometry of the curve
      * @return the node to be used to show the concordia line in the associated chart
      */
     @Override
-    public Node plot(ParametricCurve2D concordiaLine) {
+    public Node plot(ConcordiaGeometry geometry) {
         double minX = chart.getXAxis().getLowerBound();
         double minY = chart.getYAxis().getLowerBound();
         double maxX = chart.getXAxis().getUpperBound();
         double maxY = chart.getYAxis().getUpperBound();
 
-        List<Double> xIntercepts
-                = Arrays.asList(concordiaLine.x().minus(new ConstantFunction(minX)).zero(),
-                                concordiaLine.x().minus(new ConstantFunction(maxX)).zero())
-                .stream()
-                .filter(t -> concordiaLine.of(t).y() >= minY && concordiaLine.of(t).y() <= maxY)
-                .collect(Collectors.toList());
-
-        List<Double> yIntercepts
-                = Arrays.asList(concordiaLine.y().minus(new ConstantFunction(minY)).zero(),
-                                concordiaLine.y().minus(new ConstantFunction(maxY)).zero())
-                .stream()
-                .filter(t -> concordiaLine.of(t).x() >= minX && concordiaLine.of(t).x() <= maxX)
-                .collect(Collectors.toList());
-
-        if (xIntercepts.size() + yIntercepts.size() <= 1) {
+        double[] ages = geometry.findAgeRange(minX, maxX, minY, maxY);
+        if (ages == null) {
             return null;
         }
 
-        List<Double> intercepts = new ArrayList<>(xIntercepts);
-        intercepts.addAll(yIntercepts);
-
-        Collections.sort(intercepts);
-
-        double minT = intercepts.get(0);
-        double maxT = intercepts.get(intercepts.size() - 1);
-        
-        // prevent wetherill concordia from going into the negative ts
-        if (concordiaLine instanceof WetherillCurve) {
-            minT = Math.max(minT, 0);
-            maxT = Math.max(maxT, 0);
-            
-            minT = Math.min(minT, 4600000000.);
-            maxT = Math.min(maxT, 4600000000.);
+        double minT = ages[0];
+        double maxT = ages[1];
+
+        ParametricCurve2D concordiaLine = geometry.getCurve();
+
+        // the pieces are in data coordinates, and only they need mapping to the display
+        double tolerance = chart.getConcordiaLineTolerance();
+        double[] pieces = tolerance > 0
+                          ? geometry.approximate(minT, maxT,
+                                                 chart.getXAxis().getWidth() / (maxX - minX),
+                                                 chart.getYAxis().getHeight() / (maxY - minY),
+                                                 tolerance)
+                          : geometry.approximate(minT, maxT, NUMBER_OF_PIECES);
+
+        updateLine(pieces);
+
+        // Plot the tick marks (circles) and labels.
+        Font font = new Font(chart.concordiaLineFontFamilyProperty().get(),
+                             chart.concordiaLineFontSizeProperty().get());
+        if (!font.equals(tickFont)) {
+            tickFont = font;
+            tickLabels.forEach(label -> label.setFont(font));
         }
 
-        Group lineAndTicks = new Group();
+        List<Number> ticks = tickGenerator.majorTicksForRange(minT, maxT);
+        setTickCount(ticks.size());
+
+        for (int i = 0; i < ticks.size(); i++) {
+            double tick = ticks.get(i).doubleValue();
 
-        double deltaT = (maxT - minT) / NUMBER_OF_PIECES;
+            Circle circle = tickMarks.get(i);
+            circle.setCenterX(mapXToDisplay(concordiaLine.x().of(tick)));
+            circle.setCenterY(mapYToDisplay(concordiaLine.y().of(tick)));
 
-        Path line = CubicBezierCurve.approximate(concordiaLine, minT, minT + deltaT).asPath();
-        for (int i = 1; i < NUMBER_OF_PIECES; i++) {
-            line.getElements().add(
-                    CubicBezierCurve.approximate(concordiaLine, minT + i * deltaT, minT + (i + 1) * deltaT)
-                    .asCubicCurveTo());
+            Text label = tickLabels.get(i);
+            label.setText(Tools.DYNAMIC_STRING_CONVERTER.toString(tick / 1000000));
+            label.setX(circle.getCenterX() - label.getBoundsInLocal().getWidth() - 10);
+            label.setY(circle.getCenterY());
         }
 
-        line.getStyleClass().add("concordia-line");
+        return lineAndTicks;
+    }
 
-        for (PathElement element : line.getElements()) {
-            if (element instanceof MoveTo) {
-                MoveTo moveTo = (MoveTo) element;
-                moveTo.setX(mapXToDisplay(moveTo.getX()));
-                moveTo.setY(mapYToDisplay(moveTo.getY()));
-            } else if (element instanceof CubicCurveTo) {
-                CubicCurveTo curveTo = (CubicCurveTo) element;
-                curveTo.setControlX1(mapXToDisplay(curveTo.getControlX1()));
-                curveTo.setControlY1(mapYToDisplay(curveTo.getControlY1()));
-                curveTo.setControlX2(mapXToDisplay(curveTo.getControlX2()));
-                curveTo.setControlY2(mapYToDisplay(curveTo.getControlY2()));
-                curveTo.setX(mapXToDisplay(curveTo.getX()));
-                curveTo.setY(mapYToDisplay(curveTo.getY()));
+    private void updateLine(double[] pieces) {
+        lineStart.setX(mapXToDisplay(pieces[0]));
+        lineStart.setY(mapYToDisplay(pieces[1]));
+
+        ObservableList<PathElement> elements = line.getElements();
+        int pieceCount = (pieces.length - 2) / 6;
+
+        if (elements.size() > pieceCount + 1) {
+            elements.remove(pieceCount + 1, elements.size());
+        }
+
+        List<CubicCurveTo> added = new ArrayList<>();
+        for (int i = 0; i < pieceCount; i++) {
+            CubicCurveTo curveTo;
+            if (i + 1 < elements.size()) {
+                curveTo = (CubicCurveTo) elements.get(i + 1);
+            } else {
+                curveTo = new CubicCurveTo();
+                added.add(curveTo);
             }
+
+            int j = 2 + 6 * i;
+            curveTo.setControlX1(mapXToDisplay(pieces[j]));
+            curveTo.setControlY1(mapYToDisplay(pieces[j + 1]));
+            curveTo.setControlX2(mapXToDisplay(pieces[j + 2]));
+            curveTo.setControlY2(mapYToDisplay(pieces[j + 3]));
+            curveTo.setX(mapXToDisplay(pieces[j + 4]));
+            curveTo.setY(mapYToDisplay(pieces[j + 5]));
         }
 
-        lineAndTicks.getChildren().add(line);
+        elements.addAll(added);
+    }
 
-        // Plot the tick marks (circles) and labels.
-        for (Number tick : tickGenerator.majorTicksForRange(minT, maxT)) {
-            Circle circle = new Circle(mapXToDisplay(concordiaLine.x().of(tick.doubleValue())),
-                                       mapYToDisplay(concordiaLine.y().of(tick.doubleValue())),
-                                       5);
-            Text label = new Text(Tools.DYNAMIC_STRING_CONVERTER.toString(tick.doubleValue() / 1000000));
-            label.setFont(new Font(chart.concordiaLineFontFamilyProperty().get(), chart.concordiaLineFontSizeProperty().get()));
-            label.setX(circle.getCenterX() - label.getBoundsInLocal().getWidth() - 10);
-            label.setY(circle.getCenterY());
+    private void setTickCount(int count) {
+        while (tickMarks.size() < count) {
+            tickMarks.add(new Circle(5));
 
-            lineAndTicks.getChildren().addAll(circle, label);
+            Text label = new Text();
+            label.setFont(tickFont);
+            tickLabels.add(label);
         }
 
-        return lineAndTicks;
+        ObservableList<Node> children = lineAndTicks.getChildren();
+        if (count < tickCount) {
+            children.remove(1 + 2 * count, children.size());
+        } else {
+            for (int i = tickCount; i < count; i++) {
+                children.addAll(tickMarks.get(i), tickLabels.get(i));
+            }
+        }
+
+        tickCount = count;
     }
 }
@@ -29,7 +29,8 @@ import static java.lang.Math.sqrt;
 public abstract class ErrorEllipse {
 
     private static final double K = 4. / 3 * (sqrt(2) - 1);
-    private static final Matrix CONTROL_POINTS_MATRIX = new Matrix(new double[][]{
+    // the unit circle's control points, which U maps onto the ellipse's
+    static final Matrix CONTROL_POINTS_MATRIX = new Matrix(new double[][]{
         {1, 0},
         {1, K},
         {K, 1},
@@ -45,7 +46,19 @@ public abstract class ErrorEllipse {
         {1, 0}
     });
 
+    /**
+     * The number of coordinates written by {@link #getControlPoints(double, double[], int)}: thirteen points, x then y.
+     */
+    public static final int CONTROL_POINT_COORDINATES = 26;
+
+    // CONTROL_POINTS_MATRIX flattened, for the kernel
+    private static final double[] UNIT_CONTROL_POINTS = {
+        1, 0, 1, K, K, 1, 0, 1, -K, 1, -1, K, -1, 0, -1, -K, -K, -1, 0, -1, K, -1, 1, -K, 1, 0
+    };
+
+    // the control points at the last confidence level asked for
     private Matrix controlPoints;
+    private double controlPointsConfidenceLevel;
 
     public abstract double getX();
 
@@ -61,36 +74,84 @@ public abstract class ErrorEllipse {
         return false;
     }
 
+    /*
+     * The bounds follow from the covariance: the ellipse is the unit circle mapped through U (see calculateU), which
+     * stretches it to reach exactly confidenceLevel * sigma either side of the centre along each axis.
+     */
     public double getMinX(double confidenceLevel) {
-        return min(getControlPoints(confidenceLevel).transpose().getArray()[0]);
+        return getX() - confidenceLevel * Math.abs(getSigmaX());
     }
 
     public double getMaxX(double confidenceLevel) {
-        return max(getControlPoints(confidenceLevel).transpose().getArray()[0]);
+        return getX() + confidenceLevel * Math.abs(getSigmaX());
     }
 
     public double getMinY(double confidenceLevel) {
-        return min(getControlPoints(confidenceLevel).transpose().getArray()[1]);
+        return getY() - confidenceLevel * Math.abs(getSigmaY());
     }
 
     public double getMaxY(double confidenceLevel) {
-        return max(getControlPoints(confidenceLevel).transpose().getArray()[1]);
+        return getY() + confidenceLevel * Math.abs(getSigmaY());
     }
 
     /**
      * Gets this error ellipse's Bezier control points.
      *
+     * @param confidenceLevel the number of standard deviations the ellipse reaches
      * @return the control points
      */
     public Matrix getControlPoints(double confidenceLevel) {
-        // lazy computation
-        if (controlPoints == null) {
+        // lazy computation, redone if the ellipse is asked for another confidence level
+        if (controlPoints == null || controlPointsConfidenceLevel != confidenceLevel) {
             controlPoints = calculateControlPoints(confidenceLevel);
+            controlPointsConfidenceLevel = confidenceLevel;
         }
 
         return controlPoints;
     }
 
+    /**
+     * Writes this error ellipse's Bezier control points into an array, without allocating anything.
+     *
+     * @param confidenceLevel the number of standard deviations the ellipse reaches
+     * @param dest the array to write {@link #CONTROL_POINT_COORDINATES} coordinates into
+     * @param offset the index of the first coordinate
+     */
+    public void getControlPoints(double confidenceLevel, double[] dest, int offset) {
+        calculateControlPoints(getX(), getSigmaX(), getY(), getSigmaY(), getRho(), confidenceLevel, dest, offset);
+    }
+
+    /**
+     * Writes the Bezier control points of an error ellipse into an array: the x and y of each of the thirteen points in
+     * turn, as {@link #getControlPoints(double)} would hold them. The unit circle's control points are mapped through
+     * the closed-form Cholesky factor of the covariance matrix (see <code>calculateU</code>), scaled by the confidence
+     * level and moved to the centre, with no intermediate matrices.
+     *
+     * @param x the x of the centre
+     * @param sigmaX the standard deviation along x
+     * @param y the y of the centre
+     * @param sigmaY the standard deviation along y
+     * @param rho the correlation coefficient
+     * @param confidenceLevel the number of standard deviations the ellipse reaches
+     * @param dest the array to write {@link #CONTROL_POINT_COORDINATES} coordinates into
+     * @param offset the index of the first coordinate
+     */
+    public static void calculateControlPoints(double x, double sigmaX, double y, double sigmaY, double rho,
+                                              double confidenceLevel, double[] dest, int offset) {
+        // U = [[u00, u01], [0, u11]], premultiplied by the confidence level
+        double u00 = confidenceLevel * sigmaX;
+        double u01 = confidenceLevel * rho * sigmaY;
+        double u11 = confidenceLevel * sigmaY * Math.sqrt(1 - rho * rho);
+
+        for (int i = 0; i < CONTROL_POINT_COORDINATES; i += 2) {
+            double px = UNIT_CONTROL_POINTS[i];
+            double py = UNIT_CONTROL_POINTS[i + 1];
+
+            dest[offset + i] = x + px * u00;
+            dest[offset + i + 1] = y + px * u01 + py * u11;
+        }
+    }
+
     static Matrix calculateUOld(double sigmaX, double sigmaY, double rho) {
         double covarianceX_Y = sigmaX * sigmaY * rho;
 
@@ -108,43 +169,16 @@ public abstract class ErrorEllipse {
     }
 
     private Matrix calculateControlPoints(double confidenceLevel) {
-        Matrix u = calculateU(getSigmaX(), getSigmaY(), getRho());
-
-        // [[1],              [[x, y],
-        //  [1],               [x, y],
-        //  [1],               [x, y],
-        //  [1],               [x, y],
-        //  [1],               [x, y],
-        //  [1],               [x, y],
-        //  [1], * [[x, y]] =  [x, y],
-        //  [1],               [x, y],
-        //  [1],               [x, y],
-        //  [1],               [x, y],
-        //  [1],               [x, y],
-        //  [1],               [x, y],
-        //  [1]]               [x, y]]
-        Matrix xyMatrix = new Matrix(13, 1, 1).times(new Matrix(new double[]{getX(), getY()}, 1));
-
-        return CONTROL_POINTS_MATRIX.times(confidenceLevel).times(u).plus(xyMatrix);
-    }
-
-    private double min(double[] values) {
-        double min = Double.MAX_VALUE;
-
-        for (double value : values) {
-            min = Math.min(min, value);
-        }
-
-        return min;
-    }
-
-    private double max(double[] values) {
-        double max = Double.MIN_VALUE;
-
-        for (double value : values) {
-            max = Math.max(max, value);
+        double[] coordinates = new double[CONTROL_POINT_COORDINATES];
+        getControlPoints(confidenceLevel, coordinates, 0);
+
+        // Jama wants the points column by column
+        double[] columns = new double[CONTROL_POINT_COORDINATES];
+        for (int i = 0; i < 13; i++) {
+            columns[i] = coordinates[2 * i];
+            columns[13 + i] = coordinates[2 * i + 1];
         }
 
-        return max;
+        return new Matrix(columns, 13);
     }
 }
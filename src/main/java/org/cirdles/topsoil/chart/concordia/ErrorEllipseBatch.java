@@ -0,0 +1,327 @@
+/*
+ * Copyright 2014 CIRDLES.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cirdles.topsoil.chart.concordia;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Many error ellipses held as one array per property, so that their control points and bounds can be computed in
+ * tight loops over primitives rather than through the getters of one {@link ErrorEllipse} after another. Batches
+ * larger than {@link #PARALLEL_THRESHOLD} are split across the common <code>ForkJoinPool</code>.
+ * <p>
+ * A batch is meant to be refilled rather than recreated, so that its arrays are reused from one layout to the next.
+ *
+ * @author John Zeringue <john.joseph.zeringue@gmail.com>
+ */
+public class ErrorEllipseBatch {
+
+    /**
+     * The number of ellipses above which work is split between threads.
+     */
+    public static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    private double[] x;
+    private double[] sigmaX;
+    private double[] y;
+    private double[] sigmaY;
+    private double[] rho;
+    private int size;
+
+    public ErrorEllipseBatch() {
+        this(16);
+    }
+
+    public ErrorEllipseBatch(int capacity) {
+        x = new double[capacity];
+        sigmaX = new double[capacity];
+        y = new double[capacity];
+        sigmaY = new double[capacity];
+        rho = new double[capacity];
+    }
+
+    /**
+     * Creates a batch around existing arrays, which are used as they are rather than copied.
+     *
+     * @param x the x of each centre
+     * @param sigmaX the standard deviation of each ellipse along x
+     * @param y the y of each centre
+     * @param sigmaY the standard deviation of each ellipse along y
+     * @param rho the correlation coefficient of each ellipse
+     * @param size the number of ellipses
+     */
+    public ErrorEllipseBatch(double[] x, double[] sigmaX, double[] y, double[] sigmaY, double[] rho, int size) {
+        this.x = x;
+        this.sigmaX = sigmaX;
+        this.y = y;
+        this.sigmaY = sigmaY;
+        this.rho = rho;
+        this.size = size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public void add(ErrorEllipse errorEllipse) {
+        add(errorEllipse.getX(), errorEllipse.getSigmaX(), errorEllipse.getY(), errorEllipse.getSigmaY(),
+            errorEllipse.getRho());
+    }
+
+    public void add(double x, double sigmaX, double y, double sigmaY, double rho) {
+        if (size == this.x.length) {
+            int capacity = Math.max(16, size * 2);
+            this.x = Arrays.copyOf(this.x, capacity);
+            this.sigmaX = Arrays.copyOf(this.sigmaX, capacity);
+            this.y = Arrays.copyOf(this.y, capacity);
+            this.sigmaY = Arrays.copyOf(this.sigmaY, capacity);
+            this.rho = Arrays.copyOf(this.rho, capacity);
+        }
+
+        this.x[size] = x;
+        this.sigmaX[size] = sigmaX;
+        this.y[size] = y;
+        this.sigmaY[size] = sigmaY;
+        this.rho[size] = rho;
+        size++;
+    }
+
+    /**
+     * Replaces an ellipse already in this batch.
+     *
+     * @param index the index of the ellipse
+     * @param errorEllipse the new ellipse
+     */
+    public void set(int index, ErrorEllipse errorEllipse) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Ellipse " + index + " of " + size);
+        }
+
+        x[index] = errorEllipse.getX();
+        sigmaX[index] = errorEllipse.getSigmaX();
+        y[index] = errorEllipse.getY();
+        sigmaY[index] = errorEllipse.getSigmaY();
+        rho[index] = errorEllipse.getRho();
+    }
+
+    public double getX(int index) {
+        return x[index];
+    }
+
+    public double getY(int index) {
+        return y[index];
+    }
+
+    public double getSigmaX(int index) {
+        return sigmaX[index];
+    }
+
+    public double getSigmaY(int index) {
+        return sigmaY[index];
+    }
+
+    public double getRho(int index) {
+        return rho[index];
+    }
+
+    /**
+     * Writes the control points of every ellipse into an array, as
+     * {@link ErrorEllipse#calculateControlPoints(double, double, double, double, double, double, double[], int)} would
+     * write them one ellipse at a time.
+     *
+     * @param confidenceLevel the number of standard deviations the ellipses reach
+     * @param dest the array to write to
+     * @param offset the index of the first ellipse's first coordinate
+     * @param stride the distance between the first coordinates of consecutive ellipses, at least
+     * {@link ErrorEllipse#CONTROL_POINT_COORDINATES}
+     */
+    public void computeControlPoints(double confidenceLevel, double[] dest, int offset, int stride) {
+        forEachRange((from, to) -> {
+            for (int i = from; i < to; i++) {
+                ErrorEllipse.calculateControlPoints(x[i], sigmaX[i], y[i], sigmaY[i], rho[i], confidenceLevel,
+                                                    dest, offset + i * stride);
+            }
+        });
+    }
+
+    /**
+     * Writes the control points of some of the ellipses into an array, one after another.
+     *
+     * @param confidenceLevel the number of standard deviations the ellipses reach
+     * @param indices the indices of the ellipses
+     * @param count the number of indices to use
+     * @param dest the array to write to
+     * @param offset the index of the first ellipse's first coordinate
+     * @param stride the distance between the first coordinates of consecutive ellipses, at least
+     * {@link ErrorEllipse#CONTROL_POINT_COORDINATES}
+     */
+    public void computeControlPoints(double confidenceLevel, int[] indices, int count,
+                                     double[] dest, int offset, int stride) {
+        for (int k = 0; k < count; k++) {
+            int i = indices[k];
+            ErrorEllipse.calculateControlPoints(x[i], sigmaX[i], y[i], sigmaY[i], rho[i], confidenceLevel,
+                                                dest, offset + k * stride);
+        }
+    }
+
+    /**
+     * Writes the bounding box of every ellipse into an array as four values apiece: minimum x, maximum x, minimum y and
+     * maximum y. The boxes are exact, as for {@link ErrorEllipse#getMinX(double)} and the like.
+     *
+     * @param confidenceLevel the number of standard deviations the ellipses reach
+     * @param dest the array to write <code>4 * size()</code> values to
+     */
+    public void computeBounds(double confidenceLevel, double[] dest) {
+        forEachRange((from, to) -> {
+            for (int i = from; i < to; i++) {
+                double halfWidth = confidenceLevel * Math.abs(sigmaX[i]);
+                double halfHeight = confidenceLevel * Math.abs(sigmaY[i]);
+
+                dest[4 * i] = x[i] - halfWidth;
+                dest[4 * i + 1] = x[i] + halfWidth;
+                dest[4 * i + 2] = y[i] - halfHeight;
+                dest[4 * i + 3] = y[i] + halfHeight;
+            }
+        });
+    }
+
+    /**
+     * Computes the box bounding every ellipse at once, which is what autoranging needs.
+     *
+     * @param confidenceLevel the number of standard deviations the ellipses reach
+     * @return the minimum x, maximum x, minimum y and maximum y, or infinities of the wrong sign if the batch has no
+     * ellipse with finite bounds
+     */
+    public double[] computeExtent(double confidenceLevel) {
+        if (size <= PARALLEL_THRESHOLD) {
+            return computeExtent(confidenceLevel, 0, size);
+        }
+
+        return ForkJoinPool.commonPool().invoke(new ExtentTask(confidenceLevel, 0, size));
+    }
+
+    private double[] computeExtent(double confidenceLevel, int from, int to) {
+        double minX = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+
+        for (int i = from; i < to; i++) {
+            double halfWidth = confidenceLevel * Math.abs(sigmaX[i]);
+            double halfHeight = confidenceLevel * Math.abs(sigmaY[i]);
+
+            // ellipses with missing values aren't drawn, and Math.min and Math.max would carry their NaNs along
+            if (!isFinite(x[i] - halfWidth) || !isFinite(x[i] + halfWidth)
+                    || !isFinite(y[i] - halfHeight) || !isFinite(y[i] + halfHeight)) {
+                continue;
+            }
+
+            minX = Math.min(minX, x[i] - halfWidth);
+            maxX = Math.max(maxX, x[i] + halfWidth);
+            minY = Math.min(minY, y[i] - halfHeight);
+            maxY = Math.max(maxY, y[i] + halfHeight);
+        }
+
+        return new double[]{minX, maxX, minY, maxY};
+    }
+
+    private static boolean isFinite(double value) {
+        return !Double.isNaN(value) && !Double.isInfinite(value);
+    }
+
+    private void forEachRange(RangeAction action) {
+        if (size <= PARALLEL_THRESHOLD) {
+            action.run(0, size);
+        } else {
+            ForkJoinPool.commonPool().invoke(new RangeTask(action, 0, size));
+        }
+    }
+
+    /**
+     * Computes the extent of a range of ellipses, splitting it in half and merging the halves' extents while it is too
+     * large for one thread.
+     */
+    private final class ExtentTask extends RecursiveTask<double[]> {
+
+        private final double confidenceLevel;
+        private final int from;
+        private final int to;
+
+        ExtentTask(double confidenceLevel, int from, int to) {
+            this.confidenceLevel = confidenceLevel;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected double[] compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                return computeExtent(confidenceLevel, from, to);
+            }
+
+            int middle = (from + to) >>> 1;
+            ExtentTask left = new ExtentTask(confidenceLevel, from, middle);
+            left.fork();
+            double[] right = new ExtentTask(confidenceLevel, middle, to).compute();
+            double[] extent = left.join();
+
+            extent[0] = Math.min(extent[0], right[0]);
+            extent[1] = Math.max(extent[1], right[1]);
+            extent[2] = Math.min(extent[2], right[2]);
+            extent[3] = Math.max(extent[3], right[3]);
+
+            return extent;
+        }
+    }
+
+    @FunctionalInterface
+    private interface RangeAction {
+
+        void run(int from, int to);
+    }
+
+    /**
+     * Splits a range of ellipses in half until the halves are small enough to be worth a thread each.
+     */
+    private static final class RangeTask extends RecursiveAction {
+
+        private final RangeAction action;
+        private final int from;
+        private final int to;
+
+        RangeTask(RangeAction action, int from, int to) {
+            this.action = action;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                action.run(from, to);
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new RangeTask(action, from, middle), new RangeTask(action, middle, to));
+            }
+        }
+    }
+}
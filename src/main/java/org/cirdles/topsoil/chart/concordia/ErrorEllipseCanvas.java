@@ -0,0 +1,181 @@
+/*
+ * Copyright 2014 CIRDLES.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cirdles.topsoil.chart.concordia;
+
+import java.util.ArrayList;
+import java.util.List;
+import javafx.beans.InvalidationListener;
+import javafx.scene.Node;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Circle;
+import javafx.scene.shape.ClosePath;
+import javafx.scene.shape.CubicCurveTo;
+import javafx.scene.shape.MoveTo;
+import javafx.scene.shape.Path;
+import org.cirdles.jfxutils.VectorConvertible;
+
+/**
+ * Draws the fills, outlines and centres of many error ellipses into a single canvas. The ellipses are held as display
+ * coordinates, so changing the chart's ellipse colours, fill opacity or outline visibility only repaints the canvas.
+ * When the chart is exported, the canvas stands in as the same paths and circles {@link ErrorEllipseFiller} and
+ * {@link ErrorEllipsePlotter} would have created, though always with full curves since an export can be zoomed into.
+ *
+ * @author John Zeringue <john.joseph.zeringue@gmail.com>
+ */
+public class ErrorEllipseCanvas extends Canvas implements VectorConvertible {
+
+    /**
+     * The number of coordinates stored per ellipse: thirteen Bezier points followed by the centre.
+     */
+    static final int STRIDE = 28;
+
+    private static final double OUTLINE_WIDTH = 2;
+    private static final double CENTER_RADIUS = 3;
+
+    private final ErrorEllipseChart chart;
+
+    private double[] coordinates = new double[0];
+    private int count;
+
+    // the detail each ellipse is painted with, chosen once per repaint
+    private ErrorEllipseDetail[] details = new ErrorEllipseDetail[0];
+
+    public ErrorEllipseCanvas(ErrorEllipseChart chart) {
+        this.chart = chart;
+
+        // the canvas doesn't take part in picking, so the chart can still be dragged and zoomed
+        setMouseTransparent(true);
+
+        InvalidationListener styleListener = observable -> draw();
+        chart.ellipseFillColorProperty().addListener(styleListener);
+        chart.ellipseFillOpacityProperty().addListener(styleListener);
+        chart.ellipseOutlineColorProperty().addListener(styleListener);
+        chart.ellipseOutlineShownProperty().addListener(styleListener);
+    }
+
+    /**
+     * Returns an array to hold the display coordinates of <code>count</code> ellipses, {@link #STRIDE} to an ellipse,
+     * reusing the current one if it's large enough. The array isn't drawn until {@link #setCount(int)} is called.
+     *
+     * @param count the number of ellipses
+     * @return the array to fill
+     */
+    double[] coordinates(int count) {
+        if (coordinates.length < count * STRIDE) {
+            coordinates = new double[count * STRIDE];
+        }
+
+        return coordinates;
+    }
+
+    /**
+     * Sets how many of the ellipses in the coordinate array are shown and repaints the canvas.
+     *
+     * @param count the number of ellipses
+     */
+    void setCount(int count) {
+        this.count = count;
+        draw();
+    }
+
+    /**
+     * Repaints the canvas with the chart's current ellipse style.
+     */
+    public void draw() {
+        GraphicsContext graphics = getGraphicsContext2D();
+        graphics.clearRect(0, 0, getWidth(), getHeight());
+
+        if (details.length < count) {
+            details = new ErrorEllipseDetail[count];
+        }
+
+        for (int i = 0; i < count; i++) {
+            details[i] = chart.getErrorEllipseDetail(coordinates, i * STRIDE);
+        }
+
+        // every fill goes under every outline, as with nodes
+        graphics.setGlobalAlpha(chart.ellipseFillOpacityProperty().get());
+        graphics.setFill(chart.ellipseFillColorProperty().get());
+        for (int i = 0; i < count; i++) {
+            if (details[i].trace(graphics, coordinates, i * STRIDE)) {
+                graphics.fill();
+            }
+        }
+
+        graphics.setGlobalAlpha(1);
+        if (chart.ellipseOutlineShownProperty().get()) {
+            graphics.setStroke(chart.ellipseOutlineColorProperty().get());
+            graphics.setLineWidth(OUTLINE_WIDTH);
+            for (int i = 0; i < count; i++) {
+                if (details[i].trace(graphics, coordinates, i * STRIDE)) {
+                    graphics.stroke();
+                }
+            }
+        }
+
+        graphics.setFill(Color.BLACK);
+        for (int i = 0; i < count; i++) {
+            int offset = i * STRIDE;
+            graphics.fillOval(coordinates[offset + 26] - CENTER_RADIUS, coordinates[offset + 27] - CENTER_RADIUS,
+                              2 * CENTER_RADIUS, 2 * CENTER_RADIUS);
+        }
+    }
+
+    @Override
+    public List<Node> toVectorNodes() {
+        List<Node> nodes = new ArrayList<>(count * 3);
+
+        for (int i = 0; i < count; i++) {
+            Path fill = createPath(i * STRIDE);
+            fill.setStroke(Color.TRANSPARENT);
+            fill.setFill(chart.ellipseFillColorProperty().get());
+            fill.setOpacity(chart.ellipseFillOpacityProperty().get());
+            nodes.add(fill);
+        }
+
+        for (int i = 0; i < count; i++) {
+            int offset = i * STRIDE;
+
+            if (chart.ellipseOutlineShownProperty().get()) {
+                Path outline = createPath(offset);
+                outline.setStroke(chart.ellipseOutlineColorProperty().get());
+                outline.setStrokeWidth(OUTLINE_WIDTH);
+                outline.setFill(Color.TRANSPARENT);
+                nodes.add(outline);
+            }
+
+            nodes.add(new Circle(coordinates[offset + 26], coordinates[offset + 27], CENTER_RADIUS));
+        }
+
+        return nodes;
+    }
+
+    private Path createPath(int offset) {
+        Path path = new Path(new MoveTo(coordinates[offset], coordinates[offset + 1]));
+
+        for (int j = offset + 2; j < offset + 26; j += 6) {
+            path.getElements().add(new CubicCurveTo(coordinates[j], coordinates[j + 1],
+                                                    coordinates[j + 2], coordinates[j + 3],
+                                                    coordinates[j + 4], coordinates[j + 5]));
+        }
+
+        path.getElements().add(new ClosePath());
+
+        return path;
+    }
+}
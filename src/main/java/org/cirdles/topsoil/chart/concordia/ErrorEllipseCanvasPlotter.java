@@ -0,0 +1,81 @@
+/*
+ * Copyright 2014 CIRDLES.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cirdles.topsoil.chart.concordia;
+
+import javafx.scene.Node;
+import org.cirdles.topsoil.chart.Plotter;
+
+/**
+ * Plots a whole batch of error ellipses into one {@link ErrorEllipseCanvas}, which is reused from one layout to the
+ * next. This is what an {@link ErrorEllipseChart} uses instead of {@link ErrorEllipseFiller} and
+ * {@link ErrorEllipsePlotter} once it has too many ellipses for a node apiece.
+ *
+ * @author John Zeringue <john.joseph.zeringue@gmail.com>
+ */
+public class ErrorEllipseCanvasPlotter extends Plotter<ErrorEllipseBatch, ErrorEllipseChart> {
+
+    private final ErrorEllipseCanvas canvas;
+
+    public ErrorEllipseCanvasPlotter(ErrorEllipseChart chart) {
+        super(chart);
+        canvas = new ErrorEllipseCanvas(chart);
+    }
+
+    @Override
+    public Node plot(ErrorEllipseBatch errorEllipses) {
+        int[] indices = new int[errorEllipses.size()];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = i;
+        }
+
+        return plot(errorEllipses, indices, indices.length);
+    }
+
+    /**
+     * Plots some of the ellipses of a batch, such as those in view.
+     *
+     * @param errorEllipses the ellipses
+     * @param indices the indices of the ellipses to plot, in drawing order
+     * @param count the number of indices to use
+     * @return the canvas
+     */
+    public Node plot(ErrorEllipseBatch errorEllipses, int[] indices, int count) {
+        // the canvas covers the plot area, which is where the axes map values to
+        canvas.setWidth(chart.getXAxis().getWidth());
+        canvas.setHeight(chart.getYAxis().getHeight());
+
+        double[] coordinates = canvas.coordinates(count);
+
+        // written in data coordinates, then mapped to the display in place
+        errorEllipses.computeControlPoints(chart.getConfidenceLevel(), indices, count,
+                                           coordinates, 0, ErrorEllipseCanvas.STRIDE);
+
+        for (int k = 0; k < count; k++) {
+            int offset = k * ErrorEllipseCanvas.STRIDE;
+            coordinates[offset + 26] = errorEllipses.getX(indices[k]);
+            coordinates[offset + 27] = errorEllipses.getY(indices[k]);
+
+            for (int i = offset; i < offset + ErrorEllipseCanvas.STRIDE; i += 2) {
+                coordinates[i] = mapXToDisplay(coordinates[i]);
+                coordinates[i + 1] = mapYToDisplay(coordinates[i + 1]);
+            }
+        }
+
+        canvas.setCount(count);
+
+        return canvas;
+    }
+}
@@ -17,12 +17,22 @@
 package org.cirdles.topsoil.chart.concordia;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import javafx.animation.FadeTransition;
+import javafx.beans.InvalidationListener;
+import javafx.beans.Observable;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.DoublePropertyBase;
+import javafx.beans.property.IntegerProperty;
+import javafx.beans.property.IntegerPropertyBase;
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.ObjectPropertyBase;
 import javafx.beans.property.SimpleBooleanProperty;
@@ -30,15 +40,13 @@ import javafx.beans.property.SimpleDoubleProperty;
 import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.value.ObservableValue;
 import javafx.collections.ObservableList;
+import javafx.scene.Group;
 import javafx.scene.Node;
 import javafx.scene.chart.Axis;
 import javafx.scene.chart.XYChart.Data;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 import javafx.util.Duration;
-import org.cirdles.math.ParametricCurve2D;
-import org.cirdles.math.TeraWasserburgCurve;
-import org.cirdles.math.WetherillCurve;
 import org.cirdles.topsoil.chart.DataConverter;
 import org.cirdles.topsoil.chart.NumberAxis;
 import org.cirdles.topsoil.chart.NumberChart;
@@ -97,6 +105,48 @@ public class ErrorEllipseChart extends NumberChart {
         concordiaLineType.set(type);
     }
 
+    /**
+     * The largest distance in pixels allowed between the drawn concordia line and the curve. See
+     * {@link ConcordiaGeometry#approximate(double, double, double, double, double)}.
+     */
+    public static final double concordiaLineToleranceDefault = 0.25;
+
+    private final DoubleProperty concordiaLineTolerance = new DoublePropertyBase(concordiaLineToleranceDefault) {
+
+        @Override
+        public Object getBean() {
+            return ErrorEllipseChart.this;
+        }
+
+        @Override
+        public String getName() {
+            return "concordiaLineTolerance";
+        }
+
+        @Override
+        protected void invalidated() {
+            layoutPlotChildren();
+        }
+    };
+
+    /**
+     * The tolerance the concordia line is drawn to, in pixels. A tolerance of zero or less draws the line as a fixed
+     * number of even pieces instead.
+     *
+     * @return the tolerance
+     */
+    public DoubleProperty concordiaLineToleranceProperty() {
+        return concordiaLineTolerance;
+    }
+
+    public double getConcordiaLineTolerance() {
+        return concordiaLineTolerance.get();
+    }
+
+    public void setConcordiaLineTolerance(double tolerance) {
+        concordiaLineTolerance.set(tolerance);
+    }
+
     private final ObjectProperty<DataConverter<ErrorEllipse>> converter;
 
     public DataConverter<ErrorEllipse> getConverter() {
@@ -111,9 +161,221 @@ public class ErrorEllipseChart extends NumberChart {
         return converter;
     }
 
+    /**
+     * The number of ellipses above which {@link ErrorEllipseRenderMode#AUTOMATIC} draws into a canvas. Each ellipse
+     * otherwise takes four nodes.
+     */
+    public static final int canvasThresholdDefault = 2000;
+
+    /**
+     * The number of ellipses above which {@link ErrorEllipseRenderMode#AUTOMATIC} shows their density instead, since
+     * that many can't be told apart.
+     */
+    public static final int densityThresholdDefault = 100000;
+
+    private final ObjectProperty<ErrorEllipseRenderMode> renderMode = new ObjectPropertyBase<ErrorEllipseRenderMode>(ErrorEllipseRenderMode.AUTOMATIC) {
+
+        @Override
+        public Object getBean() {
+            return ErrorEllipseChart.this;
+        }
+
+        @Override
+        public String getName() {
+            return "renderMode";
+        }
+
+        @Override
+        protected void invalidated() {
+            layoutPlotChildren();
+        }
+    };
+
+    public ObjectProperty<ErrorEllipseRenderMode> renderModeProperty() {
+        return renderMode;
+    }
+
+    public ErrorEllipseRenderMode getRenderMode() {
+        return renderMode.get();
+    }
+
+    public void setRenderMode(ErrorEllipseRenderMode mode) {
+        renderMode.set(mode);
+    }
+
+    private final IntegerProperty canvasThreshold = new IntegerPropertyBase(canvasThresholdDefault) {
+
+        @Override
+        public Object getBean() {
+            return ErrorEllipseChart.this;
+        }
+
+        @Override
+        public String getName() {
+            return "canvasThreshold";
+        }
+
+        @Override
+        protected void invalidated() {
+            if (getRenderMode() == ErrorEllipseRenderMode.AUTOMATIC) {
+                layoutPlotChildren();
+            }
+        }
+    };
+
+    public IntegerProperty canvasThresholdProperty() {
+        return canvasThreshold;
+    }
+
+    public int getCanvasThreshold() {
+        return canvasThreshold.get();
+    }
+
+    public void setCanvasThreshold(int threshold) {
+        canvasThreshold.set(threshold);
+    }
+
+    /**
+     * The size in pixels below which ellipses are drawn as points. See {@link ErrorEllipseDetail}.
+     */
+    public static final double pointDetailThresholdDefault = 1;
+
+    /**
+     * The size in pixels from which ellipses are drawn with full curves rather than polygons. See
+     * {@link ErrorEllipseDetail}.
+     */
+    public static final double curveDetailThresholdDefault = 16;
+
+    private final DoubleProperty pointDetailThreshold = new DoublePropertyBase(pointDetailThresholdDefault) {
+
+        @Override
+        public Object getBean() {
+            return ErrorEllipseChart.this;
+        }
+
+        @Override
+        public String getName() {
+            return "pointDetailThreshold";
+        }
+
+        @Override
+        protected void invalidated() {
+            layoutPlotChildren();
+        }
+    };
+
+    public DoubleProperty pointDetailThresholdProperty() {
+        return pointDetailThreshold;
+    }
+
+    public double getPointDetailThreshold() {
+        return pointDetailThreshold.get();
+    }
+
+    public void setPointDetailThreshold(double threshold) {
+        pointDetailThreshold.set(threshold);
+    }
+
+    private final DoubleProperty curveDetailThreshold = new DoublePropertyBase(curveDetailThresholdDefault) {
+
+        @Override
+        public Object getBean() {
+            return ErrorEllipseChart.this;
+        }
+
+        @Override
+        public String getName() {
+            return "curveDetailThreshold";
+        }
+
+        @Override
+        protected void invalidated() {
+            layoutPlotChildren();
+        }
+    };
+
+    public DoubleProperty curveDetailThresholdProperty() {
+        return curveDetailThreshold;
+    }
+
+    public double getCurveDetailThreshold() {
+        return curveDetailThreshold.get();
+    }
+
+    public void setCurveDetailThreshold(double threshold) {
+        curveDetailThreshold.set(threshold);
+    }
+
+    private final IntegerProperty densityThreshold = new IntegerPropertyBase(densityThresholdDefault) {
+
+        @Override
+        public Object getBean() {
+            return ErrorEllipseChart.this;
+        }
+
+        @Override
+        public String getName() {
+            return "densityThreshold";
+        }
+
+        @Override
+        protected void invalidated() {
+            if (getRenderMode() == ErrorEllipseRenderMode.AUTOMATIC) {
+                layoutPlotChildren();
+            }
+        }
+    };
+
+    public IntegerProperty densityThresholdProperty() {
+        return densityThreshold;
+    }
+
+    public int getDensityThreshold() {
+        return densityThreshold.get();
+    }
+
+    public void setDensityThreshold(int threshold) {
+        densityThreshold.set(threshold);
+    }
+
     private final ErrorEllipsePlotter errorEllipsePlotter;
     private final ErrorEllipseFiller errorEllipseFiller;
+    private final ErrorEllipseCanvasPlotter errorEllipseCanvasPlotter;
+    private final ErrorEllipseDensityPlotter errorEllipseDensityPlotter;
     private final ConcordiaLinePlotter concordiaLinePlotter;
+    private final Map<ConcordiaLineType, ConcordiaGeometry> concordiaGeometries = new EnumMap<>(ConcordiaLineType.class);
+
+    // the plot children, which stay put while the nodes in them are moved
+    private final Group concordiaLineLayer = new Group();
+    private final Group fillLayer = new Group();
+    private final Group outlineLayer = new Group();
+    private final Group canvasLayer = new Group();
+
+    // the fill and outline of every item, while nodes are used
+    private final Map<Data<Number, Number>, Node[]> itemNodes = new HashMap<>();
+
+    // every item converted, so that an ellipse is converted once per change rather than on every layout
+    private final Map<Data<Number, Number>, CachedErrorEllipse> errorEllipses = new HashMap<>();
+
+    // the cached ellipses as arrays, refilled whenever they're all needed at once
+    private final ErrorEllipseBatch errorEllipseBatch = new ErrorEllipseBatch();
+
+    // the items behind the ellipses of the batch, in the same order
+    private final List<Data<Number, Number>> batchItems = new ArrayList<>();
+
+    // the bounds of the ellipses in the batch, indexed so that a layout only handles the ellipses in view
+    private final ErrorEllipseGrid errorEllipseGrid = new ErrorEllipseGrid();
+    private double[] errorEllipseBounds = new double[0];
+    private boolean errorEllipseGridValid;
+    private boolean errorEllipsesReconverted;
+    private int[] visibleIndices;
+
+    // items added since the last layout, which fade in once they get nodes
+    private final Set<Data<Number, Number>> fadingIn = new HashSet<>();
+
+    private ErrorEllipseRenderMode activeRenderMode = ErrorEllipseRenderMode.NODES;
+
+    private final InvalidationListener converterListener = observable -> converterInvalidated();
 
     ConcordiaLine concordiaLine;
 
@@ -131,6 +393,7 @@ public class ErrorEllipseChart extends NumberChart {
 
         @Override
         protected void invalidated() {
+            errorEllipseGridValid = false;
             layoutPlotChildren();
         }
     };
@@ -187,9 +450,25 @@ public class ErrorEllipseChart extends NumberChart {
 
         errorEllipsePlotter = new ErrorEllipsePlotter(this);
         errorEllipseFiller = new ErrorEllipseFiller(this);
+        errorEllipseCanvasPlotter = new ErrorEllipseCanvasPlotter(this);
+        errorEllipseDensityPlotter = new ErrorEllipseDensityPlotter(this);
         concordiaLinePlotter = new ConcordiaLinePlotter(this);
 
+        getPlotChildren().addAll(concordiaLineLayer, fillLayer, outlineLayer, canvasLayer);
+
         this.converter = new SimpleObjectProperty<>();
+        this.converter.addListener((ObservableValue<? extends DataConverter<ErrorEllipse>> observable,
+                                    DataConverter<ErrorEllipse> oldValue, DataConverter<ErrorEllipse> newValue) -> {
+            if (oldValue instanceof Observable) {
+                ((Observable) oldValue).removeListener(converterListener);
+            }
+
+            if (newValue instanceof Observable) {
+                ((Observable) newValue).addListener(converterListener);
+            }
+
+            converterInvalidated();
+        });
         this.converter.set(converter);
 
         concordiaLineFontFamily.addListener((ObservableValue<? extends String> observable, String oldValue, String newValue) -> {
@@ -207,40 +486,48 @@ public class ErrorEllipseChart extends NumberChart {
     protected void dataItemAdded(Series<Number, Number> series, int itemIndex, Data<Number, Number> item) {
 //        item.getNode().getStyleClass().add("series" + getData().indexOf(series));
 
+        // the next layout creates nodes for the item if it's in view
+        errorEllipseGridValid = false;
+
         if (shouldAnimate()) {
-            getPlotChildren().add(
-                    errorEllipsePlotter.plot(converter.get().convert(item)));
-            getPlotChildren().add(item.getNode());
-            // fade in
-            FadeTransition fadeIn = new FadeTransition(Duration.millis(500), item.getNode());
-            fadeIn.setToValue(1);
-            fadeIn.play();
-        } else {
-            getPlotChildren().add(
-                    errorEllipsePlotter.plot(converter.get().convert(item)));
+            fadingIn.add(item);
         }
     }
 
     @Override
     protected void dataItemRemoved(Data<Number, Number> item, Series<Number, Number> series) {
-        final Node ellipse = item.getNode();
+        errorEllipses.remove(item);
+        errorEllipseGridValid = false;
+        fadingIn.remove(item);
+
+        final Node[] nodes = itemNodes.remove(item);
+
+        if (nodes == null) {
+            // drawn on the canvas or out of view, which the next layout takes care of
+            return;
+        }
 
         if (shouldAnimate()) {
             // fade out
-            FadeTransition fadeOut = new FadeTransition(Duration.millis(500), ellipse);
-            fadeOut.setToValue(0);
-            fadeOut.setOnFinished(event -> {
-                getPlotChildren().remove(ellipse);
-            });
-            fadeOut.play();
+            for (Node node : nodes) {
+                FadeTransition fadeOut = new FadeTransition(Duration.millis(500), node);
+                fadeOut.setToValue(0);
+                fadeOut.setOnFinished(event -> {
+                    removeItemNode(node);
+                });
+                fadeOut.play();
+            }
         } else {
-            getPlotChildren().remove(ellipse);
+            for (Node node : nodes) {
+                removeItemNode(node);
+            }
         }
     }
 
     @Override
     protected void dataItemChanged(Data<Number, Number> data) {
-
+        errorEllipses.remove(data);
+        errorEllipseGridValid = false;
     }
 
     @Override
@@ -262,18 +549,21 @@ public class ErrorEllipseChart extends NumberChart {
 
     @Override
     protected void layoutPlotChildren() {
-        getPlotChildren().clear();
+        Node concordiaLineNode = null;
 
         if (getConcordiaLineType() != ConcordiaLineType.NONE) {
-            ParametricCurve2D curve = getConcordiaLineType() == ConcordiaLineType.WETHERILL
-                                      ? new WetherillCurve()
-                                      : new TeraWasserburgCurve();
+            // worked out once per type of curve, so a layout only has to find the part in view
+            ConcordiaGeometry geometry = concordiaGeometries.computeIfAbsent(getConcordiaLineType(),
+                                                                             ConcordiaGeometry::of);
 
-            Node node = concordiaLinePlotter.plot(curve);
+            concordiaLineNode = concordiaLinePlotter.plot(geometry);
+        }
 
-            if (node != null) {
-                getPlotChildren().add(node);
-            }
+        // the plotter updates the same node in place, which only has to be added or removed
+        if (concordiaLineNode == null) {
+            concordiaLineLayer.getChildren().clear();
+        } else if (!concordiaLineLayer.getChildren().contains(concordiaLineNode)) {
+            concordiaLineLayer.getChildren().setAll(concordiaLineNode);
         }
 
         // we have nothing to layout if no data is present
@@ -281,21 +571,220 @@ public class ErrorEllipseChart extends NumberChart {
             return;
         }
 
-        // add ellipse fills
-        getData().stream().forEach(series -> {
-            series.getData().stream().forEach(item -> {
-                getPlotChildren().add(
-                        errorEllipseFiller.plot(converter.get().convert(item)));
-            });
+        int visibleCount = findVisibleItems();
+
+        if (refreshErrorEllipses(visibleIndices, visibleCount)) {
+            // an edited item may have moved in or out of view, and the axes may have to take it in
+            indexErrorEllipseBatch();
+            visibleCount = findVisibleItems();
+            updateAxisRange();
+            requestChartLayout();
+        }
+
+        activeRenderMode = chooseRenderMode(visibleCount);
+
+        if (activeRenderMode != ErrorEllipseRenderMode.NODES) {
+            // the nodes aren't needed any more
+            itemNodes.clear();
+            fillLayer.getChildren().clear();
+            outlineLayer.getChildren().clear();
+
+            // the density takes in every ellipse, since those out of view can still reach into it
+            Node canvas = activeRenderMode == ErrorEllipseRenderMode.DENSITY
+                          ? errorEllipseDensityPlotter.plot(errorEllipseBatch)
+                          : errorEllipseCanvasPlotter.plot(errorEllipseBatch, visibleIndices, visibleCount);
+            if (canvas.getParent() != canvasLayer) {
+                canvasLayer.getChildren().setAll(canvas);
+            }
+
+            return;
+        }
+
+        canvasLayer.getChildren().clear();
+
+        Set<Data<Number, Number>> visibleItems = new HashSet<>(visibleCount * 2);
+        for (int i = 0; i < visibleCount; i++) {
+            visibleItems.add(batchItems.get(visibleIndices[i]));
+        }
+
+        // drop the nodes of the items that have left the view
+        Set<Node> hiddenNodes = new HashSet<>();
+        itemNodes.entrySet().removeIf(entry -> {
+            if (visibleItems.contains(entry.getKey())) {
+                return false;
+            }
+
+            hiddenNodes.addAll(Arrays.asList(entry.getValue()));
+            return true;
         });
 
-        // update ellipse positions
+        if (!hiddenNodes.isEmpty()) {
+            fillLayer.getChildren().removeAll(hiddenNodes);
+            outlineLayer.getChildren().removeAll(hiddenNodes);
+        }
+
+        // move the existing nodes, creating those missing for items that have come into view
+        for (int i = 0; i < visibleCount; i++) {
+            Data<Number, Number> item = batchItems.get(visibleIndices[i]);
+            ErrorEllipse errorEllipse = getErrorEllipse(item);
+            Node[] nodes = itemNodes.get(item);
+
+            if (nodes == null) {
+                nodes = createItemNodes(item, errorEllipse);
+
+                if (fadingIn.remove(item)) {
+                    fadeIn(nodes);
+                }
+            } else {
+                errorEllipseFiller.update(nodes[0], errorEllipse);
+                errorEllipsePlotter.update(nodes[1], errorEllipse);
+            }
+        }
+    }
+
+    /**
+     * Finds the ellipses that intersect the plot area, rebuilding the grid first if the data has changed since it was
+     * built. Their indices in the batch are left in <code>visibleIndices</code>, in data order.
+     *
+     * @return the number of ellipses found
+     */
+    private int findVisibleItems() {
+        buildErrorEllipseGrid();
+
+        NumberAxis xAxis = getXAxis();
+        NumberAxis yAxis = getYAxis();
+
+        // a few pixels of slack for the outlines and centres drawn around the ellipses
+        double slack = 4;
+        double x0 = xAxis.getValueForDisplay(-slack).doubleValue();
+        double x1 = xAxis.getValueForDisplay(xAxis.getWidth() + slack).doubleValue();
+        double y0 = yAxis.getValueForDisplay(yAxis.getHeight() + slack).doubleValue();
+        double y1 = yAxis.getValueForDisplay(-slack).doubleValue();
+
+        visibleIndices = errorEllipseGrid.query(Math.min(x0, x1), Math.max(x0, x1),
+                                                Math.min(y0, y1), Math.max(y0, y1), visibleIndices);
+
+        return errorEllipseGrid.getFound();
+    }
+
+    /**
+     * Refills the batch and rebuilds the grid over its bounds, unless nothing has changed since they were last built.
+     */
+    private void buildErrorEllipseGrid() {
+        if (errorEllipseGridValid) {
+            return;
+        }
+
+        fillErrorEllipseBatch();
+        indexErrorEllipseBatch();
+    }
+
+    /**
+     * Rebuilds the grid over the bounds of the ellipses in the batch as they are now.
+     */
+    private void indexErrorEllipseBatch() {
+        int count = errorEllipseBatch.size();
+        if (errorEllipseBounds.length < 4 * count) {
+            errorEllipseBounds = new double[4 * count];
+        }
+
+        errorEllipseBatch.computeBounds(getConfidenceLevel(), errorEllipseBounds);
+        errorEllipseGrid.build(errorEllipseBounds, count);
+        errorEllipseGridValid = true;
+        errorEllipseDensityPlotter.invalidate();
+    }
+
+    /**
+     * Converts again the items behind some entries of the batch that the converter reports have been edited since they
+     * were converted, and updates those entries. The bounds and grid are left for the caller to rebuild.
+     *
+     * @param indices the indices of the entries to check
+     * @param count the number of indices
+     * @return whether any entry changed
+     */
+    private boolean refreshErrorEllipses(int[] indices, int count) {
+        boolean refreshed = false;
+
+        for (int i = 0; i < count; i++) {
+            errorEllipsesReconverted = false;
+            ErrorEllipse errorEllipse = getErrorEllipse(batchItems.get(indices[i]));
+
+            if (errorEllipsesReconverted) {
+                errorEllipseBatch.set(indices[i], errorEllipse);
+                refreshed = true;
+            }
+        }
+
+        return refreshed;
+    }
+
+    /**
+     * Returns the ellipse converted from a data item, converting it only if it hasn't been yet or if the converter
+     * reports that it has changed since.
+     *
+     * @param item the data item
+     * @return the ellipse
+     */
+    private ErrorEllipse getErrorEllipse(Data<Number, Number> item) {
+        DataConverter<ErrorEllipse> dataConverter = converter.get();
+        long revision = dataConverter.getRevision(item);
+
+        CachedErrorEllipse cached = errorEllipses.get(item);
+        if (cached == null || cached.revision != revision) {
+            errorEllipsesReconverted |= cached != null;
+            cached = new CachedErrorEllipse(dataConverter.convert(item), revision);
+            errorEllipses.put(item, cached);
+        }
+
+        return cached.errorEllipse;
+    }
+
+    private ErrorEllipseBatch fillErrorEllipseBatch() {
+        errorEllipseBatch.clear();
+        batchItems.clear();
+
         getData().stream().forEach(series -> {
             series.getData().stream().forEach(item -> {
-                getPlotChildren().add(
-                        errorEllipsePlotter.plot(converter.get().convert(item)));
+                errorEllipseBatch.add(getErrorEllipse(item));
+                batchItems.add(item);
             });
         });
+
+        return errorEllipseBatch;
+    }
+
+    private void converterInvalidated() {
+        errorEllipses.clear();
+        errorEllipseGridValid = false;
+
+        if (getData() != null) {
+            updateAxisRange();
+            requestChartLayout();
+        }
+    }
+
+    private Node[] createItemNodes(Data<Number, Number> item, ErrorEllipse errorEllipse) {
+        Node[] nodes = {errorEllipseFiller.plot(errorEllipse), errorEllipsePlotter.plot(errorEllipse)};
+        fillLayer.getChildren().add(nodes[0]);
+        outlineLayer.getChildren().add(nodes[1]);
+        itemNodes.put(item, nodes);
+
+        return nodes;
+    }
+
+    private void fadeIn(Node[] nodes) {
+        for (Node node : nodes) {
+            node.setOpacity(0);
+
+            FadeTransition fadeIn = new FadeTransition(Duration.millis(500), node);
+            fadeIn.setToValue(1);
+            fadeIn.play();
+        }
+    }
+
+    private void removeItemNode(Node node) {
+        fillLayer.getChildren().remove(node);
+        outlineLayer.getChildren().remove(node);
     }
 
     @Override
@@ -303,25 +792,27 @@ public class ErrorEllipseChart extends NumberChart {
         final Axis<Number> xAxis = getXAxis();
         final Axis<Number> yAxis = getYAxis();
 
-        final List<Number> xData = new ArrayList<>();
-        final List<Number> yData = new ArrayList<>();
-
         if (xAxis.isAutoRanging() || yAxis.isAutoRanging()) {
-            getData().stream().forEach(series -> {
-                series.getData().stream().forEach(item -> {
-                    ErrorEllipse errorEllipse = converter.get().convert(item);
-
-                    if (xAxis.isAutoRanging()) {
-                        xData.add(errorEllipse.getMinX(getConfidenceLevel()));
-                        xData.add(errorEllipse.getMaxX(getConfidenceLevel()));
-                    }
-
-                    if (yAxis.isAutoRanging()) {
-                        yData.add(errorEllipse.getMinY(getConfidenceLevel()));
-                        yData.add(errorEllipse.getMaxY(getConfidenceLevel()));
-                    }
-                });
-            });
+            // only the extremes matter to the axes, so there's no need to collect every bound
+            if (errorEllipseGridValid) {
+                // items edited since the batch was filled count too, wherever they are
+                int[] all = new int[errorEllipseBatch.size()];
+                for (int i = 0; i < all.length; i++) {
+                    all[i] = i;
+                }
+
+                if (refreshErrorEllipses(all, all.length)) {
+                    indexErrorEllipseBatch();
+                }
+            } else {
+                buildErrorEllipseGrid();
+            }
+
+            double[] extremes = errorEllipseBatch.computeExtent(getConfidenceLevel());
+
+            boolean empty = extremes[0] > extremes[1];
+            List<Number> xData = empty ? Collections.emptyList() : Arrays.asList(extremes[0], extremes[1]);
+            List<Number> yData = empty ? Collections.emptyList() : Arrays.asList(extremes[2], extremes[3]);
 
             if (xAxis.isAutoRanging()) {
                 xAxis.invalidateRange(xData);
@@ -333,6 +824,49 @@ public class ErrorEllipseChart extends NumberChart {
         }
     }
 
+    /**
+     * Returns how the last layout drew the ellipses, given the render mode and the number of ellipses in view. This is
+     * never {@link ErrorEllipseRenderMode#AUTOMATIC}.
+     *
+     * @return the render mode used
+     */
+    public ErrorEllipseRenderMode getActiveRenderMode() {
+        return activeRenderMode;
+    }
+
+    /**
+     * Returns whether the ellipses were drawn into a canvas rather than as nodes by the last layout.
+     *
+     * @return whether a canvas is used
+     */
+    public boolean isCanvasUsed() {
+        return activeRenderMode == ErrorEllipseRenderMode.CANVAS;
+    }
+
+    private ErrorEllipseRenderMode chooseRenderMode(int ellipseCount) {
+        if (getRenderMode() != ErrorEllipseRenderMode.AUTOMATIC) {
+            return getRenderMode();
+        } else if (ellipseCount > getDensityThreshold()) {
+            return ErrorEllipseRenderMode.DENSITY;
+        } else if (ellipseCount > getCanvasThreshold()) {
+            return ErrorEllipseRenderMode.CANVAS;
+        } else {
+            return ErrorEllipseRenderMode.NODES;
+        }
+    }
+
+    /**
+     * Returns the detail an ellipse is drawn with, given its size on screen. Setting both thresholds to zero draws every
+     * ellipse in full.
+     *
+     * @param display the display coordinates of the ellipse's Bezier points
+     * @param offset the index of the first coordinate
+     * @return the detail
+     */
+    ErrorEllipseDetail getErrorEllipseDetail(double[] display, int offset) {
+        return ErrorEllipseDetail.of(display, offset, getPointDetailThreshold(), getCurveDetailThreshold());
+    }
+
     public void snapConcordiaLineToCorners() {
         setPlotWindow(ConcordiaLine.getX(concordiaLine.getStartT()),
                       ConcordiaLine.getX(concordiaLine.getEndT()),
@@ -362,6 +896,17 @@ public class ErrorEllipseChart extends NumberChart {
         return (NumberAxis) super.getYAxis();
     }
 
+    private static final class CachedErrorEllipse {
+
+        final ErrorEllipse errorEllipse;
+        final long revision;
+
+        CachedErrorEllipse(ErrorEllipse errorEllipse, long revision) {
+            this.errorEllipse = errorEllipse;
+            this.revision = revision;
+        }
+    }
+
     private static final class DefaultConverter implements DataConverter<ErrorEllipse> {
 
         @Override
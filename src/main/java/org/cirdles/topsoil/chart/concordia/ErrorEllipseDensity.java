@@ -0,0 +1,354 @@
+/*
+ * Copyright 2014 CIRDLES.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cirdles.topsoil.chart.concordia;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Spreads the probability of a batch of error ellipses over a grid of pixels, treating each ellipse as the bivariate
+ * normal distribution it summarises, so that a very large data set can be shown as a density rather than as ellipses.
+ * <p>
+ * The pixels are laid out on a lattice fixed in data space for a given scale, and computed in square tiles that are
+ * kept from one call to the next, as many as the window and a ring of tiles around it need. Panning therefore only
+ * computes the tiles that come into view; zooming, or a new batch, starts again. Missing tiles are computed in
+ * parallel on the common <code>ForkJoinPool</code>.
+ *
+ * @author John Zeringue <john.joseph.zeringue@gmail.com>
+ */
+public class ErrorEllipseDensity {
+
+    /**
+     * The width and height of a tile in pixels.
+     */
+    public static final int TILE_SIZE = 64;
+
+    /**
+     * The number of standard deviations beyond which an ellipse adds nothing to the density.
+     */
+    public static final double CUTOFF = 4;
+
+    // about 16 MB of tiles, unless the window needs more
+    private static final int MAX_TILES = 1024;
+
+    // the scales are only compared this closely, since panning can move them by a rounding error
+    private static final double SCALE_TOLERANCE = 1e-9;
+
+    private ErrorEllipseBatch errorEllipses = new ErrorEllipseBatch();
+    private final ErrorEllipseGrid grid = new ErrorEllipseGrid();
+    private double[] bounds = new double[0];
+
+    private double scaleX = Double.NaN;
+    private double scaleY = Double.NaN;
+    private double shiftX;
+    private double shiftY;
+
+    private final Map<Tile, float[]> tiles = new LinkedHashMap<Tile, float[]>(16, 0.75f, true) {
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Tile, float[]> eldest) {
+            return size() > tileCapacity;
+        }
+    };
+
+    // enough for the window and a ring of tiles around it, so that panning by a tile reuses the rest
+    private int tileCapacity = MAX_TILES;
+
+    private int tilesComputed;
+
+    /**
+     * Sets the ellipses to spread, dropping every tile computed for the previous ones. The batch is read again by each
+     * call to {@link #compute(double, double, double, double, int, int, float[])}, so it mustn't change in between
+     * without this being called again.
+     *
+     * @param errorEllipses the ellipses
+     */
+    public void setErrorEllipses(ErrorEllipseBatch errorEllipses) {
+        this.errorEllipses = errorEllipses;
+
+        int count = errorEllipses.size();
+        if (bounds.length < 4 * count) {
+            bounds = new double[4 * count];
+        }
+
+        errorEllipses.computeBounds(CUTOFF, bounds);
+        grid.build(bounds, count);
+        tiles.clear();
+    }
+
+    /**
+     * Computes the density over a window of pixels, in expected ellipses per pixel. The window is snapped to the
+     * lattice of pixels, by at most half a pixel each way; see {@link #getShiftX()} and {@link #getShiftY()}.
+     *
+     * @param minX the x at the left edge of the window
+     * @param maxY the y at the top edge of the window
+     * @param scaleX the number of pixels per unit of x
+     * @param scaleY the number of pixels per unit of y
+     * @param width the width of the window in pixels
+     * @param height the height of the window in pixels
+     * @param dest an array to write the density to, row by row from the top, or <code>null</code>; a larger one is
+     * returned if it's too small
+     * @return the density
+     */
+    public float[] compute(double minX, double maxY, double scaleX, double scaleY, int width, int height,
+                           float[] dest) {
+        if (dest == null || dest.length < width * height) {
+            dest = new float[width * height];
+        }
+
+        if (!sameScale(scaleX, this.scaleX) || !sameScale(scaleY, this.scaleY)) {
+            tiles.clear();
+            this.scaleX = scaleX;
+            this.scaleY = scaleY;
+        }
+
+        // pixel column c covers x * scaleX in [c, c + 1) and pixel row r covers -y * scaleY in [r, r + 1)
+        long originX = Math.round(minX * this.scaleX);
+        long originY = Math.round(-maxY * this.scaleY);
+        shiftX = originX - minX * this.scaleX;
+        shiftY = originY + maxY * this.scaleY;
+
+        long firstColumn = Math.floorDiv(originX, TILE_SIZE);
+        long lastColumn = Math.floorDiv(originX + width - 1, TILE_SIZE);
+        long firstRow = Math.floorDiv(originY, TILE_SIZE);
+        long lastRow = Math.floorDiv(originY + height - 1, TILE_SIZE);
+
+        int columns = (int) (lastColumn - firstColumn + 1);
+        int rows = (int) (lastRow - firstRow + 1);
+        tileCapacity = Math.max(MAX_TILES, (columns + 2) * (rows + 2));
+
+        // the values of each tile in view, row by row; looking up the kept ones marks them as recently used
+        float[][] visible = new float[columns * rows][];
+
+        // the grid can only be queried by one thread, so the ellipses of each missing tile are found up front
+        List<TileTask> missing = new ArrayList<>();
+        int[] found = null;
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < columns; c++) {
+                long row = firstRow + r;
+                long column = firstColumn + c;
+                Tile tile = new Tile(column, row);
+
+                visible[r * columns + c] = tiles.get(tile);
+                if (visible[r * columns + c] != null) {
+                    continue;
+                }
+
+                // widened by the reach of an ellipse held to half a pixel
+                double left = column * TILE_SIZE - CUTOFF / 2;
+                double top = row * TILE_SIZE - CUTOFF / 2;
+                double size = TILE_SIZE + CUTOFF;
+                found = grid.query(left / this.scaleX, (left + size) / this.scaleX,
+                                   -(top + size) / this.scaleY, -top / this.scaleY, found);
+
+                TileTask task = new TileTask(tile, Arrays.copyOf(found, grid.getFound()));
+                visible[r * columns + c] = task.values;
+                missing.add(task);
+            }
+        }
+
+        tilesComputed = missing.size();
+        if (missing.size() == 1) {
+            missing.get(0).compute();
+        } else if (missing.size() > 1) {
+            ForkJoinPool.commonPool().invoke(new TileListTask(missing, 0, missing.size()));
+        }
+
+        for (TileTask task : missing) {
+            tiles.put(task.tile, task.values);
+        }
+
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < columns; c++) {
+                copyTile(visible[r * columns + c], (firstColumn + c) * TILE_SIZE - originX,
+                         (firstRow + r) * TILE_SIZE - originY, dest, width, height);
+            }
+        }
+
+        return dest;
+    }
+
+    /**
+     * Returns how far right of the window the last computed density lies, in pixels.
+     *
+     * @return the shift, between -0.5 and 0.5
+     */
+    public double getShiftX() {
+        return shiftX;
+    }
+
+    /**
+     * Returns how far down from the window the last computed density lies, in pixels.
+     *
+     * @return the shift, between -0.5 and 0.5
+     */
+    public double getShiftY() {
+        return shiftY;
+    }
+
+    /**
+     * Returns the number of tiles the last call to {@link #compute(double, double, double, double, int, int, float[])}
+     * computed rather than reused.
+     *
+     * @return the number of tiles
+     */
+    public int getTilesComputed() {
+        return tilesComputed;
+    }
+
+    private static boolean sameScale(double scale, double previous) {
+        return Math.abs(scale - previous) <= SCALE_TOLERANCE * Math.abs(previous);
+    }
+
+    private static void copyTile(float[] values, long left, long top, float[] dest, int width, int height) {
+        int fromColumn = (int) Math.max(0, -left);
+        int toColumn = (int) Math.min(TILE_SIZE, width - left);
+        int fromRow = (int) Math.max(0, -top);
+        int toRow = (int) Math.min(TILE_SIZE, height - top);
+
+        for (int row = fromRow; row < toRow; row++) {
+            System.arraycopy(values, row * TILE_SIZE + fromColumn,
+                             dest, (int) ((top + row) * width + left + fromColumn),
+                             toColumn - fromColumn);
+        }
+    }
+
+    /**
+     * Adds an ellipse's density to the pixels of a tile. The density is sampled at the centres of the pixels, with the
+     * standard deviations held to at least half a pixel so that thin ellipses aren't lost between the samples; an
+     * ellipse smaller than a pixel each way adds all of itself to the pixel holding its centre.
+     */
+    private void spread(int i, long left, long top, float[] values) {
+        double sigmaX = Math.abs(errorEllipses.getSigmaX(i)) * scaleX;
+        double sigmaY = Math.abs(errorEllipses.getSigmaY(i)) * scaleY;
+
+        // the centre within the tile, in pixels
+        double centerX = errorEllipses.getX(i) * scaleX - left;
+        double centerY = -errorEllipses.getY(i) * scaleY - top;
+
+        if (sigmaX < 0.5 && sigmaY < 0.5) {
+            if (centerX >= 0 && centerX < TILE_SIZE && centerY >= 0 && centerY < TILE_SIZE) {
+                values[(int) centerY * TILE_SIZE + (int) centerX] += 1;
+            }
+
+            return;
+        }
+
+        sigmaX = Math.max(sigmaX, 0.5);
+        sigmaY = Math.max(sigmaY, 0.5);
+
+        // y points down on the screen, which flips the correlation
+        double rho = -errorEllipses.getRho(i);
+        double oneMinusRhoSquared = Math.max(1 - rho * rho, 1e-3);
+        double normalization = 1 / (2 * Math.PI * sigmaX * sigmaY * Math.sqrt(oneMinusRhoSquared));
+
+        int fromColumn = (int) Math.max(0, Math.floor(centerX - CUTOFF * sigmaX));
+        int toColumn = (int) Math.min(TILE_SIZE - 1, Math.floor(centerX + CUTOFF * sigmaX));
+        int fromRow = (int) Math.max(0, Math.floor(centerY - CUTOFF * sigmaY));
+        int toRow = (int) Math.min(TILE_SIZE - 1, Math.floor(centerY + CUTOFF * sigmaY));
+
+        for (int row = fromRow; row <= toRow; row++) {
+            double dy = (row + 0.5 - centerY) / sigmaY;
+
+            for (int column = fromColumn; column <= toColumn; column++) {
+                double dx = (column + 0.5 - centerX) / sigmaX;
+                double q = (dx * dx - 2 * rho * dx * dy + dy * dy) / oneMinusRhoSquared;
+
+                if (q < CUTOFF * CUTOFF) {
+                    values[row * TILE_SIZE + column] += normalization * Math.exp(-q / 2);
+                }
+            }
+        }
+    }
+
+    private static final class Tile {
+
+        final long column;
+        final long row;
+
+        Tile(long column, long row) {
+            this.column = column;
+            this.row = row;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (!(object instanceof Tile)) {
+                return false;
+            }
+
+            Tile tile = (Tile) object;
+            return column == tile.column && row == tile.row;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(column) * 31 + Long.hashCode(row);
+        }
+    }
+
+    /**
+     * Computes one tile from the ellipses found to overlap it.
+     */
+    private final class TileTask {
+
+        final Tile tile;
+        final int[] indices;
+        final float[] values = new float[TILE_SIZE * TILE_SIZE];
+
+        TileTask(Tile tile, int[] indices) {
+            this.tile = tile;
+            this.indices = indices;
+        }
+
+        void compute() {
+            for (int i : indices) {
+                spread(i, tile.column * TILE_SIZE, tile.row * TILE_SIZE, values);
+            }
+        }
+    }
+
+    /**
+     * Splits a list of tiles in half until each half is a single tile.
+     */
+    private static final class TileListTask extends RecursiveAction {
+
+        private final List<TileTask> tasks;
+        private final int from;
+        private final int to;
+
+        TileListTask(List<TileTask> tasks, int from, int to) {
+            this.tasks = tasks;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                tasks.get(from).compute();
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new TileListTask(tasks, from, middle), new TileListTask(tasks, middle, to));
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2014 CIRDLES.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cirdles.topsoil.chart.concordia;
+
+import javafx.beans.InvalidationListener;
+import javafx.scene.Node;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+import org.cirdles.topsoil.chart.NumberAxis;
+import org.cirdles.topsoil.chart.Plotter;
+
+/**
+ * Plots a whole batch of error ellipses as a density image, using {@link ErrorEllipseDensity}. The image is tinted with
+ * the chart's ellipse fill colour and grows more opaque with the logarithm of the density, so that sparse regions stay
+ * visible beside dense ones. Changing the fill colour only repaints the image.
+ *
+ * @author John Zeringue <john.joseph.zeringue@gmail.com>
+ */
+public class ErrorEllipseDensityPlotter extends Plotter<ErrorEllipseBatch, ErrorEllipseChart> {
+
+    private final ErrorEllipseDensity density = new ErrorEllipseDensity();
+    private final ImageView imageView = new ImageView();
+
+    // whether the density has the chart's current ellipses
+    private boolean valid;
+
+    private float[] values;
+    private int[] pixels = new int[0];
+    private int width;
+    private int height;
+
+    public ErrorEllipseDensityPlotter(ErrorEllipseChart chart) {
+        super(chart);
+
+        // the image doesn't take part in picking, so the chart can still be dragged and zoomed
+        imageView.setMouseTransparent(true);
+
+        InvalidationListener styleListener = observable -> paint();
+        chart.ellipseFillColorProperty().addListener(styleListener);
+    }
+
+    /**
+     * Records that the ellipses have changed, so that the next plot spreads them again rather than reusing tiles.
+     */
+    public void invalidate() {
+        valid = false;
+    }
+
+    @Override
+    public Node plot(ErrorEllipseBatch errorEllipses) {
+        if (!valid) {
+            density.setErrorEllipses(errorEllipses);
+            valid = true;
+        }
+
+        NumberAxis xAxis = chart.getXAxis();
+        NumberAxis yAxis = chart.getYAxis();
+
+        width = (int) Math.ceil(xAxis.getWidth());
+        height = (int) Math.ceil(yAxis.getHeight());
+
+        double minX = xAxis.getValueForDisplay(0).doubleValue();
+        double maxX = xAxis.getValueForDisplay(width).doubleValue();
+        double minY = yAxis.getValueForDisplay(height).doubleValue();
+        double maxY = yAxis.getValueForDisplay(0).doubleValue();
+
+        double scaleX = width / (maxX - minX);
+        double scaleY = height / (maxY - minY);
+
+        if (width <= 0 || height <= 0 || !(scaleX > 0) || !(scaleY > 0)
+                || Double.isInfinite(scaleX) || Double.isInfinite(scaleY)) {
+            // nothing to show until the axes have a size and a range
+            width = 0;
+            height = 0;
+            imageView.setImage(null);
+            return imageView;
+        }
+
+        values = density.compute(minX, maxY, scaleX, scaleY, width, height, values);
+        imageView.setTranslateX(density.getShiftX());
+        imageView.setTranslateY(density.getShiftY());
+
+        paint();
+
+        return imageView;
+    }
+
+    private void paint() {
+        if (width == 0 || height == 0) {
+            return;
+        }
+
+        int count = width * height;
+        if (pixels.length < count) {
+            pixels = new int[count];
+        }
+
+        float max = 0;
+        for (int i = 0; i < count; i++) {
+            max = Math.max(max, values[i]);
+        }
+
+        Color color = chart.ellipseFillColorProperty().get();
+        int rgb = (int) Math.round(color.getRed() * 255) << 16
+                  | (int) Math.round(color.getGreen() * 255) << 8
+                  | (int) Math.round(color.getBlue() * 255);
+
+        double scale = max > 0 ? 255 / Math.log1p(max) : 0;
+        for (int i = 0; i < count; i++) {
+            int alpha = (int) (Math.log1p(values[i]) * scale);
+            pixels[i] = alpha << 24 | rgb;
+        }
+
+        WritableImage image = (WritableImage) imageView.getImage();
+        if (image == null || image.getWidth() != width || image.getHeight() != height) {
+            image = new WritableImage(width, height);
+        }
+
+        image.getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), pixels, 0, width);
+        imageView.setImage(image);
+    }
+}
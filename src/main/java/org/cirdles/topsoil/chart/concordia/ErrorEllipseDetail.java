@@ -0,0 +1,209 @@
+/*
+ * Copyright 2014 CIRDLES.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cirdles.topsoil.chart.concordia;
+
+import java.util.List;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.shape.ClosePath;
+import javafx.scene.shape.CubicCurveTo;
+import javafx.scene.shape.LineTo;
+import javafx.scene.shape.MoveTo;
+import javafx.scene.shape.Path;
+import javafx.scene.shape.PathElement;
+
+/**
+ * How much of an error ellipse's shape is drawn, chosen from its size on screen so that dense clouds of small ellipses
+ * don't cost as much as a few large ones. The centre of an ellipse is drawn whatever its detail.
+ * <p>
+ * Every level works from the display coordinates of the ellipse's thirteen Bezier points, as written by
+ * {@link ErrorEllipse#getControlPoints(double, double[], int)} and mapped to the display.
+ *
+ * @author John Zeringue <john.joseph.zeringue@gmail.com>
+ */
+public enum ErrorEllipseDetail {
+
+    /**
+     * No outline or fill, leaving only the centre.
+     */
+    POINT,
+
+    /**
+     * An octagon through the ends and middles of the four Bezier curves.
+     */
+    POLYGON,
+
+    /**
+     * The four Bezier curves.
+     */
+    CURVE;
+
+    /**
+     * Chooses the detail for an ellipse from the larger side of the box around its Bezier points.
+     *
+     * @param display the display coordinates of the Bezier points
+     * @param offset the index of the first coordinate
+     * @param pointThreshold the size in pixels below which ellipses are drawn as points
+     * @param curveThreshold the size in pixels from which ellipses are drawn as curves
+     * @return the detail to draw the ellipse with
+     */
+    public static ErrorEllipseDetail of(double[] display, int offset, double pointThreshold, double curveThreshold) {
+        double minX = display[offset];
+        double maxX = minX;
+        double minY = display[offset + 1];
+        double maxY = minY;
+
+        for (int i = offset + 2; i < offset + ErrorEllipse.CONTROL_POINT_COORDINATES; i += 2) {
+            minX = Math.min(minX, display[i]);
+            maxX = Math.max(maxX, display[i]);
+            minY = Math.min(minY, display[i + 1]);
+            maxY = Math.max(maxY, display[i + 1]);
+        }
+
+        double size = Math.max(maxX - minX, maxY - minY);
+
+        if (size < pointThreshold) {
+            return POINT;
+        } else if (size < curveThreshold) {
+            return POLYGON;
+        } else {
+            return CURVE;
+        }
+    }
+
+    /**
+     * Sets the elements of a path to draw an ellipse at this detail, reusing the elements already there when they
+     * suit.
+     *
+     * @param path the path
+     * @param display the display coordinates of the Bezier points
+     * @param offset the index of the first coordinate
+     */
+    public void trace(Path path, double[] display, int offset) {
+        List<PathElement> elements = path.getElements();
+
+        switch (this) {
+            case POINT:
+                if (!elements.isEmpty()) {
+                    elements.clear();
+                }
+                break;
+
+            case POLYGON:
+                if (elements.size() != 9) {
+                    PathElement[] octagon = new PathElement[9];
+                    octagon[0] = new MoveTo();
+                    for (int i = 1; i < 8; i++) {
+                        octagon[i] = new LineTo();
+                    }
+                    octagon[8] = new ClosePath();
+
+                    path.getElements().setAll(octagon);
+                }
+
+                MoveTo moveTo = (MoveTo) elements.get(0);
+                moveTo.setX(display[offset]);
+                moveTo.setY(display[offset + 1]);
+
+                for (int i = 1; i < 8; i++) {
+                    LineTo lineTo = (LineTo) elements.get(i);
+                    lineTo.setX(vertexX(display, offset, i));
+                    lineTo.setY(vertexY(display, offset, i));
+                }
+                break;
+
+            default:
+                if (elements.size() != 5) {
+                    path.getElements().setAll(new MoveTo(),
+                                              new CubicCurveTo(),
+                                              new CubicCurveTo(),
+                                              new CubicCurveTo(),
+                                              new CubicCurveTo());
+                }
+
+                MoveTo start = (MoveTo) elements.get(0);
+                start.setX(display[offset]);
+                start.setY(display[offset + 1]);
+
+                for (int i = 1; i <= 4; i++) {
+                    CubicCurveTo cubicCurveTo = (CubicCurveTo) elements.get(i);
+                    int j = offset + i * 6;
+
+                    // set control points
+                    cubicCurveTo.setControlX1(display[j - 4]);
+                    cubicCurveTo.setControlY1(display[j - 3]);
+                    cubicCurveTo.setControlX2(display[j - 2]);
+                    cubicCurveTo.setControlY2(display[j - 1]);
+
+                    // set final point
+                    cubicCurveTo.setX(display[j]);
+                    cubicCurveTo.setY(display[j + 1]);
+                }
+        }
+    }
+
+    /**
+     * Traces an ellipse at this detail as the current path of a canvas, or does nothing for {@link #POINT}.
+     *
+     * @param graphics the canvas's graphics context
+     * @param display the display coordinates of the Bezier points
+     * @param offset the index of the first coordinate
+     * @return whether a path was traced
+     */
+    public boolean trace(GraphicsContext graphics, double[] display, int offset) {
+        switch (this) {
+            case POINT:
+                return false;
+
+            case POLYGON:
+                graphics.beginPath();
+                graphics.moveTo(display[offset], display[offset + 1]);
+                for (int i = 1; i < 8; i++) {
+                    graphics.lineTo(vertexX(display, offset, i), vertexY(display, offset, i));
+                }
+                graphics.closePath();
+                return true;
+
+            default:
+                graphics.beginPath();
+                graphics.moveTo(display[offset], display[offset + 1]);
+                for (int j = offset + 2; j < offset + ErrorEllipse.CONTROL_POINT_COORDINATES; j += 6) {
+                    graphics.bezierCurveTo(display[j], display[j + 1],
+                                           display[j + 2], display[j + 3],
+                                           display[j + 4], display[j + 5]);
+                }
+                graphics.closePath();
+                return true;
+        }
+    }
+
+    // the even vertices of the octagon are the ends of the curves, the odd ones their middles
+    private static double vertexX(double[] display, int offset, int vertex) {
+        return vertex(display, offset + (vertex / 2) * 6, vertex % 2 == 1);
+    }
+
+    private static double vertexY(double[] display, int offset, int vertex) {
+        return vertex(display, offset + (vertex / 2) * 6 + 1, vertex % 2 == 1);
+    }
+
+    private static double vertex(double[] display, int start, boolean middle) {
+        if (!middle) {
+            return display[start];
+        }
+
+        // a cubic Bezier curve at t = 1/2
+        return (display[start] + 3 * display[start + 2] + 3 * display[start + 4] + display[start + 6]) / 8;
+    }
+}
@@ -15,11 +15,8 @@
  */
 package org.cirdles.topsoil.chart.concordia;
 
-import Jama.Matrix;
 import javafx.scene.Node;
 import javafx.scene.paint.Color;
-import javafx.scene.shape.CubicCurveTo;
-import javafx.scene.shape.MoveTo;
 import javafx.scene.shape.Path;
 import org.cirdles.topsoil.chart.Plotter;
 
@@ -29,17 +26,17 @@ import org.cirdles.topsoil.chart.Plotter;
  */
 public class ErrorEllipseFiller extends Plotter<ErrorEllipse, ErrorEllipseChart> {
 
+    // reused by every update
+    private final double[] coordinates = new double[ErrorEllipse.CONTROL_POINT_COORDINATES];
+
     public ErrorEllipseFiller(ErrorEllipseChart chart) {
         super(chart);
     }
     
     @Override
     public Node plot(ErrorEllipse errorEllipse) {
-        Path ellipse = new Path(new MoveTo(),
-                                new CubicCurveTo(),
-                                new CubicCurveTo(),
-                                new CubicCurveTo(),
-                                new CubicCurveTo());
+        // the elements are set by update, to suit the ellipse's size on screen
+        Path ellipse = new Path();
         ellipse.setStroke(Color.TRANSPARENT);
 
         ellipse.fillProperty().bind(chart.ellipseFillColorProperty());
@@ -47,26 +44,27 @@ public class ErrorEllipseFiller extends Plotter<ErrorEllipse, ErrorEllipseChart>
 
         ellipse.getStyleClass().add("error-ellipse-fill");
 
-        Matrix controlPoints = errorEllipse.getControlPoints(chart.getConfidenceLevel());
-
-        MoveTo moveTo = (MoveTo) ellipse.getElements().get(0);
-        moveTo.setX(mapXToDisplay(controlPoints.get(0, 0)));
-        moveTo.setY(mapYToDisplay(controlPoints.get(0, 1)));
-
-        for (int i = 1; i <= 4; i++) {
-            CubicCurveTo cubicCurveTo = (CubicCurveTo) ellipse.getElements().get(i);
+        update(ellipse, errorEllipse);
 
-            // set control points
-            cubicCurveTo.setControlX1(mapXToDisplay(controlPoints.get(i * 3 - 2, 0)));
-            cubicCurveTo.setControlY1(mapYToDisplay(controlPoints.get(i * 3 - 2, 1)));
-            cubicCurveTo.setControlX2(mapXToDisplay(controlPoints.get(i * 3 - 1, 0)));
-            cubicCurveTo.setControlY2(mapYToDisplay(controlPoints.get(i * 3 - 1, 1)));
+        return ellipse;
+    }
 
-            // set final point
-            cubicCurveTo.setX(mapXToDisplay(controlPoints.get(i * 3, 0)));
-            cubicCurveTo.setY(mapYToDisplay(controlPoints.get(i * 3, 1)));
+    /**
+     * Moves a fill created by {@link #plot(ErrorEllipse)} to where an error ellipse is now displayed, so that the same
+     * node can be kept from one layout to the next. The fill takes the detail the chart chooses for the ellipse's size
+     * on screen.
+     *
+     * @param node the fill to move
+     * @param errorEllipse the ellipse it shows
+     */
+    public void update(Node node, ErrorEllipse errorEllipse) {
+        Path ellipse = (Path) node;
+        errorEllipse.getControlPoints(chart.getConfidenceLevel(), coordinates, 0);
+        for (int i = 0; i < coordinates.length; i += 2) {
+            coordinates[i] = mapXToDisplay(coordinates[i]);
+            coordinates[i + 1] = mapYToDisplay(coordinates[i + 1]);
         }
 
-        return ellipse;
+        chart.getErrorEllipseDetail(coordinates, 0).trace(ellipse, coordinates, 0);
     }
 }
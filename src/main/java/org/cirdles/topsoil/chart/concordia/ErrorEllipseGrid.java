@@ -0,0 +1,260 @@
+/*
+ * Copyright 2014 CIRDLES.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cirdles.topsoil.chart.concordia;
+
+import java.util.Arrays;
+
+/**
+ * A uniform grid over the bounding boxes of many ellipses, for finding the ones that intersect a window without
+ * looking at every ellipse. Each box is listed in every cell it overlaps; boxes that would overlap too many cells are
+ * kept in a separate list that every query checks.
+ * <p>
+ * The grid is built once for a set of boxes and queried as often as needed, so it suits a chart being panned and
+ * zoomed over data that doesn't change.
+ *
+ * @author John Zeringue <john.joseph.zeringue@gmail.com>
+ */
+public class ErrorEllipseGrid {
+
+    /**
+     * The largest number of cells along either side of the grid.
+     */
+    public static final int MAX_CELLS_PER_SIDE = 1024;
+
+    // boxes overlapping more cells than this are checked by every query instead
+    private static final int MAX_CELLS_PER_BOX = 64;
+
+    private double[] bounds = new double[0];
+    private int count;
+
+    private double minX;
+    private double minY;
+    private double cellWidth;
+    private double cellHeight;
+    private int columns;
+    private int rows;
+
+    // the boxes in each cell, cell by cell: those of cell c are cellItems[cellStarts[c]] to cellItems[cellStarts[c + 1]]
+    private int[] cellStarts = new int[1];
+    private int[] cellItems = new int[0];
+
+    private int[] largeItems = new int[0];
+    private int largeCount;
+
+    // the query each box was last reported by, so that boxes in several cells are reported once
+    private int[] stamps = new int[0];
+    private int stamp;
+
+    private int found;
+
+    /**
+     * Rebuilds the grid over a set of boxes, reusing its arrays where they are large enough.
+     *
+     * @param bounds four values per box: minimum x, maximum x, minimum y and maximum y, as written by
+     * {@link ErrorEllipseBatch#computeBounds(double, double[])}; the grid keeps a reference to the array
+     * @param count the number of boxes
+     */
+    public void build(double[] bounds, int count) {
+        this.bounds = bounds;
+        this.count = count;
+
+        if (stamps.length < count) {
+            stamps = new int[count];
+            stamp = 0;
+        }
+
+        minX = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        minY = Double.POSITIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+
+        for (int i = 0; i < count; i++) {
+            if (isFinite(i)) {
+                minX = Math.min(minX, bounds[4 * i]);
+                maxX = Math.max(maxX, bounds[4 * i + 1]);
+                minY = Math.min(minY, bounds[4 * i + 2]);
+                maxY = Math.max(maxY, bounds[4 * i + 3]);
+            }
+        }
+
+        // about one box per cell
+        int side = (int) Math.min(MAX_CELLS_PER_SIDE, Math.max(1, Math.ceil(Math.sqrt(count))));
+        columns = side;
+        rows = side;
+        cellWidth = maxX > minX ? (maxX - minX) / columns : 1;
+        cellHeight = maxY > minY ? (maxY - minY) / rows : 1;
+
+        // count the boxes in each cell, then lay the cells out one after another
+        int cellCount = columns * rows;
+        if (cellStarts.length < cellCount + 1) {
+            cellStarts = new int[cellCount + 1];
+        } else {
+            Arrays.fill(cellStarts, 0, cellCount + 1, 0);
+        }
+
+        largeCount = 0;
+        for (int i = 0; i < count; i++) {
+            if (!isFinite(i)) {
+                continue;
+            }
+
+            if (isLarge(i)) {
+                largeCount++;
+                continue;
+            }
+
+            for (int row = row(bounds[4 * i + 2]); row <= row(bounds[4 * i + 3]); row++) {
+                for (int column = column(bounds[4 * i]); column <= column(bounds[4 * i + 1]); column++) {
+                    cellStarts[row * columns + column + 1]++;
+                }
+            }
+        }
+
+        for (int c = 0; c < cellCount; c++) {
+            cellStarts[c + 1] += cellStarts[c];
+        }
+
+        if (cellItems.length < cellStarts[cellCount]) {
+            cellItems = new int[cellStarts[cellCount]];
+        }
+
+        if (largeItems.length < largeCount) {
+            largeItems = new int[largeCount];
+        }
+
+        int[] next = Arrays.copyOf(cellStarts, cellCount);
+        int large = 0;
+        for (int i = 0; i < count; i++) {
+            if (!isFinite(i)) {
+                continue;
+            }
+
+            if (isLarge(i)) {
+                largeItems[large++] = i;
+                continue;
+            }
+
+            for (int row = row(bounds[4 * i + 2]); row <= row(bounds[4 * i + 3]); row++) {
+                for (int column = column(bounds[4 * i]); column <= column(bounds[4 * i + 1]); column++) {
+                    cellItems[next[row * columns + column]++] = i;
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the boxes that intersect a window.
+     *
+     * @param windowMinX the left of the window
+     * @param windowMaxX the right of the window
+     * @param windowMinY the bottom of the window
+     * @param windowMaxY the top of the window
+     * @param dest an array to write the indices of the boxes to, or <code>null</code>; a larger one is returned if it's
+     * too small
+     * @return the indices of the boxes found, in increasing order, followed by unused space; see {@link #getFound()}
+     */
+    public int[] query(double windowMinX, double windowMaxX, double windowMinY, double windowMaxY, int[] dest) {
+        if (dest == null || dest.length < count) {
+            dest = new int[count];
+        }
+
+        found = 0;
+        if (++stamp == 0) {
+            // the stamps have wrapped around, so start them again
+            Arrays.fill(stamps, 0);
+            stamp = 1;
+        }
+
+        for (int l = 0; l < largeCount; l++) {
+            collect(largeItems[l], windowMinX, windowMaxX, windowMinY, windowMaxY, dest);
+        }
+
+        if (count > 0 && windowMaxX >= minX && windowMaxY >= minY) {
+            int firstRow = row(windowMinY);
+            int lastRow = row(windowMaxY);
+            int firstColumn = column(windowMinX);
+            int lastColumn = column(windowMaxX);
+
+            for (int row = firstRow; row <= lastRow; row++) {
+                for (int column = firstColumn; column <= lastColumn; column++) {
+                    int cell = row * columns + column;
+
+                    for (int k = cellStarts[cell]; k < cellStarts[cell + 1]; k++) {
+                        collect(cellItems[k], windowMinX, windowMaxX, windowMinY, windowMaxY, dest);
+                    }
+                }
+            }
+        }
+
+        // drawing order is the order of the data
+        Arrays.sort(dest, 0, found);
+
+        return dest;
+    }
+
+    /**
+     * Returns the number of boxes found by the last query.
+     *
+     * @return the number of indices written
+     */
+    public int getFound() {
+        return found;
+    }
+
+    private void collect(int i, double windowMinX, double windowMaxX, double windowMinY, double windowMaxY,
+                         int[] dest) {
+        if (stamps[i] == stamp) {
+            return;
+        }
+
+        stamps[i] = stamp;
+
+        if (bounds[4 * i] <= windowMaxX && bounds[4 * i + 1] >= windowMinX
+                && bounds[4 * i + 2] <= windowMaxY && bounds[4 * i + 3] >= windowMinY) {
+            dest[found++] = i;
+        }
+    }
+
+    private boolean isFinite(int i) {
+        // boxes of ellipses with missing values can't be drawn, and would stretch the grid to infinity
+        for (int k = 4 * i; k < 4 * i + 4; k++) {
+            if (Double.isNaN(bounds[k]) || Double.isInfinite(bounds[k])) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private boolean isLarge(int i) {
+        long width = column(bounds[4 * i + 1]) - column(bounds[4 * i]) + 1;
+        long height = row(bounds[4 * i + 3]) - row(bounds[4 * i + 2]) + 1;
+
+        return width * height > MAX_CELLS_PER_BOX;
+    }
+
+    private int column(double x) {
+        return clamp((int) Math.floor((x - minX) / cellWidth), columns);
+    }
+
+    private int row(double y) {
+        return clamp((int) Math.floor((y - minY) / cellHeight), rows);
+    }
+
+    private static int clamp(int cell, int cells) {
+        return Math.max(0, Math.min(cells - 1, cell));
+    }
+}
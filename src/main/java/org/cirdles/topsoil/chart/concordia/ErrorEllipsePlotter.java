@@ -15,12 +15,9 @@
  */
 package org.cirdles.topsoil.chart.concordia;
 
-import Jama.*;
 import javafx.scene.Group;
 import javafx.scene.Node;
 import javafx.scene.shape.Circle;
-import javafx.scene.shape.CubicCurveTo;
-import javafx.scene.shape.MoveTo;
 import javafx.scene.shape.Path;
 import javafx.scene.chart.XYChart.Data;
 import javafx.scene.paint.Color;
@@ -37,17 +34,17 @@ import org.cirdles.topsoil.chart.Plotter;
  */
 public class ErrorEllipsePlotter extends Plotter<ErrorEllipse, ErrorEllipseChart> {
     
+    // reused by every update
+    private final double[] coordinates = new double[ErrorEllipse.CONTROL_POINT_COORDINATES];
+
     public ErrorEllipsePlotter(ErrorEllipseChart chart) {
         super(chart);
     }
 
     @Override
     public Node plot(ErrorEllipse errorEllipse) {
-        Path ellipse = new Path(new MoveTo(),
-                                new CubicCurveTo(),
-                                new CubicCurveTo(),
-                                new CubicCurveTo(),
-                                new CubicCurveTo());
+        // the elements are set by update, to suit the ellipse's size on screen
+        Path ellipse = new Path();
         
         //Stroke color and visibility will always be what the style require them to be 
         ellipse.strokeProperty().bind(chart.ellipseOutlineColorProperty());        
@@ -56,33 +53,37 @@ public class ErrorEllipsePlotter extends Plotter<ErrorEllipse, ErrorEllipseChart
         ellipse.setStrokeWidth(2);
         ellipse.setFill(Color.TRANSPARENT);
         
-        Circle center = new Circle(mapXToDisplay(errorEllipse.getX()),
-                                   mapYToDisplay(errorEllipse.getY()),
-                                   3); // circle radius
+        Circle center = new Circle(3); // circle radius
         
         Group node = new Group(ellipse, center);
         node.getStyleClass().add("error-ellipse");
 
-        Matrix controlPoints = errorEllipse.getControlPoints(chart.getConfidenceLevel());
-        
-        MoveTo moveTo = (MoveTo) ellipse.getElements().get(0);
-        moveTo.setX(mapXToDisplay(controlPoints.get(0, 0)));
-        moveTo.setY(mapYToDisplay(controlPoints.get(0, 1)));
+        update(node, errorEllipse);
+
+        return node;
+    }
 
-        for (int i = 1; i <= 4; i++) {
-            CubicCurveTo cubicCurveTo = (CubicCurveTo) ellipse.getElements().get(i);
+    /**
+     * Moves an outline created by {@link #plot(ErrorEllipse)} to where an error ellipse is now displayed, so that the
+     * same node can be kept from one layout to the next. The outline takes the detail the chart chooses for the
+     * ellipse's size on screen.
+     *
+     * @param node the outline to move
+     * @param errorEllipse the ellipse it shows
+     */
+    public void update(Node node, ErrorEllipse errorEllipse) {
+        Path ellipse = (Path) ((Group) node).getChildren().get(0);
+        Circle center = (Circle) ((Group) node).getChildren().get(1);
 
-            // set control points
-            cubicCurveTo.setControlX1(mapXToDisplay(controlPoints.get(i * 3 - 2, 0)));
-            cubicCurveTo.setControlY1(mapYToDisplay(controlPoints.get(i * 3 - 2, 1)));
-            cubicCurveTo.setControlX2(mapXToDisplay(controlPoints.get(i * 3 - 1, 0)));
-            cubicCurveTo.setControlY2(mapYToDisplay(controlPoints.get(i * 3 - 1, 1)));
+        center.setCenterX(mapXToDisplay(errorEllipse.getX()));
+        center.setCenterY(mapYToDisplay(errorEllipse.getY()));
 
-            // set final point
-            cubicCurveTo.setX(mapXToDisplay(controlPoints.get(i * 3, 0)));
-            cubicCurveTo.setY(mapYToDisplay(controlPoints.get(i * 3, 1)));
+        errorEllipse.getControlPoints(chart.getConfidenceLevel(), coordinates, 0);
+        for (int i = 0; i < coordinates.length; i += 2) {
+            coordinates[i] = mapXToDisplay(coordinates[i]);
+            coordinates[i + 1] = mapYToDisplay(coordinates[i + 1]);
         }
 
-        return node;
+        chart.getErrorEllipseDetail(coordinates, 0).trace(ellipse, coordinates, 0);
     }
 }
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2014 CIRDLES.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cirdles.topsoil.chart.concordia;
+
+/**
+ * How an {@link ErrorEllipseChart} draws its ellipses.
+ *
+ * @author John Zeringue <john.joseph.zeringue@gmail.com>
+ */
+public enum ErrorEllipseRenderMode {
+
+    /**
+     * Nodes for small data sets, a canvas once there are more ellipses in view than the chart's canvas threshold and
+     * their density once there are more than its density threshold.
+     */
+    AUTOMATIC,
+
+    /**
+     * A fill node and an outline node per ellipse, which can be styled with CSS.
+     */
+    NODES,
+
+    /**
+     * Every ellipse drawn into a single canvas, which keeps the scene graph small however many ellipses there are.
+     */
+    CANVAS,
+
+    /**
+     * The probability density of all the ellipses as an image, for data sets too large to show ellipse by ellipse.
+     */
+    DENSITY;
+}
@@ -15,6 +15,10 @@
  */
 package org.cirdles.topsoil.chart.concordia;
 
+import java.util.ArrayList;
+import java.util.List;
+import javafx.beans.InvalidationListener;
+import javafx.beans.Observable;
 import javafx.scene.chart.XYChart.Data;
 import org.cirdles.topsoil.chart.DataConverter;
 import org.cirdles.topsoil.table.Field;
@@ -26,6 +30,10 @@ import org.cirdles.topsoil.ExpressionType;
  * with a <code>Record</code> attached. The fields passed into the constructor are used to map values from the
  * <code>Record</code> into new <code>ErrorEllipse</code>s. The <code>Record</code>s must be set as the extra values of
  * the <code>Data</code> objects.
+ * <p>
+ * The converter is observable: its listeners are told whenever a setting changes the ellipses it creates, so that
+ * ellipses converted earlier can be thrown away. The ellipses themselves are snapshots of their records, and
+ * {@link #getRevision(Data)} tells when a record has changed since.
  *
  * @see DataConverter
  * @see ErrorEllipse
@@ -33,7 +41,7 @@ import org.cirdles.topsoil.ExpressionType;
  * @see Field
  * @see Data
  */
-public class RecordToErrorEllipseConverter implements DataConverter<ErrorEllipse> {
+public class RecordToErrorEllipseConverter implements DataConverter<ErrorEllipse>, Observable {
 
     private final Field<Number> xField;
     private final Field<Number> sigmaXField;
@@ -47,6 +55,8 @@ public class RecordToErrorEllipseConverter implements DataConverter<ErrorEllipse
     private double errorSizeSigmaY = 1;
     private ExpressionType expressionTypeSigmaY = ExpressionType.ABSOLUTE;
 
+    private final List<InvalidationListener> listeners = new ArrayList<>();
+
     /**
      * Creates a new converter that instantiates new <code>ErrorEllipse</code>s from <code>Record</code>s. The
      * constructor parameters specify the fields that should correspond to x, sigmaX, y, sigmaY, and rho in the
@@ -71,7 +81,8 @@ public class RecordToErrorEllipseConverter implements DataConverter<ErrorEllipse
     /**
      * Converts a <code>Data</code> object into a new ErrorEllipse. The conversion requires that the <code>Data</code>'s
      * extra value is a <code>Record</code> containing values for the fields given in the constructor. The
-     * <code>Data</code>'s x and y values are ignored.
+     * <code>Data</code>'s x and y values are ignored. The ellipse holds the values the record has now, and doesn't
+     * follow later changes to the record.
      *
      * @param data a <code>Data</code> object with a <code>Record</code> as its extra value
      * @return a new <code>ErrorEllipse</code> using the data attached to the argument
@@ -80,33 +91,39 @@ public class RecordToErrorEllipseConverter implements DataConverter<ErrorEllipse
     public ErrorEllipse convert(Data data) {
         Record record = (Record) data.getExtraValue();
 
+        double x = record.getDouble(xField);
+        double sigmaX = record.getDouble(sigmaXField) / errorSizeSigmaX
+                * (expressionTypeSigmaX == ExpressionType.ABSOLUTE ? 1 : x / 100);
+        double y = record.getDouble(yField);
+        double sigmaY = record.getDouble(sigmaYField) / errorSizeSigmaY
+                * (expressionTypeSigmaY == ExpressionType.ABSOLUTE ? 1 : y / 100);
+        double rho = record.getDouble(rhoField);
+
         return new ErrorEllipse() {
 
             @Override
             public double getX() {
-                return record.getValue(xField).doubleValue();
+                return x;
             }
 
             @Override
             public double getSigmaX() {
-                return record.getValue(sigmaXField).doubleValue() / errorSizeSigmaX
-                        * (expressionTypeSigmaX == ExpressionType.ABSOLUTE ? 1 : record.getValue(xField).doubleValue() / 100);
+                return sigmaX;
             }
 
             @Override
             public double getY() {
-                return record.getValue(yField).doubleValue();
+                return y;
             }
 
             @Override
             public double getSigmaY() {
-                return record.getValue(sigmaYField).doubleValue() / errorSizeSigmaY
-                        * (expressionTypeSigmaY == ExpressionType.ABSOLUTE ? 1 : record.getValue(yField).doubleValue() / 100);
+                return sigmaY;
             }
 
             @Override
             public double getRho() {
-                return record.getValue(rhoField).doubleValue();
+                return rho;
             }
 
             @Override
@@ -116,6 +133,34 @@ public class RecordToErrorEllipseConverter implements DataConverter<ErrorEllipse
         };
     }
 
+    /**
+     * Returns the revision of the <code>Record</code> attached to a <code>Data</code>, which changes whenever the record
+     * is edited.
+     *
+     * @param data a <code>Data</code> object with a <code>Record</code> as its extra value
+     * @return the revision of the record
+     */
+    @Override
+    public long getRevision(Data data) {
+        return ((Record) data.getExtraValue()).getRevision();
+    }
+
+    @Override
+    public void addListener(InvalidationListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeListener(InvalidationListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void invalidated() {
+        for (InvalidationListener listener : new ArrayList<>(listeners)) {
+            listener.invalidated(this);
+        }
+    }
+
     /**
      * @return the errorSizeSigmaX
      */
@@ -128,6 +173,7 @@ public class RecordToErrorEllipseConverter implements DataConverter<ErrorEllipse
      */
     public void setErrorSizeSigmaX(double errorSizeSigmaX) {
         this.errorSizeSigmaX = errorSizeSigmaX;
+        invalidated();
     }
 
     /**
@@ -142,6 +188,7 @@ public class RecordToErrorEllipseConverter implements DataConverter<ErrorEllipse
      */
     public void setExpressionTypeSigmaX(ExpressionType expressionTypeSigmaX) {
         this.expressionTypeSigmaX = expressionTypeSigmaX;
+        invalidated();
     }
 
     /**
@@ -156,6 +203,7 @@ public class RecordToErrorEllipseConverter implements DataConverter<ErrorEllipse
      */
     public void setErrorSizeSigmaY(double errorSizeSigmaY) {
         this.errorSizeSigmaY = errorSizeSigmaY;
+        invalidated();
     }
 
     /**
@@ -170,5 +218,6 @@ public class RecordToErrorEllipseConverter implements DataConverter<ErrorEllipse
      */
     public void setExpressionTypeSigmaY(ExpressionType expressionTypeSigmaY) {
         this.expressionTypeSigmaY = expressionTypeSigmaY;
+        invalidated();
     }
 }
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2014 CIRDLES.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cirdles.topsoil.table;
+
+/**
+ * The storage for the values of a single field in a {@link RecordStore}, indexed by row.
+ *
+ * @author CIRDLES
+ * @param <T> the type of the values
+ */
+abstract class Column<T> {
+
+    public abstract T get(int row);
+
+    public abstract void set(int row, T value);
+
+    /**
+     * Grows the column so that it can hold at least the given number of rows. New rows hold no value.
+     *
+     * @param capacity the minimum number of rows
+     */
+    public abstract void ensureCapacity(int capacity);
+
+    /**
+     * Copies the first rows of another column of the same kind into this one.
+     *
+     * @param src the column to copy from
+     * @param count the number of rows to copy
+     * @param destRow the row of this column to copy the first row to
+     */
+    public abstract void copy(Column<T> src, int count, int destRow);
+
+    static int grow(int currentCapacity, int minimumCapacity) {
+        return Math.max(minimumCapacity, Math.max(16, currentCapacity + (currentCapacity >> 1)));
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2014 CIRDLES.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cirdles.topsoil.table;
+
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+/**
+ * A column of numbers stored as primitive doubles. Whether a row holds a value at all is tracked separately in a
+ * bitmap, so that empty cells stay distinguishable from <code>NaN</code>.
+ *
+ * @author CIRDLES
+ */
+public class DoubleColumn extends Column<Number> {
+
+    private double[] values = new double[0];
+    private long[] defined = new long[0];
+
+    @Override
+    public Number get(int row) {
+        return isDefined(row) ? values[row] : null;
+    }
+
+    @Override
+    public void set(int row, Number value) {
+        if (value == null) {
+            clear(row);
+        } else {
+            setDouble(row, value.doubleValue());
+        }
+    }
+
+    /**
+     * Returns the value of the given row without boxing it.
+     *
+     * @param row the row
+     * @return the value, or <code>NaN</code> if the row holds no value
+     */
+    public double getDouble(int row) {
+        return isDefined(row) ? values[row] : Double.NaN;
+    }
+
+    public void setDouble(int row, double value) {
+        values[row] = value;
+        defined[row >> 6] |= 1L << row;
+    }
+
+    public boolean isDefined(int row) {
+        return (defined[row >> 6] & (1L << row)) != 0;
+    }
+
+    public void clear(int row) {
+        values[row] = 0;
+        defined[row >> 6] &= ~(1L << row);
+    }
+
+    /**
+     * Fills the first rows of this column straight from buffers, without going through individual cells. The column
+     * must already have room for the rows.
+     *
+     * @param values the values of the rows
+     * @param definedBits the bitmap of rows that hold a value, 64 rows to a word, lowest bit first
+     * @param count the number of rows to fill
+     */
+    public void load(DoubleBuffer values, LongBuffer definedBits, int count) {
+        values.get(this.values, 0, count);
+
+        int words = (count + 63) >> 6;
+        definedBits.get(defined, 0, words);
+
+        // bits past the last row don't belong to it
+        if ((count & 63) != 0) {
+            defined[words - 1] &= (1L << count) - 1;
+        }
+    }
+
+    @Override
+    public void copy(Column<Number> src, int count, int destRow) {
+        DoubleColumn source = (DoubleColumn) src;
+        System.arraycopy(source.values, 0, values, destRow, count);
+
+        for (int i = 0; i < count; i++) {
+            int row = destRow + i;
+            if (source.isDefined(i)) {
+                defined[row >> 6] |= 1L << row;
+            } else {
+                defined[row >> 6] &= ~(1L << row);
+            }
+        }
+    }
+
+    @Override
+    public void ensureCapacity(int capacity) {
+        if (capacity > values.length) {
+            values = Arrays.copyOf(values, grow(values.length, capacity));
+            defined = Arrays.copyOf(defined, (values.length + 63) >> 6);
+        }
+    }
+}
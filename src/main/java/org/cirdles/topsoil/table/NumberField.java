@@ -17,6 +17,7 @@
 package org.cirdles.topsoil.table;
 
 import javafx.util.StringConverter;
+import org.cirdles.topsoil.utils.DoubleScanner;
 
 /**
  *
@@ -35,6 +36,8 @@ public class NumberField extends Field<Number> {
     public StringConverter<Number> getStringConverter() {
         return new StringConverter<Number>() {
 
+            private final DoubleScanner scanner = new DoubleScanner();
+
             @Override
             public String toString(Number number) {
                 if (number == null) {
@@ -46,7 +49,12 @@ public class NumberField extends Field<Number> {
 
             @Override
             public Number fromString(String string) {
-                return Double.valueOf(string);
+                // anything that isn't a number leaves the cell empty
+                if (scanner.scan(string) != DoubleScanner.NUMBER) {
+                    return null;
+                }
+
+                return scanner.value();
             }
         };
     }
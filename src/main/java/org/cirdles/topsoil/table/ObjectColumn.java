@@ -0,0 +1,51 @@
+/*
+ * Copyright 2014 CIRDLES.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cirdles.topsoil.table;
+
+import java.util.Arrays;
+
+/**
+ * A column of arbitrary values, used for every field that is not a {@link NumberField}.
+ *
+ * @author CIRDLES
+ * @param <T> the type of the values
+ */
+class ObjectColumn<T> extends Column<T> {
+
+    private Object[] values = new Object[0];
+
+    @Override
+    public T get(int row) {
+        return (T) values[row];
+    }
+
+    @Override
+    public void set(int row, T value) {
+        values[row] = value;
+    }
+
+    @Override
+    public void copy(Column<T> src, int count, int destRow) {
+        System.arraycopy(((ObjectColumn<T>) src).values, 0, values, destRow, count);
+    }
+
+    @Override
+    public void ensureCapacity(int capacity) {
+        if (capacity > values.length) {
+            values = Arrays.copyOf(values, grow(values.length, capacity));
+        }
+    }
+}
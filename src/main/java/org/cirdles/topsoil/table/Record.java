@@ -16,56 +16,182 @@
 package org.cirdles.topsoil.table;
 
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.BooleanPropertyBase;
 
 /**
+ * A row of a table. Records created by a {@link RecordStore} are views onto one of its rows, and values for fields the
+ * store doesn't know about (as well as every value of a record created with {@link #Record()}) are kept in a map.
  *
  * @author CIRDLES
  */
 public class Record {
 
-    private final Map<Field, Object> fieldValues;
-    private final BooleanProperty selected = new BooleanPropertyBase(false) {
-        
-        @Override
-        public Object getBean() {
-            return Record.this;
-        }
-        
-        @Override
-        public String getName() {
-            return "selected";
-        }
-    };
+    private final RecordStore store;
+    private final int index;
+
+    private Map<Field, Object> fieldValues;
+
+    // created lazily, since most records are never observed
+    private BooleanProperty selected;
+    private boolean selectedValue;
+
+    // bumped by every change made through this record
+    private int revision;
 
     public Record() {
-        fieldValues = new HashMap<>();
+        this(null, -1);
+    }
+
+    Record(RecordStore store, int index) {
+        this.store = store;
+        this.index = index;
     }
     
     public Set<Field> getFields() {
-        return fieldValues.keySet();
+        Set<Field> fields = new LinkedHashSet<>();
+
+        if (store != null) {
+            fields.addAll(store.getFields());
+        }
+
+        if (fieldValues != null) {
+            fields.addAll(fieldValues.keySet());
+        }
+
+        return fields;
+    }
+
+    /**
+     * Returns the store backing this record.
+     *
+     * @return the store, or <code>null</code> if this record isn't backed by one
+     */
+    public RecordStore getStore() {
+        return store;
+    }
+
+    /**
+     * Returns the row of the backing store this record views.
+     *
+     * @return the row index, or -1 if this record isn't backed by a store
+     */
+    public int getIndex() {
+        return index;
     }
     
+    /**
+     * Returns a number that changes whenever a value is set through this record, so that anything derived from the
+     * record's values can tell whether it is out of date.
+     *
+     * @return the revision of this record's values
+     */
+    public int getRevision() {
+        return revision;
+    }
+
     public boolean getSelected() {
-        return selected.get();
+        return selected == null ? selectedValue : selected.get();
     }
 
     public <T> T getValue(Field<T> field) {
-        return (T) fieldValues.get(field);
+        if (isStored(field)) {
+            return store.getValue(index, field);
+        }
+
+        return fieldValues == null ? null : (T) fieldValues.get(field);
+    }
+
+    /**
+     * Returns the value of a numeric field without boxing it where possible.
+     *
+     * @param field the field
+     * @return the value, or <code>NaN</code> if this record has no value for the field
+     */
+    public double getDouble(Field<Number> field) {
+        if (isStored(field) && field instanceof NumberField) {
+            return store.getDoubleColumn(field).getDouble(index);
+        }
+
+        Number value = getValue(field);
+        return value == null ? Double.NaN : value.doubleValue();
     }
     
+    /**
+     * Returns whether this record holds a value for a field, without boxing numbers that are stored as primitives.
+     *
+     * @param field the field
+     * @return whether the value of the field is not <code>null</code>
+     */
+    public boolean hasValue(Field<?> field) {
+        if (isStored(field) && field instanceof NumberField) {
+            return store.getDoubleColumn((Field<Number>) field).isDefined(index);
+        }
+
+        return getValue(field) != null;
+    }
+
     public BooleanProperty selectedProperty() {
+        if (selected == null) {
+            selected = new BooleanPropertyBase(selectedValue) {
+
+                @Override
+                public Object getBean() {
+                    return Record.this;
+                }
+
+                @Override
+                public String getName() {
+                    return "selected";
+                }
+            };
+        }
+
         return selected;
     }
     
     public void setSelected(boolean value) {
-        selected.set(value);
+        if (selected == null) {
+            selectedValue = value;
+        } else {
+            selected.set(value);
+        }
     }
 
     public <T> void setValue(Field<T> field, T value) {
+        revision++;
+
+        if (isStored(field)) {
+            store.setValue(index, field, value);
+            return;
+        }
+
+        if (fieldValues == null) {
+            fieldValues = new HashMap<>();
+        }
+
         fieldValues.put(field, value);
     }
+
+    /**
+     * Sets the value of a numeric field without boxing it where possible.
+     *
+     * @param field the field
+     * @param value the new value
+     */
+    public void setDouble(Field<Number> field, double value) {
+        if (isStored(field) && field instanceof NumberField) {
+            revision++;
+            store.getDoubleColumn(field).setDouble(index, value);
+        } else {
+            setValue(field, value);
+        }
+    }
+
+    private boolean isStored(Field<?> field) {
+        return store != null && store.hasField(field);
+    }
 }
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2014 CIRDLES.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cirdles.topsoil.table;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Column-oriented storage for the values of a table. Each {@link NumberField} is backed by a growable
+ * <code>double[]</code> and every other field by a plain array, while the {@link Record}s handed out by
+ * {@link #newRecord()} are lightweight views onto a single row.
+ *
+ * @author CIRDLES
+ */
+public class RecordStore {
+
+    private final List<Field<?>> fields = new ArrayList<>();
+    private final Map<Field<?>, Column<?>> columns = new HashMap<>();
+
+    private int size;
+    private int capacity;
+
+    public RecordStore(List<Field<?>> fields) {
+        for (Field<?> field : fields) {
+            addField(field);
+        }
+    }
+
+    /**
+     * Adds a new column to this store. Existing rows hold no value for the new field.
+     *
+     * @param field the field to add
+     */
+    public final void addField(Field<?> field) {
+        if (columns.containsKey(field)) {
+            throw new IllegalArgumentException("Field " + field.getName() + " is already part of this store.");
+        }
+
+        Column<?> column = field instanceof NumberField ? new DoubleColumn() : new ObjectColumn<>();
+        column.ensureCapacity(capacity);
+
+        fields.add(field);
+        columns.put(field, column);
+    }
+
+    /**
+     * Copies the values of some fields of some records into a new store, with new fields named as the originals are
+     * now. Later changes to the records, their store or the names of the fields don't reach the copy, so it can be read
+     * on another thread while the originals carry on being edited.
+     *
+     * @param fields the fields to copy, in order
+     * @param records the records to copy, in order
+     * @return the new store, whose fields correspond to <code>fields</code> in order
+     */
+    public static RecordStore copyOf(List<Field<?>> fields, List<Record> records) {
+        List<Field<?>> copies = new ArrayList<>(fields.size());
+        for (Field<?> field : fields) {
+            copies.add(field instanceof NumberField ? new NumberField(field.getName()) : new TextField(field.getName()));
+        }
+
+        RecordStore copy = new RecordStore(copies);
+        copy.appendRows(records.size());
+
+        for (int j = 0; j < fields.size(); j++) {
+            Field<?> field = fields.get(j);
+            Column column = copy.columns.get(copies.get(j));
+
+            if (field instanceof NumberField) {
+                DoubleColumn numbers = (DoubleColumn) column;
+
+                for (int i = 0; i < records.size(); i++) {
+                    Record record = records.get(i);
+                    if (record.hasValue(field)) {
+                        numbers.setDouble(i, record.getDouble((Field<Number>) field));
+                    }
+                }
+            } else {
+                for (int i = 0; i < records.size(); i++) {
+                    column.set(i, records.get(i).getValue(field));
+                }
+            }
+        }
+
+        return copy;
+    }
+
+    public List<Field<?>> getFields() {
+        return Collections.unmodifiableList(fields);
+    }
+
+    public boolean hasField(Field<?> field) {
+        return columns.containsKey(field);
+    }
+
+    /**
+     * Returns the number of rows in this store.
+     *
+     * @return the number of rows
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Appends an empty row to this store.
+     *
+     * @return a record viewing the new row
+     */
+    public Record newRecord() {
+        return new Record(this, appendRow());
+    }
+
+    /**
+     * Appends an empty row to this store without creating a record for it.
+     *
+     * @return the index of the new row
+     */
+    public int appendRow() {
+        ensureCapacity(size + 1);
+        return size++;
+    }
+
+    /**
+     * Appends empty rows to this store at once.
+     *
+     * @param count the number of rows to append
+     * @return the index of the first new row
+     */
+    public int appendRows(int count) {
+        ensureCapacity(size + count);
+
+        int first = size;
+        size += count;
+        return first;
+    }
+
+    /**
+     * Appends copies of all the rows of another store with the same fields, in order.
+     *
+     * @param other the store to copy from
+     * @return the index of the first appended row
+     */
+    public int appendAll(RecordStore other) {
+        if (!fields.equals(other.fields)) {
+            throw new IllegalArgumentException("Stores must have the same fields.");
+        }
+
+        int first = size;
+        ensureCapacity(size + other.size);
+
+        for (Field<?> field : fields) {
+            ((Column) columns.get(field)).copy(other.columns.get(field), other.size, first);
+        }
+
+        size += other.size;
+        return first;
+    }
+
+    /**
+     * Returns a new record viewing an existing row.
+     *
+     * @param row the index of the row
+     * @return a record viewing the row
+     */
+    public Record recordAt(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+        }
+
+        return new Record(this, row);
+    }
+
+    /**
+     * Returns the rows of this store as a list of records, which are created as they are asked for.
+     *
+     * @return a list viewing every row of this store, in order
+     */
+    public List<Record> asList() {
+        return new AbstractList<Record>() {
+
+            @Override
+            public Record get(int row) {
+                return recordAt(row);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Returns the primitive storage of a numeric field.
+     *
+     * @param field a {@link NumberField} of this store
+     * @return the column backing the field
+     */
+    public DoubleColumn getDoubleColumn(Field<Number> field) {
+        return (DoubleColumn) columns.get(field);
+    }
+
+    public <T> T getValue(int row, Field<T> field) {
+        return ((Column<T>) columns.get(field)).get(row);
+    }
+
+    public <T> void setValue(int row, Field<T> field, T value) {
+        ((Column<T>) columns.get(field)).set(row, value);
+    }
+
+    private void ensureCapacity(int minimumCapacity) {
+        if (minimumCapacity > capacity) {
+            capacity = Column.grow(capacity, minimumCapacity);
+
+            for (Column<?> column : columns.values()) {
+                column.ensureCapacity(capacity);
+            }
+        }
+    }
+}
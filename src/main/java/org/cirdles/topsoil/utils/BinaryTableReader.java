@@ -0,0 +1,207 @@
+/*
+ * Copyright 2014 CIRDLES.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cirdles.topsoil.utils;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import javafx.scene.control.TableView;
+import org.cirdles.topsoil.table.Field;
+import org.cirdles.topsoil.table.NumberField;
+import org.cirdles.topsoil.table.Record;
+import org.cirdles.topsoil.table.RecordStore;
+import org.cirdles.topsoil.table.TextField;
+
+/**
+ * Reads tables written by {@link BinaryTableWriter}. The file is memory-mapped and numeric columns are copied into the
+ * table's storage in bulk, so nothing is parsed and no cell is boxed.
+ *
+ * @author John Zeringue <john.joseph.zeringue@gmail.com>
+ */
+public class BinaryTableReader {
+
+    /**
+     * Reads a session file into a table, replacing its contents in one go.
+     *
+     * @param src the file to read
+     * @param dest the table to fill
+     * @throws IOException if the file cannot be read or isn't a session file
+     */
+    public void read(Path src, TableView<Record> dest) throws IOException {
+        TableViewListener listener = new TableViewListener();
+        read(src, listener);
+        listener.commit(dest);
+    }
+
+    /**
+     * Reads a session file, reporting its fields and rows like {@link TSVTableReader} does.
+     *
+     * @param src the file to read
+     * @param listener the listener receiving the fields and rows
+     * @throws IOException if the file cannot be read or isn't a session file
+     */
+    public void read(Path src, TableReadListener<Record> listener) throws IOException {
+        RecordStore store = readStore(src);
+
+        listener.fieldsRead(new ArrayList<>(store.getFields()));
+
+        List<Record> batch = new ArrayList<>(TSVTableReader.BATCH_SIZE);
+        for (int row = 0; row < store.size(); row++) {
+            batch.add(store.recordAt(row));
+
+            if (batch.size() == TSVTableReader.BATCH_SIZE) {
+                listener.rowsRead(batch);
+                batch = new ArrayList<>(TSVTableReader.BATCH_SIZE);
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            listener.rowsRead(batch);
+        }
+
+        listener.positionRead(Files.size(src));
+    }
+
+    /**
+     * Reads a session file into a new store, with fields as named in the file.
+     *
+     * @param src the file to read
+     * @return the store holding every row of the file
+     * @throws IOException if the file cannot be read or isn't a session file
+     */
+    static RecordStore readStore(Path src) throws IOException {
+        try (FileChannel channel = FileChannel.open(src, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(src + " is too large to be a session file.");
+            }
+
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            try {
+                return readStore(buffer);
+            } catch (BufferUnderflowException | IllegalArgumentException ex) {
+                throw new IOException(src + " is truncated.", ex);
+            }
+        }
+    }
+
+    private static RecordStore readStore(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < 8 || buffer.getInt() != BinaryTableWriter.MAGIC) {
+            throw new IOException("Not a Topsoil session file.");
+        }
+
+        int version = buffer.getInt();
+        if (version != BinaryTableWriter.VERSION) {
+            throw new IOException("Unsupported session file version " + version + ".");
+        }
+
+        int rowCount = buffer.getInt();
+        int fieldCount = buffer.getInt();
+        // every field takes at least a type and a name length, so a count the file can't hold is corrupt; rows without
+        // fields would cost memory without taking up any space in the file, so they're refused too
+        if (rowCount < 0 || fieldCount < 0 || fieldCount > buffer.remaining() / 5
+                || rowCount > 0 && fieldCount == 0) {
+            throw new IOException("Corrupt session file.");
+        }
+
+        List<Field<?>> fields = new ArrayList<>(fieldCount);
+        long columnsSize = 0;
+        for (int i = 0; i < fieldCount; i++) {
+            byte type = buffer.get();
+            String name = getString(buffer);
+
+            if (type == BinaryTableWriter.NUMBER_TYPE) {
+                fields.add(new NumberField(name));
+                columnsSize += numbersSize(rowCount);
+            } else {
+                fields.add(new TextField(name));
+                columnsSize += 4L * rowCount;
+            }
+        }
+
+        // checked before the rows are allocated, so that a bad header can't ask for more memory than the file holds
+        if (columnsSize > buffer.remaining()) {
+            throw new IOException("Corrupt session file: " + rowCount + " rows don't fit in "
+                                  + buffer.remaining() + " bytes.");
+        }
+
+        RecordStore store = new RecordStore(fields);
+        store.appendRows(rowCount);
+
+        for (Field<?> field : fields) {
+            if (field instanceof NumberField) {
+                align(buffer, 8);
+
+                ByteBuffer definedBits = buffer.slice();
+                skip(buffer, ((rowCount + 63L) >> 6) * 8);
+
+                ByteBuffer values = buffer.slice();
+                skip(buffer, rowCount * 8L);
+
+                store.getDoubleColumn((Field<Number>) field)
+                        .load(values.asDoubleBuffer(), definedBits.asLongBuffer(), rowCount);
+            } else {
+                Field<String> textField = (Field<String>) field;
+
+                for (int row = 0; row < rowCount; row++) {
+                    store.setValue(row, textField, getString(buffer));
+                }
+            }
+        }
+
+        return store;
+    }
+
+    private static long numbersSize(int rowCount) {
+        // the bitmap and the values, leaving out the alignment
+        return ((rowCount + 63L) >> 6) * 8 + rowCount * 8L;
+    }
+
+    private static void skip(ByteBuffer buffer, long length) throws IOException {
+        if (length > buffer.remaining()) {
+            throw new IOException("Corrupt session file: a column runs past the end.");
+        }
+
+        buffer.position(buffer.position() + (int) length);
+    }
+
+    private static String getString(ByteBuffer buffer) throws IOException {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+
+        if (length > buffer.remaining()) {
+            throw new IOException("Corrupt session file: a string runs past the end.");
+        }
+
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void align(ByteBuffer buffer, int alignment) {
+        buffer.position((buffer.position() + alignment - 1) / alignment * alignment);
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright 2014 CIRDLES.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cirdles.topsoil.utils;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Parses decimal numbers directly from ASCII bytes or characters without creating intermediate <code>String</code>s or
+ * throwing exceptions. Numbers with at most 15 significant digits and a small decimal exponent (which covers almost
+ * every value found in data tables) are converted exactly with a single multiplication or division, and "NaN" and
+ * "Infinity" are recognized directly; only hexadecimal numbers and values that need careful rounding fall back to
+ * {@link Double#parseDouble(String)}. Anything <code>Double.parseDouble</code> accepts is accepted with the same value.
+ * <p>
+ * A scanner is not thread-safe, but is cheap enough to create one per thread.
+ *
+ * @author John Zeringue <john.joseph.zeringue@gmail.com>
+ */
+public class DoubleScanner {
+
+    /**
+     * The status of a scan that found a number.
+     */
+    public static final int NUMBER = 0;
+
+    /**
+     * The status of a scan over nothing but whitespace.
+     */
+    public static final int EMPTY = 1;
+
+    /**
+     * The status of a scan that found something other than a number.
+     */
+    public static final int INVALID = 2;
+
+    // the powers of ten that are exactly representable as doubles
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private static final int MAX_EXACT_DIGITS = 15;
+
+    private double value;
+
+    // the source of the current scan, exactly one of which is set
+    private ByteBuffer bytes;
+    private CharSequence chars;
+
+    /**
+     * Returns the value of the last scan that found a number.
+     *
+     * @return the last value scanned
+     */
+    public double value() {
+        return value;
+    }
+
+    /**
+     * Scans the bytes between <code>start</code> (inclusive) and <code>end</code> (exclusive) as a number, using
+     * absolute indexing so that the buffer's position is left untouched.
+     *
+     * @param buffer the bytes to read from
+     * @param start the index of the first byte
+     * @param end the index after the last byte
+     * @return {@link #NUMBER}, in which case the number is available from {@link #value()}, {@link #EMPTY} or
+     * {@link #INVALID}
+     */
+    public int scan(ByteBuffer buffer, int start, int end) {
+        bytes = buffer;
+        int status = scanRange(start, end);
+        bytes = null;
+
+        return status;
+    }
+
+    /**
+     * Scans a string as a number.
+     *
+     * @param string the characters to read, which may be <code>null</code>
+     * @return {@link #NUMBER}, in which case the number is available from {@link #value()}, {@link #EMPTY} or
+     * {@link #INVALID}
+     */
+    public int scan(CharSequence string) {
+        if (string == null) {
+            return EMPTY;
+        }
+
+        chars = string;
+        int status = scanRange(0, string.length());
+        chars = null;
+
+        return status;
+    }
+
+    private int at(int i) {
+        return bytes != null ? bytes.get(i) & 0xFF : chars.charAt(i);
+    }
+
+    private int scanRange(int start, int end) {
+        // Double.parseDouble ignores surrounding whitespace
+        while (start < end && at(start) <= ' ') {
+            start++;
+        }
+        while (end > start && at(end - 1) <= ' ') {
+            end--;
+        }
+
+        if (start == end) {
+            return EMPTY;
+        }
+
+        int i = start;
+        boolean negative = false;
+        int c = at(i);
+        if (c == '-' || c == '+') {
+            negative = c == '-';
+            i++;
+        }
+
+        if (i < end && (at(i) == 'N' || at(i) == 'I')) {
+            if (matches(i, end, "NaN")) {
+                value = Double.NaN;
+                return NUMBER;
+            }
+
+            if (matches(i, end, "Infinity")) {
+                value = negative ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+                return NUMBER;
+            }
+
+            return INVALID;
+        }
+
+        long significand = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean sawDigit = false;
+        boolean sawPoint = false;
+
+        for (; i < end; i++) {
+            c = at(i);
+
+            if (c >= '0' && c <= '9') {
+                sawDigit = true;
+
+                // leading zeros aren't significant
+                if (significand == 0 && c == '0') {
+                    if (sawPoint) {
+                        exponent--;
+                    }
+                } else if (digits < 19) {
+                    significand = significand * 10 + (c - '0');
+                    digits++;
+
+                    if (sawPoint) {
+                        exponent--;
+                    }
+                } else {
+                    // too many digits to be exact, let the JDK round
+                    return scanSlowly(start, end);
+                }
+            } else if (c == '.' && !sawPoint) {
+                sawPoint = true;
+            } else if (c == 'x' || c == 'X') {
+                // hexadecimal
+                return scanSlowly(start, end);
+            } else {
+                break;
+            }
+        }
+
+        if (!sawDigit) {
+            return INVALID;
+        }
+
+        if (i < end && (c == 'e' || c == 'E')) {
+            i++;
+
+            boolean negativeExponent = false;
+            if (i < end && (at(i) == '-' || at(i) == '+')) {
+                negativeExponent = at(i) == '-';
+                i++;
+            }
+
+            int explicitExponent = 0;
+            int exponentStart = i;
+            for (; i < end && (c = at(i)) >= '0' && c <= '9'; i++) {
+                if (explicitExponent < 100000) {
+                    explicitExponent = explicitExponent * 10 + (c - '0');
+                }
+            }
+
+            if (i == exponentStart) {
+                return INVALID;
+            }
+
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+
+        // Double.parseDouble accepts a trailing type suffix
+        if (i < end && ((c = at(i)) == 'd' || c == 'D' || c == 'f' || c == 'F')) {
+            i++;
+        }
+
+        if (i != end) {
+            return INVALID;
+        }
+
+        if (digits > MAX_EXACT_DIGITS || exponent < -22 || exponent > 22) {
+            if (significand == 0) {
+                value = negative ? -0. : 0.;
+                return NUMBER;
+            }
+
+            return scanSlowly(start, end);
+        }
+
+        double result = significand;
+        if (exponent < 0) {
+            result /= POWERS_OF_TEN[-exponent];
+        } else {
+            result *= POWERS_OF_TEN[exponent];
+        }
+
+        value = negative ? -result : result;
+        return NUMBER;
+    }
+
+    private boolean matches(int start, int end, String word) {
+        if (end - start != word.length()) {
+            return false;
+        }
+
+        for (int i = 0; i < word.length(); i++) {
+            if (at(start + i) != word.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private int scanSlowly(int start, int end) {
+        char[] digits = new char[end - start];
+        for (int i = start; i < end; i++) {
+            digits[i - start] = (char) at(i);
+        }
+
+        try {
+            value = Double.parseDouble(new String(digits));
+            return NUMBER;
+        } catch (NumberFormatException ex) {
+            return INVALID;
+        }
+    }
+}
@@ -0,0 +1,506 @@
+/*
+ * Copyright 2014 CIRDLES.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cirdles.topsoil.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import org.cirdles.topsoil.table.Field;
+import org.cirdles.topsoil.table.NumberField;
+import org.cirdles.topsoil.table.Record;
+import org.cirdles.topsoil.table.RecordStore;
+
+/**
+ * Reads a TSV file by memory-mapping it and scanning the tab and newline offsets directly in the mapped bytes. Numbers
+ * are parsed from the bytes by a {@link DoubleScanner}, so only the header, the first line and text cells are ever
+ * decoded into <code>String</code>s. Files are mapped in windows of bounded size, and a line that runs past the end of
+ * a window is reread from the start of the next one.
+ *
+ * @author John Zeringue <john.joseph.zeringue@gmail.com>
+ */
+class MappedTSVReader {
+
+    static final int DEFAULT_WINDOW_SIZE = 1 << 28;
+
+    // regions smaller than this aren't worth splitting
+    private static final int MIN_CHUNK_SIZE = 1 << 16;
+
+    private final boolean expectingHeader;
+    private final Charset charset;
+    private final int windowSize;
+    private final int parallelism;
+
+    MappedTSVReader(boolean expectingHeader, Charset charset, int windowSize) {
+        this(expectingHeader, charset, windowSize, 1);
+    }
+
+    /**
+     * Creates a reader that parses each mapped window with up to <code>parallelism</code> threads. Windows are split
+     * into chunks at newline boundaries, each chunk is parsed into its own store, and the chunks are then appended to
+     * the table in their original order.
+     */
+    MappedTSVReader(boolean expectingHeader, Charset charset, int windowSize, int parallelism) {
+        this.expectingHeader = expectingHeader;
+        this.charset = charset;
+        this.windowSize = windowSize;
+        this.parallelism = parallelism;
+    }
+
+    void read(Path src, TableReadListener<Record> listener) throws IOException {
+        try (FileChannel channel = FileChannel.open(src, StandardOpenOption.READ)) {
+            if (parallelism > 1) {
+                ForkJoinPool pool = new ForkJoinPool(parallelism);
+                try {
+                    read(channel, listener, pool);
+                } finally {
+                    pool.shutdown();
+                }
+            } else {
+                read(channel, listener, null);
+            }
+        }
+    }
+
+    private void read(FileChannel channel, TableReadListener<Record> listener, ForkJoinPool pool) throws IOException {
+        long fileSize = channel.size();
+        LineParser parser = new LineParser(charset);
+
+        String[] header = null;
+        Field[] fields = null;
+        RecordStore store = null;
+        List<Record> batch = new ArrayList<>(TSVTableReader.BATCH_SIZE);
+
+        // the first lines of data, kept as strings until the column types are known
+        List<String[]> sample = new ArrayList<>(TSVTableReader.TYPE_SAMPLE_SIZE);
+        DoubleScanner scanner = new DoubleScanner();
+
+        long offset = 0;
+        while (offset < fileSize) {
+            long length = Math.min(windowSize, fileSize - offset);
+            boolean lastWindow = offset + length == fileSize;
+
+            Cursor cursor = new Cursor(channel.map(FileChannel.MapMode.READ_ONLY, offset, length), lastWindow);
+            int lineStart = 0;
+            boolean incomplete = false;
+            boolean split = pool != null;
+
+            while (!cursor.atEnd()) {
+                if (split && fields != null) {
+                    split = false;
+
+                    batch = flush(batch, listener);
+                    store = new RecordStore(store.getFields());
+                    cursor.position = readInParallel(cursor, fields, listener, pool);
+                    listener.positionRead(offset + cursor.position);
+                    continue;
+                }
+
+                lineStart = cursor.position;
+
+                if (fields == null) {
+                    String[] line = parser.readStrings(cursor);
+                    if (line == null) {
+                        incomplete = true;
+                        break;
+                    }
+
+                    // blank lines are rows with one empty cell, as opencsv reads them
+                    if (header == null && expectingHeader) {
+                        header = line;
+                    } else {
+                        sample.add(line);
+                    }
+
+                    boolean sampled = sample.size() == TSVTableReader.TYPE_SAMPLE_SIZE
+                            || cursor.lastWindow && cursor.atEnd();
+                    if (!sampled || sample.isEmpty()) {
+                        continue;
+                    }
+
+                    if (header == null) {
+                        header = TSVTableReader.defaultHeader(sample.get(0).length);
+                    }
+
+                    fields = TSVTableReader.createFields(header, sample, scanner);
+                    store = TSVTableReader.createStore(fields, listener);
+                    for (String[] sampleLine : sample) {
+                        batch.add(TSVTableReader.toRecord(store, fields, sampleLine, scanner));
+                    }
+
+                    parser.setFields(fields);
+                    continue;
+                }
+
+                int row = parser.readRow(cursor, store);
+                if (row == LineParser.INCOMPLETE) {
+                    incomplete = true;
+                    break;
+                }
+
+                batch.add(store.recordAt(row));
+                if (batch.size() == TSVTableReader.BATCH_SIZE) {
+                    batch = flush(batch, listener);
+                    listener.positionRead(offset + cursor.position);
+
+                    // the reported rows are the listener's now, so their store must stop growing
+                    store = new RecordStore(store.getFields());
+                }
+            }
+
+            // the cursor can stop at the end of the window in the middle of a line
+            if (!incomplete) {
+                offset += length;
+            } else if (lineStart == 0) {
+                throw new IOException("Line at offset " + offset + " is longer than " + windowSize + " bytes.");
+            } else {
+                offset += lineStart;
+            }
+        }
+
+        if (fields == null && header != null) {
+            // a header without data
+            TSVTableReader.createStore(TSVTableReader.createFields(header, sample, scanner), listener);
+        }
+
+        if (!batch.isEmpty()) {
+            listener.rowsRead(batch);
+        }
+
+        listener.positionRead(fileSize);
+    }
+
+    private static List<Record> flush(List<Record> batch, TableReadListener<Record> listener) {
+        if (batch.isEmpty()) {
+            return batch;
+        }
+
+        listener.rowsRead(batch);
+        return new ArrayList<>(TSVTableReader.BATCH_SIZE);
+    }
+
+    /**
+     * Parses the complete lines left in the cursor's window in parallel chunks and reports them in order. The rows of
+     * each chunk are reported straight from the chunk's own store, which is finished with by then.
+     *
+     * @return the position the sequential read should continue from
+     */
+    private int readInParallel(Cursor cursor, Field[] fields, TableReadListener<Record> listener, ForkJoinPool pool) {
+        int start = cursor.position;
+        int end = cursor.limit;
+
+        if (!cursor.lastWindow) {
+            // leave the trailing partial line for the next window
+            while (end > start && cursor.buffer.get(end - 1) != '\n') {
+                end--;
+            }
+        }
+
+        int chunkCount = Math.min(parallelism * 4, (end - start) / MIN_CHUNK_SIZE);
+        if (chunkCount < 2) {
+            return start;
+        }
+
+        List<ChunkTask> tasks = new ArrayList<>(chunkCount);
+        int chunkStart = start;
+        for (int i = 1; i <= chunkCount && chunkStart < end; i++) {
+            int chunkEnd = i == chunkCount ? end : start + (int) ((long) (end - start) * i / chunkCount);
+            chunkEnd = Math.max(chunkEnd, chunkStart + 1);
+
+            // split after a newline
+            while (chunkEnd < end && cursor.buffer.get(chunkEnd - 1) != '\n') {
+                chunkEnd++;
+            }
+
+            ByteBuffer chunk = cursor.buffer.duplicate();
+            chunk.position(chunkStart);
+            chunk.limit(chunkEnd);
+
+            boolean lastChunk = chunkEnd == end && cursor.lastWindow;
+            tasks.add(new ChunkTask(new Cursor(chunk.slice(), lastChunk), fields, charset));
+            chunkStart = chunkEnd;
+        }
+
+        pool.invoke(new RecursiveAction() {
+
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+
+        // a chunk that ended inside a quoted cell means the split points can't be trusted
+        for (ChunkTask task : tasks) {
+            if (!task.complete) {
+                return start;
+            }
+        }
+
+        for (ChunkTask task : tasks) {
+            List<Record> batch = new ArrayList<>(TSVTableReader.BATCH_SIZE);
+            for (int row = 0; row < task.store.size(); row++) {
+                batch.add(task.store.recordAt(row));
+
+                if (batch.size() == TSVTableReader.BATCH_SIZE) {
+                    batch = flush(batch, listener);
+                }
+            }
+
+            flush(batch, listener);
+        }
+
+        return end;
+    }
+
+    /**
+     * Parses one chunk of a window into a store of its own.
+     */
+    private static final class ChunkTask extends RecursiveAction {
+
+        private final Cursor cursor;
+        private final LineParser parser;
+        private final RecordStore store;
+
+        private boolean complete;
+
+        ChunkTask(Cursor cursor, Field[] fields, Charset charset) {
+            this.cursor = cursor;
+            this.parser = new LineParser(charset);
+            this.parser.setFields(fields);
+            this.store = new RecordStore(Arrays.<Field<?>>asList(fields));
+        }
+
+        @Override
+        protected void compute() {
+            while (!cursor.atEnd()) {
+                if (parser.readRow(cursor, store) == LineParser.INCOMPLETE) {
+                    return;
+                }
+            }
+
+            complete = true;
+        }
+    }
+
+    /**
+     * Turns the cells of a line into a row of a store. Each parser has its own scratch space, so a parser must only be
+     * used by one thread.
+     */
+    private static final class LineParser {
+
+        static final int INCOMPLETE = -1;
+
+        private final Charset charset;
+        private final DoubleScanner doubleScanner = new DoubleScanner();
+        private byte[] scratch = new byte[64];
+
+        private Field[] fields;
+
+        // the line being read, so that incomplete lines can be dropped
+        private double[] numbers;
+        private boolean[] defined;
+        private String[] texts;
+
+        LineParser(Charset charset) {
+            this.charset = charset;
+        }
+
+        void setFields(Field[] fields) {
+            this.fields = fields;
+
+            numbers = new double[fields.length];
+            defined = new boolean[fields.length];
+            texts = new String[fields.length];
+        }
+
+        /**
+         * Reads one line and appends it to the store.
+         *
+         * @return the index of the new row, or {@link #INCOMPLETE} if the line doesn't end inside the current window
+         */
+        int readRow(Cursor cursor, RecordStore store) {
+            int cells = 0;
+            int status;
+
+            do {
+                status = cursor.nextCell();
+                if (status == Cursor.INCOMPLETE) {
+                    return INCOMPLETE;
+                }
+
+                if (cells < fields.length) {
+                    if (fields[cells] instanceof NumberField) {
+                        defined[cells] = doubleScanner.scan(cursor.buffer, cursor.start, cursor.end) == DoubleScanner.NUMBER;
+                        numbers[cells] = doubleScanner.value();
+                    } else {
+                        texts[cells] = decode(cursor);
+                    }
+                }
+
+                cells++;
+            } while (status == Cursor.CELL);
+
+            int row = store.appendRow();
+
+            // cells missing from short lines stay empty
+            for (int i = 0; i < fields.length && i < cells; i++) {
+                if (!(fields[i] instanceof NumberField)) {
+                    store.setValue(row, fields[i], texts[i]);
+                } else if (defined[i]) {
+                    store.getDoubleColumn(fields[i]).setDouble(row, numbers[i]);
+                }
+            }
+
+            return row;
+        }
+
+        String[] readStrings(Cursor cursor) {
+            List<String> cells = new ArrayList<>();
+            int status;
+
+            do {
+                status = cursor.nextCell();
+                if (status == Cursor.INCOMPLETE) {
+                    return null;
+                }
+
+                cells.add(decode(cursor));
+            } while (status == Cursor.CELL);
+
+            return cells.toArray(new String[cells.size()]);
+        }
+
+        private String decode(Cursor cursor) {
+            int length = cursor.end - cursor.start;
+            if (scratch.length < length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+
+            for (int i = 0; i < length; i++) {
+                scratch[i] = cursor.buffer.get(cursor.start + i);
+            }
+
+            String text = new String(scratch, 0, length, charset);
+            return cursor.escaped ? text.replace("\"\"", "\"") : text;
+        }
+    }
+
+    /**
+     * Walks the cells of a mapped window. Quoted cells follow the same rules as opencsv: they may contain tabs and
+     * newlines, and a doubled quote stands for a single one.
+     */
+    private static final class Cursor {
+
+        static final int CELL = 0;
+        static final int LAST_CELL = 1;
+        static final int INCOMPLETE = 2;
+
+        final ByteBuffer buffer;
+        final int limit;
+        final boolean lastWindow;
+
+        int position;
+
+        // bounds of the current cell
+        int start;
+        int end;
+        boolean escaped;
+
+        Cursor(ByteBuffer buffer, boolean lastWindow) {
+            this.buffer = buffer;
+            this.limit = buffer.limit();
+            this.lastWindow = lastWindow;
+        }
+
+        boolean atEnd() {
+            return position >= limit;
+        }
+
+        /**
+         * Advances past the next cell.
+         *
+         * @return {@link #CELL} if more cells follow on the same line, {@link #LAST_CELL} if the cell ended the line,
+         * or {@link #INCOMPLETE} if the window ended before the line did
+         */
+        int nextCell() {
+            int p = position;
+            escaped = false;
+
+            if (p < limit && buffer.get(p) == '"') {
+                start = ++p;
+                end = -1;
+
+                while (p < limit) {
+                    if (buffer.get(p) == '"') {
+                        if (p + 1 < limit && buffer.get(p + 1) == '"') {
+                            escaped = true;
+                            p += 2;
+                            continue;
+                        }
+
+                        end = p++;
+                        break;
+                    }
+
+                    p++;
+                }
+
+                if (end < 0) {
+                    if (!lastWindow) {
+                        return INCOMPLETE;
+                    }
+
+                    end = limit;
+                }
+
+                // anything between the closing quote and the delimiter is dropped
+                while (p < limit && buffer.get(p) != '\t' && buffer.get(p) != '\n') {
+                    p++;
+                }
+            } else {
+                start = p;
+
+                while (p < limit && buffer.get(p) != '\t' && buffer.get(p) != '\n') {
+                    p++;
+                }
+
+                end = p;
+                if (end > start && buffer.get(end - 1) == '\r' && (p == limit || buffer.get(p) == '\n')) {
+                    end--;
+                }
+            }
+
+            if (p >= limit) {
+                if (!lastWindow) {
+                    return INCOMPLETE;
+                }
+
+                position = p;
+                return LAST_CELL;
+            }
+
+            position = p + 1;
+            return buffer.get(p) == '\t' ? CELL : LAST_CELL;
+        }
+    }
+}
@@ -16,16 +16,19 @@
 package org.cirdles.topsoil.utils;
 
 import au.com.bytecode.opencsv.CSVReader;
+import java.io.FilterReader;
 import java.io.IOException;
-import java.io.StringReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 import javafx.scene.control.TableView;
 import org.cirdles.topsoil.table.Field;
 import org.cirdles.topsoil.table.NumberField;
 import org.cirdles.topsoil.table.Record;
-import org.cirdles.topsoil.table.RecordTableColumn;
+import org.cirdles.topsoil.table.RecordStore;
 import org.cirdles.topsoil.table.TextField;
 
 /**
@@ -34,10 +37,39 @@ import org.cirdles.topsoil.table.TextField;
  */
 public class TSVTableReader extends TableReader<Record> {
 
+    /**
+     * The maximum number of rows handed to a listener at once.
+     */
+    public static final int BATCH_SIZE = 4096;
+
+    /**
+     * The number of rows looked at when deciding whether a column holds numbers or text.
+     */
+    public static final int TYPE_SAMPLE_SIZE = 100;
+
     private final boolean expectingHeader;
+    private final int parallelism;
 
     public TSVTableReader(boolean expectingHeader) {
+        this(expectingHeader, 1);
+    }
+
+    /**
+     * Creates a reader that parses files with up to <code>parallelism</code> threads. Files are split into chunks at
+     * newline boundaries and the chunks are parsed with a <code>ForkJoinPool</code>, after which their rows are added
+     * to the table in their original order. The column types are still decided from the start of the file, so every
+     * chunk agrees on them. Streams are always read sequentially.
+     *
+     * @param expectingHeader whether the first line holds the column names
+     * @param parallelism the number of threads to parse files with
+     */
+    public TSVTableReader(boolean expectingHeader, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive.");
+        }
+
         this.expectingHeader = expectingHeader;
+        this.parallelism = parallelism;
     }
 
     @Override
@@ -47,66 +79,208 @@ public class TSVTableReader extends TableReader<Record> {
             return;
         }
 
-        dest.getItems().clear();
-        dest.getColumns().clear();
+        super.read(src, dest);
+    }
 
-        CSVReader tsvReader = new CSVReader(new StringReader(src), '\t');
-        List<String[]> lines;
-        try {
-            lines = tsvReader.readAll();
-        } catch (IOException ex) {
-            Logger.getLogger(TSVTableReader.class.getName()).log(Level.SEVERE, null, ex);
-            return;
-        }
+    @Override
+    public void read(Reader src, TableView<Record> dest) throws IOException {
+        TableViewListener listener = new TableViewListener();
+        read(src, listener);
+        listener.commit(dest);
+    }
+
+    @Override
+    public void read(Path src, TableView<Record> dest) throws IOException {
+        TableViewListener listener = new TableViewListener();
+        read(src, listener);
+        listener.commit(dest);
+    }
+
+    /**
+     * Reads a TSV file by memory-mapping it, which avoids decoding the numeric cells into <code>String</code>s. The
+     * fields and rows are reported exactly as {@link #read(Reader, TableReadListener)} would report them.
+     *
+     * @param src the file to read
+     * @param listener the listener receiving the fields and rows
+     * @throws IOException if the file cannot be read
+     */
+    public void read(Path src, TableReadListener<Record> listener) throws IOException {
+        new MappedTSVReader(expectingHeader, Charset.defaultCharset(), MappedTSVReader.DEFAULT_WINDOW_SIZE, parallelism)
+                .read(src, listener);
+    }
 
-        String[] header;
-        int rowLength;
-        Field[] fields;
+    /**
+     * Reads a TSV document line by line, reporting its fields and then its rows in batches of at most
+     * {@link #BATCH_SIZE}. Only the current batch is held in memory, so the size of the document is not bounded by the
+     * heap. Nothing is reported if the document is empty.
+     *
+     * @param src the stream to read from
+     * @param listener the listener receiving the fields and rows
+     * @throws IOException if the stream cannot be read
+     */
+    public void read(Reader src, TableReadListener<Record> listener) throws IOException {
+        CountingReader countingReader = new CountingReader(src);
+        CSVReader tsvReader = new CSVReader(countingReader, '\t');
 
+        String[] header = null;
         if (expectingHeader) {
-            header = lines.remove(0);
-            rowLength = header.length;
-        } else {
-            rowLength = lines.get(0).length;
-
-            // generate default column names
-            header = new String[rowLength];
-            for (int i = 0; i < rowLength; i++) {
-                header[i] = "Field " + (char) ('A' + i);
+            header = tsvReader.readNext();
+            if (header == null) {
+                return;
             }
         }
 
-        fields = new Field[rowLength];
-        for (int i = 0; i < rowLength; i++) {
-            if (lines.isEmpty() || isNumber(lines.get(0)[i])) {
-                fields[i] = new NumberField(header[i]);
-            } else {
-                fields[i] = new TextField(header[i]);
+        List<String[]> sample = new ArrayList<>(TYPE_SAMPLE_SIZE);
+        String[] line;
+        while (sample.size() < TYPE_SAMPLE_SIZE && (line = tsvReader.readNext()) != null) {
+            sample.add(line);
+        }
+
+        if (header == null) {
+            if (sample.isEmpty()) {
+                return;
             }
-            dest.getColumns().add(new RecordTableColumn<>(fields[i]));
+
+            header = defaultHeader(sample.get(0).length);
+        }
+
+        DoubleScanner scanner = new DoubleScanner();
+        Field[] fields = createFields(header, sample, scanner);
+        RecordStore store = createStore(fields, listener);
+
+        List<Record> batch = new ArrayList<>(BATCH_SIZE);
+        for (String[] sampled : sample) {
+            batch.add(toRecord(store, fields, sampled, scanner));
+        }
+
+        while ((line = tsvReader.readNext()) != null) {
+            batch.add(toRecord(store, fields, line, scanner));
+
+            if (batch.size() == BATCH_SIZE) {
+                listener.rowsRead(batch);
+                listener.positionRead(countingReader.count);
+                batch = new ArrayList<>(BATCH_SIZE);
+
+                // the reported rows are the listener's now, so their store must stop growing
+                store = new RecordStore(store.getFields());
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            listener.rowsRead(batch);
+        }
+
+        listener.positionRead(countingReader.count);
+    }
+
+    static String[] defaultHeader(int rowLength) {
+        // generate default column names
+        String[] header = new String[rowLength];
+        for (int i = 0; i < rowLength; i++) {
+            header[i] = "Field " + (char) ('A' + i);
         }
 
-        for (String[] line : lines) {
-            Record row = new Record();
+        return header;
+    }
 
-            for (int i = 0; i < rowLength; i++) {
-                try {
-                    row.setValue(fields[i], fields[i].getStringConverter().fromString(line[i]));
-                } catch (NumberFormatException e) {
-                    row.setValue(fields[i], null);
+    /**
+     * Creates a field per column of the header, using a sample of the data to tell numbers from text. A column is
+     * numeric unless more of its sampled cells hold something other than a number than hold a number, so a stray
+     * placeholder such as "-" doesn't turn a column of numbers into text. Blank cells count for neither.
+     *
+     * @param header the column names
+     * @param sample the first lines of data, which may be empty
+     * @param scanner the scanner to test cells with
+     * @return the fields
+     */
+    static Field[] createFields(String[] header, List<String[]> sample, DoubleScanner scanner) {
+        Field[] fields = new Field[header.length];
+        for (int i = 0; i < header.length; i++) {
+            int numbers = 0;
+            int others = 0;
+
+            for (String[] line : sample) {
+                if (i < line.length) {
+                    int status = scanner.scan(line[i]);
+                    if (status == DoubleScanner.NUMBER) {
+                        numbers++;
+                    } else if (status == DoubleScanner.INVALID) {
+                        others++;
+                    }
                 }
             }
 
-            dest.getItems().add(row);
+            if (others > numbers) {
+                fields[i] = new TextField(header[i]);
+            } else {
+                fields[i] = new NumberField(header[i]);
+            }
+        }
+
+        return fields;
+    }
+
+    static RecordStore createStore(Field[] fields, TableReadListener<Record> listener) {
+        List<Field<?>> fieldList = Arrays.<Field<?>>asList(fields);
+        RecordStore store = new RecordStore(fieldList);
+
+        listener.fieldsRead(fieldList);
+
+        return store;
+    }
+
+    static Record toRecord(RecordStore store, Field[] fields, String[] line, DoubleScanner scanner) {
+        Record row = store.newRecord();
+
+        // cells missing from short lines stay empty, as do numeric cells that aren't numbers
+        for (int i = 0; i < fields.length && i < line.length; i++) {
+            if (!(fields[i] instanceof NumberField)) {
+                row.setValue(fields[i], fields[i].getStringConverter().fromString(line[i]));
+            } else if (scanner.scan(line[i]) == DoubleScanner.NUMBER) {
+                row.setDouble(fields[i], scanner.value());
+            }
         }
+
+        return row;
     }
 
-    private static boolean isNumber(String string) {
-        try {
-            Double.valueOf(string);
-            return true;
-        } catch (NumberFormatException e) {
-            return false;
+    /**
+     * Counts the characters read from a stream, which is a close enough measure of progress.
+     */
+    private static class CountingReader extends FilterReader {
+
+        private long count;
+
+        CountingReader(Reader in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int c = super.read();
+            if (c >= 0) {
+                count++;
+            }
+
+            return c;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            int n = super.read(cbuf, off, len);
+            if (n > 0) {
+                count += n;
+            }
+
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+
+            return skipped;
         }
     }
 }
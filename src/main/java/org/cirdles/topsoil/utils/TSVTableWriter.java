@@ -15,14 +15,30 @@
  */
 package org.cirdles.topsoil.utils;
 
-import au.com.bytecode.opencsv.CSVWriter;
-import java.io.FileWriter;
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
+import org.cirdles.topsoil.table.Field;
+import org.cirdles.topsoil.table.NumberField;
 import org.cirdles.topsoil.table.Record;
+import org.cirdles.topsoil.table.RecordTableColumn;
 
 /**
  *
@@ -43,47 +59,358 @@ public class TSVTableWriter implements TableWriter<Record> {
 
     @Override
     public void write(TableView<Record> src, Path dest) {
-        CSVWriter tsvWriter;
         try {
-            tsvWriter = new CSVWriter(new FileWriter(dest.toFile()), '\t');
+            write(fieldsOf(src), src.getItems(), dest);
         } catch (IOException ex) {
             Logger.getLogger(TSVTableWriter.class.getName()).log(Level.SEVERE, null, ex);
-            return;
         }
+    }
+
+    /**
+     * Writes rows to a file. The rows are written to a temporary file next to the destination, which then replaces the
+     * destination, so the destination always holds either the old table or the new one in full.
+     *
+     * @param fields the columns to write, in order
+     * @param rows the rows to write
+     * @param dest the file to write to
+     * @throws IOException if the file cannot be written
+     */
+    public void write(List<Field<?>> fields, List<Record> rows, Path dest) throws IOException {
+        Path temp = createTempFile(dest);
 
-        int actualColumnCount = Math.max(requiredColumnCount, src.getColumns().size());
+        try {
+            try (Output output = new Output(FileChannel.open(temp, StandardOpenOption.WRITE))) {
+                if (writeHeaders) {
+                    writeHeaders(output, fields);
+                }
 
-        if (writeHeaders) {
-            String[] headers = new String[actualColumnCount];
-            for (int i = 0; i < src.getColumns().size(); i++) {
-                headers[i] = src.getColumns().get(i).getText();
+                writeRows(output, fields, rows, 0);
             }
 
-            for (int j = src.getColumns().size(); j < actualColumnCount; j++) {
-                headers[j] = "fill-" + Integer.toString(j - src.getColumns().size() + 1);
+            replace(temp, dest);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Adds rows to the end of a file previously written by this writer with the same fields. Like
+     * {@link #write(List, List, Path)}, the new contents replace the file at once.
+     *
+     * @param fields the columns to write, in order
+     * @param rows the rows of the table
+     * @param from the index of the first row not already in the file
+     * @param dest the file to add to
+     * @throws IOException if the file cannot be written
+     */
+    public void append(List<Field<?>> fields, List<Record> rows, int from, Path dest) throws IOException {
+        Path temp = createTempFile(dest);
+
+        try {
+            Files.copy(dest, temp, StandardCopyOption.REPLACE_EXISTING);
+
+            try (Output output = new Output(FileChannel.open(temp, StandardOpenOption.WRITE,
+                                                             StandardOpenOption.APPEND))) {
+                writeRows(output, fields, rows, from);
             }
 
-            tsvWriter.writeNext(headers);
+            replace(temp, dest);
+        } finally {
+            Files.deleteIfExists(temp);
         }
+    }
 
-        for (int i = 0; i < src.getItems().size(); i++) {
-            String[] row = new String[actualColumnCount];
-            for (int j = 0; j < src.getColumns().size(); j++) {
-                row[j] = String.valueOf(src.getColumns().get(j).getCellData(i));
+    /**
+     * Brings a file previously written by this writer with the same fields up to date with some edited rows and with
+     * rows added at the end, without being handed the rest of the table. The file is copied a line at a time, and only
+     * the edited rows are formatted again, which relies on each row taking exactly one line. That only holds when every
+     * field is numeric, since a text cell may hold a newline. Like {@link #write(List, List, Path)}, the new contents
+     * replace the file at once.
+     *
+     * @param fields the columns to write, in order, all of them numeric
+     * @param rows the indices of the edited rows, which must all be in the file, in increasing order
+     * @param editedRows the new contents of those rows
+     * @param appendedRows the rows to add at the end
+     * @param dest the file to update
+     * @throws IOException if the file cannot be written, or has fewer rows than were edited
+     */
+    public void update(List<Field<?>> fields, int[] rows, List<Record> editedRows, List<Record> appendedRows,
+                       Path dest) throws IOException {
+        for (Field<?> field : fields) {
+            if (!(field instanceof NumberField)) {
+                throw new IllegalArgumentException("Rows with text in them can't be updated line by line.");
             }
+        }
+
+        Path temp = createTempFile(dest);
 
-            for (int j = src.getColumns().size(); j < actualColumnCount; j++) {
-                row[j] = "0.00";
+        try {
+            try (InputStream in = Files.newInputStream(dest);
+                 Output output = new Output(FileChannel.open(temp, StandardOpenOption.WRITE))) {
+                byte[] buffer = new byte[1 << 16];
+
+                // the row on the current line, and the next edited row
+                int row = writeHeaders ? -1 : 0;
+                int next = 0;
+                boolean replacing = rows.length > 0 && rows[0] == row;
+
+                int count;
+                while ((count = in.read(buffer)) > 0) {
+                    int start = 0;
+
+                    for (int i = 0; i < count; i++) {
+                        if (buffer[i] != '\n') {
+                            continue;
+                        }
+
+                        // an edited line is dropped, and its replacement written once its end is found
+                        if (replacing) {
+                            writeRows(output, fields, editedRows.subList(next, next + 1), 0);
+                            next++;
+                        } else {
+                            output.bytes(buffer, start, i + 1 - start);
+                        }
+
+                        start = i + 1;
+                        row++;
+                        replacing = next < rows.length && rows[next] == row;
+                    }
+
+                    if (!replacing) {
+                        output.bytes(buffer, start, count - start);
+                    }
+                }
+
+                if (next < rows.length) {
+                    throw new IOException(dest + " has no row " + rows[next] + ".");
+                }
+
+                writeRows(output, fields, appendedRows, 0);
             }
 
-            tsvWriter.writeNext(row);
+            replace(temp, dest);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Returns the fields behind the columns of a table.
+     *
+     * @param src the table
+     * @return the fields, in column order
+     */
+    public static List<Field<?>> fieldsOf(TableView<Record> src) {
+        List<Field<?>> fields = new ArrayList<>(src.getColumns().size());
+        for (TableColumn<Record, ?> column : src.getColumns()) {
+            fields.add(((RecordTableColumn<?>) column).getField());
         }
 
+        return fields;
+    }
+
+    private void writeHeaders(Output output, List<Field<?>> fields) throws IOException {
+        int actualColumnCount = Math.max(requiredColumnCount, fields.size());
+
+        for (int i = 0; i < fields.size(); i++) {
+            output.text(fields.get(i).getName());
+            output.separator();
+        }
+
+        for (int j = fields.size(); j < actualColumnCount; j++) {
+            output.text("fill-" + Integer.toString(j - fields.size() + 1));
+            output.separator();
+        }
+
+        output.endLine();
+    }
+
+    private void writeRows(Output output, List<Field<?>> fields, List<Record> rows, int from) throws IOException {
+        int actualColumnCount = Math.max(requiredColumnCount, fields.size());
+
+        // look the field types up once rather than per cell
+        boolean[] numeric = new boolean[fields.size()];
+        for (int j = 0; j < fields.size(); j++) {
+            numeric[j] = fields.get(j) instanceof NumberField;
+        }
+
+        for (int i = from; i < rows.size(); i++) {
+            Record row = rows.get(i);
+
+            for (int j = 0; j < fields.size(); j++) {
+                Field<?> field = fields.get(j);
+
+                // empty cells are left empty
+                if (numeric[j] && row.hasValue(field)) {
+                    output.number(row.getDouble((Field<Number>) field));
+                } else if (!numeric[j] && row.hasValue(field)) {
+                    output.text(row.getValue(field).toString());
+                }
+
+                output.separator();
+            }
+
+            for (int j = fields.size(); j < actualColumnCount; j++) {
+                output.text("0.00");
+                output.separator();
+            }
+
+            output.endLine();
+        }
+    }
+
+    private static Path createTempFile(Path dest) throws IOException {
+        Path directory = dest.toAbsolutePath().getParent();
+        return Files.createTempFile(directory, dest.getFileName().toString(), ".tmp");
+    }
+
+    private static void replace(Path temp, Path dest) throws IOException {
         try {
-            tsvWriter.close();
-        } catch (IOException ex) {
-            Logger.getLogger(TSVTableWriter.class.getName()).log(Level.SEVERE, null, ex);
+            Files.move(temp, dest, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(temp, dest, StandardCopyOption.REPLACE_EXISTING);
         }
     }
 
+    /**
+     * Formats cells into a reusable <code>StringBuilder</code> and encodes them through a large buffer into a channel,
+     * so that writing a cell allocates nothing. Cells are only quoted when they hold a tab, newline or quote, in which
+     * case quotes are doubled as opencsv expects.
+     */
+    private static class Output implements Closeable {
+
+        private static final int CHAR_BUFFER_SIZE = 1 << 16;
+        private static final int BYTE_BUFFER_SIZE = 1 << 20;
+
+        private final FileChannel channel;
+        private final CharsetEncoder encoder = Charset.defaultCharset().newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        private final StringBuilder chars = new StringBuilder(CHAR_BUFFER_SIZE + 1024);
+        private final ByteBuffer bytes = ByteBuffer.allocate(BYTE_BUFFER_SIZE);
+        private char[] charArray = new char[CHAR_BUFFER_SIZE + 1024];
+
+        // whether the line so far ends with a separator that is only needed if another cell follows
+        private boolean pendingSeparator;
+
+        Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void number(double value) {
+            startCell();
+            chars.append(value);
+        }
+
+        void text(String value) {
+            startCell();
+
+            if (!needsQuotes(value)) {
+                chars.append(value);
+                return;
+            }
+
+            chars.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"') {
+                    chars.append('"');
+                }
+
+                chars.append(c);
+            }
+            chars.append('"');
+        }
+
+        /**
+         * Writes bytes as they are, after whatever has been formatted so far.
+         */
+        void bytes(byte[] src, int offset, int length) throws IOException {
+            encode();
+
+            while (length > 0) {
+                if (!bytes.hasRemaining()) {
+                    drain();
+                }
+
+                int count = Math.min(bytes.remaining(), length);
+                bytes.put(src, offset, count);
+                offset += count;
+                length -= count;
+            }
+        }
+
+        void separator() {
+            startCell();
+            pendingSeparator = true;
+        }
+
+        void endLine() throws IOException {
+            pendingSeparator = false;
+            chars.append('\n');
+
+            if (chars.length() >= CHAR_BUFFER_SIZE) {
+                encode();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                encode();
+                drain();
+
+                encoder.encode(CharBuffer.wrap(chars), bytes, true);
+                encoder.flush(bytes);
+                drain();
+            } finally {
+                channel.close();
+            }
+        }
+
+        private void startCell() {
+            if (pendingSeparator) {
+                chars.append('\t');
+                pendingSeparator = false;
+            }
+        }
+
+        private static boolean needsQuotes(String value) {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '\t' || c == '\n' || c == '\r' || c == '"') {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        private void encode() throws IOException {
+            // array-backed buffers on both sides let the encoder take its fast path
+            int length = chars.length();
+            if (charArray.length < length) {
+                charArray = new char[length];
+            }
+            chars.getChars(0, length, charArray, 0);
+
+            CharBuffer in = CharBuffer.wrap(charArray, 0, length);
+            while (encoder.encode(in, bytes, false).isOverflow()) {
+                drain();
+            }
+
+            // a surrogate pair split across calls is carried over
+            chars.delete(0, in.position());
+        }
+
+        private void drain() throws IOException {
+            bytes.flip();
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+
+            bytes.clear();
+        }
+    }
 }
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2014 CIRDLES.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.cirdles.topsoil.utils;
+
+import java.util.List;
+import org.cirdles.topsoil.table.Field;
+
+/**
+ * Receives the output of a streaming table read. The fields are always reported once, before any rows, and rows are
+ * then delivered in bounded batches so that the reader never has to hold the whole table. A listener may stop a read
+ * by throwing an unchecked exception, which the reader passes on to its caller.
+ * <p>
+ * The reader never writes to the records of a batch, or to the store behind them, once the batch has been reported.
+ * A listener may therefore hand the rows to another thread, such as the JavaFX Application Thread, while the read
+ * carries on.
+ *
+ * @author John Zeringue <john.joseph.zeringue@gmail.com>
+ * @param <T> the type of the rows
+ */
+public interface TableReadListener<T> {
+
+    /**
+     * Called once the columns of the table are known.
+     *
+     * @param fields the fields of the table, in column order
+     */
+    public void fieldsRead(List<Field<?>> fields);
+
+    /**
+     * Called for each batch of rows read.
+     *
+     * @param rows the rows read since the last call
+     */
+    public void rowsRead(List<T> rows);
+
+    /**
+     * Called from time to time as the read advances through its source.
+     *
+     * @param position the number of bytes (or characters, for streams) consumed so far
+     */
+    public default void positionRead(long position) {
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2014 CIRDLES.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cirdles.topsoil.utils;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import javafx.application.Platform;
+import javafx.concurrent.Task;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import org.cirdles.topsoil.table.Field;
+import org.cirdles.topsoil.table.Record;
+import org.cirdles.topsoil.table.RecordTableColumn;
+
+/**
+ * Reads a table off the JavaFX Application Thread and fills a <code>TableView</code> with it. The progress of the task
+ * is the number of bytes (or characters) consumed and its message counts the rows read so far; its value is the total
+ * number of rows.
+ * <p>
+ * Rows are handed to the application thread in coalesced batches: while one <code>Platform.runLater</code> call is
+ * pending, further rows join it instead of scheduling another, so the table sees one change per frame at most rather
+ * than one per row. The table's previous columns and rows are kept until the task ends: if it is cancelled or fails,
+ * they are put back, so the table is left as it was before the task started and no further rows are added.
+ *
+ * @author John Zeringue <john.joseph.zeringue@gmail.com>
+ */
+public class TableReadTask extends Task<Integer> {
+
+    private final TSVTableReader reader;
+    private final Path srcPath;
+    private final String srcString;
+    private final TableView<Record> dest;
+
+    private final long length;
+    private int rowCount;
+
+    // the contents of the table before its columns were replaced, only touched on the application thread
+    private List<TableColumn<Record, ?>> previousColumns;
+    private List<Record> previousItems;
+
+    // rows waiting for the application thread, guarded by itself
+    private final List<Record> pending = new ArrayList<>();
+    private boolean publishing;
+
+    /**
+     * Creates a task that reads a file into a table.
+     *
+     * @param reader the reader to parse the file with
+     * @param src the file to read
+     * @param dest the table to fill
+     * @throws IOException if the size of the file cannot be determined
+     */
+    public TableReadTask(TSVTableReader reader, Path src, TableView<Record> dest) throws IOException {
+        this(reader, src, null, dest, Files.size(src));
+    }
+
+    /**
+     * Creates a task that reads a string, such as the contents of the clipboard, into a table.
+     *
+     * @param reader the reader to parse the string with
+     * @param src the string to read
+     * @param dest the table to fill
+     */
+    public TableReadTask(TSVTableReader reader, String src, TableView<Record> dest) {
+        this(reader, null, src, dest, src == null ? 0 : src.length());
+    }
+
+    private TableReadTask(TSVTableReader reader, Path srcPath, String srcString, TableView<Record> dest,
+                          long length) {
+        this.reader = reader;
+        this.srcPath = srcPath;
+        this.srcString = srcString;
+        this.dest = dest;
+        this.length = length;
+
+        updateTitle(srcPath != null ? "Importing " + srcPath.getFileName() : "Pasting");
+    }
+
+    @Override
+    protected Integer call() throws Exception {
+        TableReadListener<Record> listener = new TableReadListener<Record>() {
+
+            @Override
+            public void fieldsRead(List<Field<?>> fields) {
+                checkCancelled();
+
+                Platform.runLater(() -> {
+                    if (getState() != State.RUNNING) {
+                        return;
+                    }
+
+                    List<RecordTableColumn<?>> columns = new ArrayList<>(fields.size());
+                    for (Field<?> field : fields) {
+                        columns.add(new RecordTableColumn<>(field));
+                    }
+
+                    previousColumns = new ArrayList<>(dest.getColumns());
+                    previousItems = new ArrayList<>(dest.getItems());
+
+                    dest.getItems().clear();
+                    dest.getColumns().setAll(columns);
+                });
+            }
+
+            @Override
+            public void rowsRead(List<Record> rows) {
+                checkCancelled();
+
+                rowCount += rows.size();
+                updateMessage(rowCount + " rows read");
+                publish(rows);
+            }
+
+            @Override
+            public void positionRead(long position) {
+                updateProgress(position, length);
+            }
+        };
+
+        if (srcPath != null) {
+            reader.read(srcPath, listener);
+        } else if (srcString != null && !srcString.trim().isEmpty()) {
+            reader.read(new StringReader(srcString), listener);
+        }
+
+        return rowCount;
+    }
+
+    @Override
+    protected void succeeded() {
+        previousColumns = null;
+        previousItems = null;
+    }
+
+    @Override
+    protected void cancelled() {
+        restorePreviousContents();
+    }
+
+    @Override
+    protected void failed() {
+        restorePreviousContents();
+    }
+
+    private void restorePreviousContents() {
+        // rows still on their way see that the task is done and are dropped
+        if (previousColumns != null) {
+            dest.getColumns().setAll(previousColumns);
+            dest.getItems().setAll(previousItems);
+
+            previousColumns = null;
+            previousItems = null;
+        }
+    }
+
+    private void checkCancelled() {
+        // the readers don't know about tasks, so stop them the way any listener can
+        if (isCancelled()) {
+            throw new CancellationException();
+        }
+    }
+
+    private void publish(List<Record> rows) {
+        synchronized (pending) {
+            pending.addAll(rows);
+
+            if (publishing) {
+                // the pending call will pick these up
+                return;
+            }
+
+            publishing = true;
+        }
+
+        Platform.runLater(() -> {
+            List<Record> published;
+            synchronized (pending) {
+                published = new ArrayList<>(pending);
+                pending.clear();
+                publishing = false;
+            }
+
+            if (getState() == State.RUNNING) {
+                dest.getItems().addAll(published);
+            }
+        });
+    }
+}
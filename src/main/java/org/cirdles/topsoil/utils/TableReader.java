@@ -17,8 +17,13 @@
 package org.cirdles.topsoil.utils;
 
 import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import javafx.scene.control.TableView;
 
 /**
@@ -26,9 +31,28 @@ import javafx.scene.control.TableView;
  * @author John Zeringue <john.joseph.zeringue@gmail.com>
  */
 public abstract class TableReader<T> {
-    public abstract void read(String src, TableView<T> dest);
-    
+
+    /**
+     * Reads a table from a character stream into the destination table. Implementations should consume the stream
+     * incrementally rather than loading the whole document into memory first.
+     *
+     * @param src the stream to read from
+     * @param dest the table to fill
+     * @throws IOException if the stream cannot be read
+     */
+    public abstract void read(Reader src, TableView<T> dest) throws IOException;
+
+    public void read(String src, TableView<T> dest) {
+        try {
+            read(new StringReader(src), dest);
+        } catch (IOException ex) {
+            Logger.getLogger(TableReader.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+
     public void read(Path src, TableView<T> dest) throws IOException {
-        read(new String(Files.readAllBytes(src)), dest);
+        try (Reader reader = Files.newBufferedReader(src, Charset.defaultCharset())) {
+            read(reader, dest);
+        }
     }
 }
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2014 CIRDLES.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cirdles.topsoil.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javafx.scene.control.TableView;
+import org.cirdles.topsoil.table.Field;
+import org.cirdles.topsoil.table.Record;
+import org.cirdles.topsoil.table.RecordTableColumn;
+
+/**
+ * Collects the output of a read and then replaces the contents of a table with it in one go, so that the table and
+ * anything observing its items see a single change however many rows were read. The table is left alone if the
+ * read fails.
+ *
+ * @author John Zeringue <john.joseph.zeringue@gmail.com>
+ */
+class TableViewListener implements TableReadListener<Record> {
+
+    private List<Field<?>> fields = Collections.emptyList();
+    private final List<Record> rows = new ArrayList<>();
+
+    @Override
+    public void fieldsRead(List<Field<?>> fields) {
+        this.fields = fields;
+    }
+
+    @Override
+    public void rowsRead(List<Record> rows) {
+        this.rows.addAll(rows);
+    }
+
+    void commit(TableView<Record> dest) {
+        List<RecordTableColumn<?>> columns = new ArrayList<>(fields.size());
+        for (Field<?> field : fields) {
+            columns.add(new RecordTableColumn<>(field));
+        }
+
+        dest.getColumns().setAll(columns);
+        dest.getItems().setAll(rows);
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2014 CIRDLES.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cirdles.math;
+
+import static java.lang.Math.*;
+import static org.cirdles.math.Constant.*;
+import static org.cirdles.math.IdentityFunction.*;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author John Zeringue <john.joseph.zeringue@gmail.com>
+ */
+public class FunctionTest {
+
+    /**
+     * Test that arithmetic on constants is folded and that terms which can only be zero drop out of derivatives.
+     */
+    @Test
+    public void testConstantFolding() {
+        Function sum = new ConstantFunction(2).plus(new ConstantFunction(3));
+        assertTrue(sum instanceof ConstantFunction);
+        assertEquals(5, sum.of(0), 0);
+
+        Function scaled = new ConstantFunction(2).times(new ConstantFunction(3).times(IDENTITY_FUNCTION));
+        assertEquals(new ConstantFunction(6), scaled.prime());
+
+        assertSame(IDENTITY_FUNCTION, IDENTITY_FUNCTION.plus(ConstantFunction.ZERO_FUNCTION));
+        assertSame(IDENTITY_FUNCTION, ConstantFunction.ONE_FUNCTION.times(IDENTITY_FUNCTION));
+    }
+
+    /**
+     * Test that derivatives are built once and agree with the closed forms of the concordia curves' derivatives.
+     */
+    @Test
+    public void testPrime() {
+        TeraWasserburgCurve curve = new TeraWasserburgCurve();
+        assertSame(curve.x().prime(), curve.x().prime());
+
+        for (double t = 1e6; t < 4.6e9; t *= 1.7) {
+            double expected = -LAMBDA_238.value() * exp(LAMBDA_238.value() * t)
+                    / pow(expm1(LAMBDA_238.value() * t), 2);
+            assertEquals(expected, curve.x().prime().of(t), abs(expected) * 1e-12);
+
+            // the quotient rule, which unlike the closed form the curve used to spell out doesn't cancel digits
+            double u = expm1(LAMBDA_235.value() * t);
+            double v = expm1(LAMBDA_238.value() * t);
+            expected = (LAMBDA_235.value() * exp(LAMBDA_235.value() * t) * v
+                    - u * LAMBDA_238.value() * exp(LAMBDA_238.value() * t))
+                    / (R238_235S.value() * v * v);
+            assertEquals(expected, curve.y().prime().of(t), abs(expected) * 1e-12);
+        }
+    }
+
+    /**
+     * Test that evaluating an array at once gives the same values as evaluating point by point, including for
+     * functions mixed in that aren't expressions.
+     */
+    @Test
+    public void testOfArray() {
+        Function square = new Function() {
+
+            @Override
+            public double of(double x) {
+                return x * x;
+            }
+        };
+
+        WetherillCurve curve = new WetherillCurve();
+        Function[] functions = {
+            curve.x(), curve.x().prime(), curve.y().minus(new ConstantFunction(0.5)),
+            new TeraWasserburgCurve().y().prime(), square.plus(IDENTITY_FUNCTION).times(square)
+        };
+
+        double[] xs = new double[100];
+        for (int i = 0; i < xs.length; i++) {
+            xs[i] = 4.6e7 * (i + 1);
+        }
+
+        double[] values = new double[xs.length];
+        for (Function function : functions) {
+            function.of(xs, values);
+
+            for (int i = 0; i < xs.length; i++) {
+                assertEquals(function.of(xs[i]), values[i], 0);
+            }
+        }
+    }
+}
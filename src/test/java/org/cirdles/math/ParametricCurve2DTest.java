@@ -0,0 +1,71 @@
+/*
+ * Copyright 2014 CIRDLES.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cirdles.math;
+
+import static java.lang.Math.*;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author John Zeringue <john.joseph.zeringue@gmail.com>
+ */
+public class ParametricCurve2DTest {
+
+    /**
+     * Test that evaluating a curve and its derivative at many ages at once agrees with evaluating them one age at a
+     * time, for the concordia curves' own loops and for the general evaluation of other curves.
+     */
+    @Test
+    public void testEvaluate() {
+        ParametricCurve2D[] curves = {
+            new WetherillCurve(), new TeraWasserburgCurve(),
+            new ParametricCurve2D(new WetherillCurve().x(), new TeraWasserburgCurve().y())
+        };
+
+        double[] ts = new double[200];
+        for (int i = 0; i < ts.length; i++) {
+            ts[i] = 1e4 + 4.6e9 * i / (ts.length - 1);
+        }
+
+        double[] xs = new double[ts.length];
+        double[] ys = new double[ts.length];
+
+        for (ParametricCurve2D curve : curves) {
+            curve.evaluate(ts, xs, ys);
+            for (int i = 0; i < ts.length; i++) {
+                assertEquals(curve.x().of(ts[i]), xs[i], abs(xs[i]) * 1e-15);
+                assertEquals(curve.y().of(ts[i]), ys[i], abs(ys[i]) * 1e-15);
+            }
+
+            // the numerator of the Tera-Wasserburg dy/dt cancels at young ages, so rounding differs a little more
+            curve.evaluatePrime(ts, xs, ys);
+            for (int i = 0; i < ts.length; i++) {
+                assertEquals(curve.prime().x().of(ts[i]), xs[i], abs(xs[i]) * 1e-9);
+                assertEquals(curve.prime().y().of(ts[i]), ys[i], abs(ys[i]) * 1e-9);
+            }
+        }
+    }
+
+    /**
+     * Test that the derivative of a curve is only built once.
+     */
+    @Test
+    public void testPrimeIsKept() {
+        ParametricCurve2D curve = new TeraWasserburgCurve();
+        assertSame(curve.prime(), curve.prime());
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2014 zeringuej.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cirdles.math;
+
+import static java.lang.Math.*;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author John Zeringue <john.joseph.zeringue@gmail.com>
+ */
+public class RootFinderTest {
+
+    /**
+     * Test that Newton steps find the age at which a concordia curve reaches a value, in a few iterations.
+     */
+    @Test
+    public void testFindZeroWithDerivative() {
+        WetherillCurve curve = new WetherillCurve();
+        RootFinder instance = new RootFinder(1e-12, 0, RootFinder.DEFAULT_MAX_ITERATIONS);
+
+        double t = instance.findZero(curve.x().minus(new ConstantFunction(5)), 0, 4.6e9);
+
+        assertEquals(5, curve.x().of(t), 1e-9);
+        assertTrue("Newton steps should converge quickly", instance.getIterations() <= 10);
+    }
+
+    /**
+     * Test that functions without derivatives are searched with secant steps.
+     */
+    @Test
+    public void testFindZeroWithoutDerivative() {
+        Function function = new Function() {
+
+            @Override
+            public double of(double x) {
+                return cos(x) - x;
+            }
+        };
+
+        RootFinder instance = new RootFinder();
+        double x = instance.findZero(function, 0, 1);
+
+        assertEquals(0.7390851332151607, x, 1e-9);
+        assertTrue(instance.getIterations() < RootFinder.DEFAULT_MAX_ITERATIONS);
+    }
+
+    /**
+     * Test that a bad Newton step, here off a flat stretch of the function, falls back to bisection rather than
+     * leaving the bracket.
+     */
+    @Test
+    public void testFindZeroStaysInBracket() {
+        Function function = new Function() {
+
+            @Override
+            public double of(double x) {
+                return atan(x - 3);
+            }
+
+            @Override
+            public Function prime() {
+                return new Function() {
+
+                    @Override
+                    public double of(double x) {
+                        return 1 / (1 + (x - 3) * (x - 3));
+                    }
+                };
+            }
+        };
+
+        // plain Newton-Raphson diverges from the middle of this bracket
+        assertEquals(3, new RootFinder().findZero(function, -100, 50), 1e-9);
+    }
+
+    /**
+     * Test that a bracket is found around a guess, and that searches without one fail.
+     */
+    @Test
+    public void testFindZeroAroundGuess() {
+        TeraWasserburgCurve curve = new TeraWasserburgCurve();
+
+        double t = curve.x().minus(new ConstantFunction(10)).zero();
+        assertEquals(10, curve.x().of(t), 1e-8);
+        assertEquals("zero should be deterministic", t, curve.x().minus(new ConstantFunction(10)).zero(), 0);
+
+        try {
+            new ConstantFunction(1).zero();
+            fail("a constant function has no zero");
+        } catch (ArithmeticException ex) {
+        }
+
+        try {
+            new RootFinder().findZero(new ConstantFunction(1), 0, 1);
+            fail("there is no sign change in the bracket");
+        } catch (IllegalArgumentException ex) {
+        }
+    }
+}
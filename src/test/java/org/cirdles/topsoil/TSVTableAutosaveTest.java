@@ -0,0 +1,291 @@
+/*
+ * Copyright 2014 CIRDLES.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cirdles.topsoil;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javafx.application.Platform;
+import javafx.embed.swing.JFXPanel;
+import javafx.event.Event;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableColumn.CellEditEvent;
+import javafx.scene.control.TablePosition;
+import org.cirdles.topsoil.table.Field;
+import org.cirdles.topsoil.table.NumberField;
+import org.cirdles.topsoil.table.Record;
+import org.cirdles.topsoil.table.RecordStore;
+import org.cirdles.topsoil.utils.BinaryTableReader;
+import org.cirdles.topsoil.utils.TSVTableReader;
+import org.cirdles.topsoil.utils.TableReadListener;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author John Zeringue <john.joseph.zeringue@gmail.com>
+ */
+public class TSVTableAutosaveTest {
+
+    private static final long DELAY_MILLIS = 200;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private ScheduledThreadPoolExecutor executor;
+    private TSVTable table;
+    private NumberField x;
+    private NumberField y;
+
+    @BeforeClass
+    public static void startToolkit() {
+        // starts the JavaFX Application Thread
+        new JFXPanel();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        executor = TSVTableAutosave.newExecutor();
+        table = createTable(DELAY_MILLIS);
+
+        // the first save writes the whole table
+        settle();
+        assertSaveCounts(1, 0);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Test that a burst of changes within the delay is saved once, and that rows added at the end are saved without
+     * writing the whole table.
+     */
+    @Test
+    public void testAppendsAreDebounced() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            runAndWait(() -> table.getItems().add(newRow(table.getItems().size())));
+        }
+
+        settle();
+        assertSaveCounts(1, 1);
+        assertSaved();
+    }
+
+    /**
+     * Test that editing numbers only writes the edited rows.
+     */
+    @Test
+    public void testEditsAreSavedIncrementally() throws Exception {
+        runAndWait(() -> {
+            edit(0, 0, 1e10);
+            edit(5, 1, -1.5);
+            table.getItems().add(newRow(table.getItems().size()));
+        });
+
+        settle();
+        assertSaveCounts(1, 1);
+        assertSaved();
+    }
+
+    /**
+     * Test that changes other than edits and additions write the whole table again.
+     */
+    @Test
+    public void testOtherChangesAreSavedInFull() throws Exception {
+        runAndWait(() -> table.getItems().remove(3));
+        settle();
+        assertSaveCounts(2, 0);
+        assertSaved();
+
+        runAndWait(() -> table.getColumns().get(1).setText("renamed"));
+        settle();
+        assertSaveCounts(3, 0);
+        assertSaved();
+    }
+
+    /**
+     * Test that waiting for writes lets the ones already started finish, and drops saves still waiting out their
+     * delay.
+     */
+    @Test
+    public void testAwaitWrites() throws Exception {
+        TSVTable slowTable = createTable(TimeUnit.MINUTES.toMillis(1));
+        Path savePath = slowTable.getSavePath();
+
+        runAndWait(() -> {
+            slowTable.save();
+            slowTable.getItems().add(newRow(slowTable.getItems().size()));
+        });
+
+        TSVTableAutosave.awaitWrites(executor, 10000);
+
+        assertTrue(executor.isTerminated());
+        assertEquals("the save started should have finished, and the later one been dropped",
+                     11, Files.readAllLines(savePath).size());
+    }
+
+    private TSVTable createTable(long delayMillis) throws Exception {
+        Path savePath = temporaryFolder.newFolder().toPath().resolve("table.tsv");
+        x = new NumberField("x");
+        y = new NumberField("y");
+
+        TSVTable[] created = new TSVTable[1];
+        runAndWait(() -> {
+            created[0] = new TSVTable(delayMillis, executor);
+            created[0].setSavePath(savePath);
+
+            List<Record> rows = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                rows.add(newRow(i));
+            }
+
+            created[0].setContents(Arrays.<Field<?>>asList(x, y), rows);
+        });
+
+        return created[0];
+    }
+
+    private Record newRow(int i) {
+        Record row = new RecordStore(Arrays.<Field<?>>asList(x, y)).newRecord();
+        row.setDouble(x, i);
+        row.setDouble(y, -i);
+
+        return row;
+    }
+
+    private void edit(int row, int column, double value) {
+        TableColumn<Record, Object> tableColumn = (TableColumn<Record, Object>) table.getColumns().get(column);
+        Event.fireEvent(tableColumn, new CellEditEvent<>(table, new TablePosition<>(table, row, tableColumn),
+                                                         TableColumn.editCommitEvent(), value));
+    }
+
+    /**
+     * Waits out the delay and then for the save it started to be written.
+     */
+    private void settle() throws InterruptedException, ExecutionException {
+        Thread.sleep(DELAY_MILLIS * 3);
+        runAndWait(() -> {
+        });
+
+        executor.submit(() -> {
+        }).get();
+    }
+
+    private void assertSaveCounts(int full, int partial) throws InterruptedException {
+        runAndWait(() -> {
+            assertEquals("full saves", full, table.getAutosave().getFullSaveCount());
+            assertEquals("partial saves", partial, table.getAutosave().getPartialSaveCount());
+        });
+    }
+
+    /**
+     * Asserts that both save files hold what the table does.
+     */
+    private void assertSaved() throws InterruptedException, IOException {
+        List<List<Object>> expected = new ArrayList<>();
+        runAndWait(() -> {
+            List<Object> names = new ArrayList<>();
+            for (TableColumn<Record, ?> column : table.getColumns()) {
+                names.add(column.getText());
+            }
+            expected.add(names);
+
+            for (int i = 0; i < table.getItems().size(); i++) {
+                List<Object> values = new ArrayList<>();
+                for (TableColumn<Record, ?> column : table.getColumns()) {
+                    values.add(column.getCellData(i));
+                }
+                expected.add(values);
+            }
+        });
+
+        TableCollector tsv = new TableCollector();
+        new TSVTableReader(true).read(table.getSavePath(), tsv);
+        assertEquals(expected, tsv.table);
+
+        TableCollector session = new TableCollector();
+        new BinaryTableReader().read(table.getSessionPath(), session);
+        assertEquals(expected, session.table);
+    }
+
+    private static void runAndWait(Runnable runnable) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        Throwable[] thrown = new Throwable[1];
+
+        Platform.runLater(() -> {
+            try {
+                runnable.run();
+            } catch (Throwable ex) {
+                thrown[0] = ex;
+            } finally {
+                done.countDown();
+            }
+        });
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+
+        if (thrown[0] instanceof Error) {
+            throw (Error) thrown[0];
+        } else if (thrown[0] != null) {
+            throw new RuntimeException(thrown[0]);
+        }
+    }
+
+    /**
+     * Collects a table read from a file as a list of rows, headed by the column names.
+     */
+    private static class TableCollector implements TableReadListener<Record> {
+
+        private final List<List<Object>> table = new ArrayList<>();
+        private List<Field<?>> fields;
+
+        @Override
+        public void fieldsRead(List<Field<?>> fields) {
+            this.fields = fields;
+
+            List<Object> names = new ArrayList<>();
+            for (Field<?> field : fields) {
+                names.add(field.getName());
+            }
+            table.add(names);
+        }
+
+        @Override
+        public void rowsRead(List<Record> rows) {
+            for (Record row : rows) {
+                List<Object> values = new ArrayList<>();
+                for (Field<?> field : fields) {
+                    values.add(row.getValue(field));
+                }
+                table.add(values);
+            }
+        }
+    }
+}
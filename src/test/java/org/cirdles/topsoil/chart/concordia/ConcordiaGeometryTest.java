@@ -0,0 +1,127 @@
+/*
+ * Copyright 2014 CIRDLES.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cirdles.topsoil.chart.concordia;
+
+import org.cirdles.math.ParametricCurve2D;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author John Zeringue <john.joseph.zeringue@gmail.com>
+ */
+public class ConcordiaGeometryTest {
+
+    /**
+     * Test that the ages found for a window are where the curve crosses its edges.
+     */
+    @Test
+    public void testFindAgeRange() {
+        ConcordiaGeometry geometry = ConcordiaGeometry.of(ConcordiaLineType.WETHERILL);
+        ParametricCurve2D curve = geometry.getCurve();
+
+        // enters through the bottom and leaves through the right
+        double[] ages = geometry.findAgeRange(0, 5, 0.1, 1);
+        assertEquals(0.1, curve.y().of(ages[0]), 1e-9);
+        assertEquals(5, curve.x().of(ages[1]), 1e-9);
+
+        // starts at the origin, inside the window
+        ages = geometry.findAgeRange(-1, 1, -1, 1);
+        assertEquals(0, ages[0], 0);
+
+        assertNull("the curve misses this window", geometry.findAgeRange(10, 20, 0, 0.1));
+
+        // x falls with age on a Tera-Wasserburg curve
+        geometry = ConcordiaGeometry.of(ConcordiaLineType.TERA_WASSERBURG);
+        curve = geometry.getCurve();
+        ages = geometry.findAgeRange(2, 20, 0, 1);
+        assertEquals(20, curve.x().of(ages[0]), 1e-9);
+        assertEquals(2, curve.x().of(ages[1]), 1e-9);
+    }
+
+    /**
+     * Test that the Bezier pieces follow the curve, and that panning reuses the knots between them.
+     */
+    @Test
+    public void testApproximate() {
+        ConcordiaGeometry geometry = ConcordiaGeometry.of(ConcordiaLineType.WETHERILL);
+        ParametricCurve2D curve = geometry.getCurve();
+
+        double[] pieces = geometry.approximate(1e9, 2e9, 50);
+        int count = (pieces.length - 2) / 6;
+        assertTrue(count >= 50 && count <= 102);
+
+        assertEquals(curve.x().of(1e9), pieces[0], 1e-12);
+        assertEquals(curve.y().of(2e9), pieces[pieces.length - 1], 1e-12);
+
+        // the middle of each piece should be on the curve, which lies between the ends of the piece
+        for (int i = 0; i < count; i++) {
+            int offset = 6 * i;
+            double midX = (pieces[offset] + 3 * pieces[offset + 2] + 3 * pieces[offset + 4] + pieces[offset + 6]) / 8;
+            double midY = (pieces[offset + 1] + 3 * pieces[offset + 3] + 3 * pieces[offset + 5] + pieces[offset + 7]) / 8;
+
+            double[] ages = geometry.findAgeRange(midX, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+                                                  Double.POSITIVE_INFINITY);
+            assertEquals("piece " + i, curve.y().of(ages[0]), midY, 1e-6);
+        }
+
+        geometry.approximate(1.01e9, 2.01e9, 50);
+        assertTrue("most knots should be reused", geometry.getKnotsComputed() < 5);
+    }
+
+    /**
+     * Test that adaptive pieces stay within the tolerance on screen, and that a typical view takes fewer pieces than
+     * the even approximation while a zoomed-in one still follows the curve.
+     */
+    @Test
+    public void testApproximateAdaptively() {
+        ConcordiaGeometry geometry = ConcordiaGeometry.of(ConcordiaLineType.WETHERILL);
+        ParametricCurve2D curve = geometry.getCurve();
+
+        // a 600 by 400 pixel view of the whole curve, then one zoomed in a thousand times
+        double[][] views = {{0, 100, 0, 1.1, 600 / 100., 400 / 1.1},
+                            {1, 1.1, 0.11, 0.13, 600 / 0.1, 400 / 0.02}};
+
+        for (double[] view : views) {
+            double[] ages = geometry.findAgeRange(view[0], view[1], view[2], view[3]);
+            double[] pieces = geometry.approximate(ages[0], ages[1], view[4], view[5], 0.25);
+            int count = (pieces.length - 2) / 6;
+
+            assertTrue("there should be fewer pieces than the even approximation uses", count < 50);
+
+            for (int i = 0; i < count; i++) {
+                int offset = 6 * i;
+
+                for (double s : new double[]{0.25, 0.5, 0.75}) {
+                    double pieceX = bezier(pieces, offset, s);
+                    double pieceY = bezier(pieces, offset + 1, s);
+
+                    // the nearest point of the curve is about where it reaches the same x
+                    double[] reached = geometry.findAgeRange(pieceX, Double.POSITIVE_INFINITY,
+                                                             Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+                    double error = Math.abs(curve.y().of(reached[0]) - pieceY) * view[5];
+                    assertTrue("piece " + i + " at " + s + " is " + error + " pixels off", error < 0.5);
+                }
+            }
+        }
+    }
+
+    private static double bezier(double[] pieces, int offset, double s) {
+        double r = 1 - s;
+        return r * r * r * pieces[offset] + 3 * r * r * s * pieces[offset + 2]
+                + 3 * r * s * s * pieces[offset + 4] + s * s * s * pieces[offset + 6];
+    }
+}
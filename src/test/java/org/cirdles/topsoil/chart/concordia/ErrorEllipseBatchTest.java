@@ -0,0 +1,139 @@
+/*
+ * Copyright 2014 CIRDLES.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cirdles.topsoil.chart.concordia;
+
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author John Zeringue <john.joseph.zeringue@gmail.com>
+ */
+public class ErrorEllipseBatchTest {
+
+    /**
+     * Test that a batch computes what its ellipses would one at a time, both below and above the size at which the work
+     * is split between threads.
+     */
+    @Test
+    public void testBatchMatchesSingleEllipses() {
+        Random random = new Random(7);
+
+        for (int size : new int[]{0, 1, 1000, ErrorEllipseBatch.PARALLEL_THRESHOLD * 3 + 5}) {
+            double[] x = new double[size];
+            double[] sigmaX = new double[size];
+            double[] y = new double[size];
+            double[] sigmaY = new double[size];
+            double[] rho = new double[size];
+
+            ErrorEllipseBatch batch = new ErrorEllipseBatch();
+            for (int i = 0; i < size; i++) {
+                x[i] = random.nextDouble();
+                sigmaX[i] = random.nextDouble();
+                y[i] = random.nextDouble();
+                sigmaY[i] = random.nextDouble();
+                rho[i] = random.nextDouble() * 2 - 1;
+                batch.add(x[i], sigmaX[i], y[i], sigmaY[i], rho[i]);
+            }
+
+            int stride = ErrorEllipse.CONTROL_POINT_COORDINATES + 2;
+            double[] controlPoints = new double[size * stride + 1];
+            batch.computeControlPoints(2, controlPoints, 1, stride);
+
+            double[] bounds = new double[4 * size];
+            batch.computeBounds(2, bounds);
+
+            double[] extent = batch.computeExtent(2);
+            double[] expectedExtent = {Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+                                       Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+
+            double[] expected = new double[ErrorEllipse.CONTROL_POINT_COORDINATES];
+            for (int i = 0; i < size; i += 97) {
+                ErrorEllipse errorEllipse = new SimpleErrorEllipse(x[i], sigmaX[i], y[i], sigmaY[i], rho[i]);
+                errorEllipse.getControlPoints(2, expected, 0);
+
+                for (int j = 0; j < expected.length; j++) {
+                    assertEquals(expected[j], controlPoints[1 + i * stride + j], 0);
+                }
+
+                assertEquals(errorEllipse.getMinX(2), bounds[4 * i], 0);
+                assertEquals(errorEllipse.getMaxX(2), bounds[4 * i + 1], 0);
+                assertEquals(errorEllipse.getMinY(2), bounds[4 * i + 2], 0);
+                assertEquals(errorEllipse.getMaxY(2), bounds[4 * i + 3], 0);
+            }
+
+            for (int i = 0; i < size; i++) {
+                expectedExtent[0] = Math.min(expectedExtent[0], bounds[4 * i]);
+                expectedExtent[1] = Math.max(expectedExtent[1], bounds[4 * i + 1]);
+                expectedExtent[2] = Math.min(expectedExtent[2], bounds[4 * i + 2]);
+                expectedExtent[3] = Math.max(expectedExtent[3], bounds[4 * i + 3]);
+            }
+
+            assertArrayEquals(expectedExtent, extent, 0);
+        }
+    }
+
+    /**
+     * Test that an ellipse with a missing value, which reads as NaN, is left out of the extent rather than turning it
+     * into NaN, whether or not the work is split between threads.
+     */
+    @Test
+    public void testExtentSkipsMissingValues() {
+        for (int size : new int[]{3, ErrorEllipseBatch.PARALLEL_THRESHOLD * 3 + 5}) {
+            ErrorEllipseBatch batch = new ErrorEllipseBatch();
+            for (int i = 0; i < size; i++) {
+                if (i == size / 2) {
+                    batch.add(Double.NaN, 0.1, 100, 0.1, 0);
+                } else {
+                    batch.add(i, 0.5, -i, 0.25, 0);
+                }
+            }
+
+            assertArrayEquals(new double[]{-1, size, 0.5 - size, 0.5}, batch.computeExtent(2), 0);
+        }
+
+        ErrorEllipseBatch missing = new ErrorEllipseBatch();
+        missing.add(1, Double.NaN, 2, 0.2, 0);
+
+        double[] extent = missing.computeExtent(2);
+        assertTrue("a batch without finite ellipses should be empty", extent[0] > extent[1]);
+    }
+
+    /**
+     * Test that replacing an ellipse changes only that ellipse.
+     */
+    @Test
+    public void testSet() {
+        ErrorEllipseBatch batch = new ErrorEllipseBatch();
+        batch.add(1, 0.1, 2, 0.2, 0.3);
+        batch.add(3, 0.3, 4, 0.4, -0.5);
+
+        batch.set(0, new SimpleErrorEllipse(5, 0.5, 6, 0.6, 0.7));
+
+        assertEquals(2, batch.size());
+        assertEquals(5, batch.getX(0), 0);
+        assertEquals(0.6, batch.getSigmaY(0), 0);
+        assertEquals(0.7, batch.getRho(0), 0);
+        assertEquals(3, batch.getX(1), 0);
+
+        try {
+            batch.set(2, new SimpleErrorEllipse(0, 0, 0, 0, 0));
+            fail("there is no ellipse to replace");
+        } catch (IndexOutOfBoundsException ex) {
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2014 CIRDLES.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cirdles.topsoil.chart.concordia;
+
+import Jama.Matrix;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the ellipses per second whose control points can be computed with the primitive kernel in
+ * {@link ErrorEllipse} and with the Jama matrix product it replaced. Run it from the test classpath with
+ * <code>main</code>; it isn't part of the unit tests.
+ *
+ * @author John Zeringue <john.joseph.zeringue@gmail.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ErrorEllipseBenchmark {
+
+    private static final int ELLIPSES = 100_000;
+
+    private double[] x;
+    private double[] sigmaX;
+    private double[] y;
+    private double[] sigmaY;
+    private double[] rho;
+
+    private double[] coordinates;
+
+    @Setup(Level.Trial)
+    public void createEllipses() {
+        Random random = new Random(42);
+
+        x = new double[ELLIPSES];
+        sigmaX = new double[ELLIPSES];
+        y = new double[ELLIPSES];
+        sigmaY = new double[ELLIPSES];
+        rho = new double[ELLIPSES];
+
+        for (int i = 0; i < ELLIPSES; i++) {
+            x[i] = random.nextDouble() * 30;
+            sigmaX[i] = random.nextDouble();
+            y[i] = random.nextDouble();
+            sigmaY[i] = random.nextDouble() * 0.01;
+            rho[i] = random.nextDouble() * 2 - 1;
+        }
+
+        coordinates = new double[ELLIPSES * ErrorEllipse.CONTROL_POINT_COORDINATES];
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ELLIPSES)
+    public double[] kernel() {
+        for (int i = 0; i < ELLIPSES; i++) {
+            ErrorEllipse.calculateControlPoints(x[i], sigmaX[i], y[i], sigmaY[i], rho[i], 2,
+                                                coordinates, i * ErrorEllipse.CONTROL_POINT_COORDINATES);
+        }
+
+        return coordinates;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ELLIPSES)
+    public void matrices(Blackhole blackhole) {
+        for (int i = 0; i < ELLIPSES; i++) {
+            Matrix xyMatrix = new Matrix(13, 1, 1).times(new Matrix(new double[]{x[i], y[i]}, 1));
+
+            blackhole.consume(ErrorEllipse.CONTROL_POINTS_MATRIX.times(2)
+                    .times(ErrorEllipse.calculateU(sigmaX[i], sigmaY[i], rho[i]))
+                    .plus(xyMatrix));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ErrorEllipseBenchmark.class.getSimpleName()).build()).run();
+    }
+}
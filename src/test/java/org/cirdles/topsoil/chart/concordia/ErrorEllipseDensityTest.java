@@ -0,0 +1,113 @@
+/*
+ * Copyright 2014 CIRDLES.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cirdles.topsoil.chart.concordia;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author John Zeringue <john.joseph.zeringue@gmail.com>
+ */
+public class ErrorEllipseDensityTest {
+
+    /**
+     * Test that each ellipse adds about one to the density, whether it is small, large, correlated or spread across
+     * several tiles.
+     */
+    @Test
+    public void testComputeConservesMass() {
+        ErrorEllipseBatch batch = new ErrorEllipseBatch();
+        batch.add(1, 0.0001, 1, 0.0001, 0);
+        batch.add(2, 0.05, 2, 0.1, 0.8);
+        batch.add(6.4, 0.3, 6.4, 0.2, -0.5);
+
+        ErrorEllipseDensity density = new ErrorEllipseDensity();
+        density.setErrorEllipses(batch);
+
+        // 100 pixels to a unit, so that the third ellipse straddles four tiles
+        float[] values = density.compute(0, 10, 100, 100, 1000, 1000, null);
+        assertTrue("several tiles should be computed", density.getTilesComputed() > 1);
+
+        double total = 0;
+        for (float value : values) {
+            total += value;
+        }
+
+        assertEquals(3, total, 0.01);
+        assertEquals("a tiny ellipse should fall in one pixel", 1, values[900 * 1000 + 100], 1e-6);
+    }
+
+    /**
+     * Test that panning by whole tiles only computes the tiles that come into view, and gives the same density as
+     * computing from scratch.
+     */
+    @Test
+    public void testComputeReusesTilesWhenPanning() {
+        ErrorEllipseBatch batch = new ErrorEllipseBatch();
+        for (int i = 0; i < 100; i++) {
+            batch.add(i * 0.1, 0.05, i * 0.07, 0.03, 0.5);
+        }
+
+        ErrorEllipseDensity density = new ErrorEllipseDensity();
+        density.setErrorEllipses(batch);
+
+        int size = ErrorEllipseDensity.TILE_SIZE * 4;
+        double scale = 100;
+        density.compute(0, 6.4, scale, scale, size, size, null);
+        assertEquals(16, density.getTilesComputed());
+
+        double step = ErrorEllipseDensity.TILE_SIZE / scale;
+        float[] panned = density.compute(step, 6.4, scale, scale, size, size, null);
+        assertEquals("only a column of tiles should be new", 4, density.getTilesComputed());
+
+        ErrorEllipseDensity fresh = new ErrorEllipseDensity();
+        fresh.setErrorEllipses(batch);
+        assertArrayEquals(fresh.compute(step, 6.4, scale, scale, size, size, null), panned, 0);
+
+        density.compute(step, 6.4, scale * 2, scale * 2, size, size, null);
+        assertEquals("zooming should start again", 16, density.getTilesComputed());
+    }
+
+    /**
+     * Test that a window with more tiles than are normally kept, such as a full-screen 4K plot, is computed in full and
+     * still reuses its tiles when panned.
+     */
+    @Test
+    public void testComputeLargeWindow() {
+        ErrorEllipseBatch batch = new ErrorEllipseBatch();
+        for (int i = 0; i < 100; i++) {
+            batch.add(i * 0.01, 0.005, 1 - i * 0.01, 0.005, 0);
+        }
+
+        ErrorEllipseDensity density = new ErrorEllipseDensity();
+        density.setErrorEllipses(batch);
+
+        int tileSize = ErrorEllipseDensity.TILE_SIZE;
+        int width = 3800;
+        int height = 2100;
+        density.compute(0, 1, width, height, width, height, null);
+
+        double step = (double) tileSize / width;
+        float[] panned = density.compute(step, 1, width, height, width, height, null);
+        long rows = Math.floorDiv(-1, tileSize) - Math.floorDiv(-height, tileSize) + 1;
+        assertEquals("only a column of tiles should be new", rows, density.getTilesComputed());
+
+        ErrorEllipseDensity fresh = new ErrorEllipseDensity();
+        fresh.setErrorEllipses(batch);
+        assertArrayEquals(fresh.compute(step, 1, width, height, width, height, null), panned, 0);
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2014 CIRDLES.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cirdles.topsoil.chart.concordia;
+
+import javafx.scene.shape.CubicCurveTo;
+import javafx.scene.shape.LineTo;
+import javafx.scene.shape.Path;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author John Zeringue <john.joseph.zeringue@gmail.com>
+ */
+public class ErrorEllipseDetailTest {
+
+    /**
+     * Test that ellipses are given more detail as they grow on screen.
+     */
+    @Test
+    public void testOf() {
+        assertEquals(ErrorEllipseDetail.POINT, ErrorEllipseDetail.of(circle(0.4), 0, 1, 16));
+        assertEquals(ErrorEllipseDetail.POLYGON, ErrorEllipseDetail.of(circle(4), 0, 1, 16));
+        assertEquals(ErrorEllipseDetail.CURVE, ErrorEllipseDetail.of(circle(40), 0, 1, 16));
+        assertEquals("zero thresholds should always give curves",
+                     ErrorEllipseDetail.CURVE, ErrorEllipseDetail.of(circle(0.01), 0, 0, 0));
+    }
+
+    /**
+     * Test that a path switches between levels and that the octagon lies on the ellipse.
+     */
+    @Test
+    public void testTracePath() {
+        double[] display = circle(10);
+        Path path = new Path();
+
+        ErrorEllipseDetail.CURVE.trace(path, display, 0);
+        assertEquals(5, path.getElements().size());
+        assertTrue(path.getElements().get(4) instanceof CubicCurveTo);
+
+        ErrorEllipseDetail.POLYGON.trace(path, display, 0);
+        assertEquals(9, path.getElements().size());
+        for (int i = 1; i < 8; i++) {
+            LineTo lineTo = (LineTo) path.getElements().get(i);
+            assertEquals("vertex " + i, 10, Math.hypot(lineTo.getX(), lineTo.getY()), 0.01);
+        }
+
+        ErrorEllipseDetail.POINT.trace(path, display, 0);
+        assertTrue(path.getElements().isEmpty());
+    }
+
+    private static double[] circle(double radius) {
+        double[] display = new double[ErrorEllipse.CONTROL_POINT_COORDINATES];
+        ErrorEllipse.calculateControlPoints(0, radius, 0, radius, 0, 1, display, 0);
+
+        return display;
+    }
+}
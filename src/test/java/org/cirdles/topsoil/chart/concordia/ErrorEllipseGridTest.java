@@ -0,0 +1,102 @@
+/*
+ * Copyright 2014 CIRDLES.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cirdles.topsoil.chart.concordia;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author John Zeringue <john.joseph.zeringue@gmail.com>
+ */
+public class ErrorEllipseGridTest {
+
+    /**
+     * Test that queries find exactly the boxes a scan of every box would, including boxes large enough to be kept out
+     * of the cells, boxes that aren't finite and windows reaching past the grid.
+     */
+    @Test
+    public void testQueryMatchesScan() {
+        Random random = new Random(11);
+
+        for (int count : new int[]{0, 1, 5000}) {
+            double[] bounds = new double[4 * count];
+            for (int i = 0; i < count; i++) {
+                double x = random.nextDouble() * 100;
+                double y = random.nextDouble() * 10;
+                double width = i % 50 == 0 ? random.nextDouble() * 60 : random.nextDouble();
+                double height = i % 50 == 0 ? random.nextDouble() * 6 : random.nextDouble() * 0.1;
+
+                bounds[4 * i] = x - width;
+                bounds[4 * i + 1] = x + width;
+                bounds[4 * i + 2] = y - height;
+                bounds[4 * i + 3] = i % 97 == 0 ? Double.NaN : y + height;
+            }
+
+            ErrorEllipseGrid grid = new ErrorEllipseGrid();
+            grid.build(bounds, count);
+
+            int[] found = null;
+            for (int q = 0; q < 200; q++) {
+                double minX = random.nextDouble() * 140 - 20;
+                double maxX = minX + random.nextDouble() * 50;
+                double minY = random.nextDouble() * 14 - 2;
+                double maxY = minY + random.nextDouble() * 5;
+
+                found = grid.query(minX, maxX, minY, maxY, found);
+                int[] actual = Arrays.copyOf(found, grid.getFound());
+
+                assertArrayEquals("window " + q, scan(bounds, count, minX, maxX, minY, maxY), actual);
+            }
+        }
+    }
+
+    /**
+     * Test that a grid can be rebuilt over different boxes.
+     */
+    @Test
+    public void testRebuild() {
+        ErrorEllipseGrid grid = new ErrorEllipseGrid();
+
+        grid.build(new double[]{0, 1, 0, 1, 5, 6, 5, 6}, 2);
+        grid.query(0, 2, 0, 2, null);
+        assertEquals(1, grid.getFound());
+
+        grid.build(new double[]{5, 6, 5, 6}, 1);
+        grid.query(0, 2, 0, 2, null);
+        assertEquals(0, grid.getFound());
+
+        int[] found = grid.query(-10, 10, -10, 10, null);
+        assertEquals(1, grid.getFound());
+        assertEquals(0, found[0]);
+    }
+
+    private static int[] scan(double[] bounds, int count, double minX, double maxX, double minY, double maxY) {
+        int[] found = new int[count];
+        int n = 0;
+
+        for (int i = 0; i < count; i++) {
+            if (bounds[4 * i] <= maxX && bounds[4 * i + 1] >= minX
+                    && bounds[4 * i + 2] <= maxY && bounds[4 * i + 3] >= minY) {
+                found[n++] = i;
+            }
+        }
+
+        return Arrays.copyOf(found, n);
+    }
+}
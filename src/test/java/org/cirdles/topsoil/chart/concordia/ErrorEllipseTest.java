@@ -80,4 +80,86 @@ public class ErrorEllipseTest {
         }
     }
 
+    /**
+     * Test that control points follow the confidence level they're asked for, scaling about the centre.
+     */
+    @Test
+    public void testGetControlPointsForSeveralConfidenceLevels() {
+        ErrorEllipse instance = new SimpleErrorEllipse(1, 0.5, 2, 0.25, -0.3);
+
+        Matrix one = instance.getControlPoints(1);
+        Matrix two = instance.getControlPoints(2);
+        assertNotSame(one, two);
+
+        for (int i = 0; i < 13; i++) {
+            assertEquals(1 + 2 * (one.get(i, 0) - 1), two.get(i, 0), 1e-12);
+            assertEquals(2 + 2 * (one.get(i, 1) - 2), two.get(i, 1), 1e-12);
+        }
+
+        assertEquals(one.get(3, 1), instance.getControlPoints(1).get(3, 1), 0);
+    }
+
+    /**
+     * Test that the bounds are those of the ellipse itself.
+     */
+    @Test
+    public void testBounds() {
+        for (int n = 0; n < 1000; n++) {
+            double sigmaX = Math.random() * 10;
+            double sigmaY = Math.random() * 10;
+            double rho = Math.random() * 2 - 1;
+            ErrorEllipse instance = new SimpleErrorEllipse(Math.random(), sigmaX, Math.random(), sigmaY, rho);
+
+            double minX = Double.POSITIVE_INFINITY;
+            double maxX = Double.NEGATIVE_INFINITY;
+            double minY = Double.POSITIVE_INFINITY;
+            double maxY = Double.NEGATIVE_INFINITY;
+
+            // sample the ellipse itself: the image of the unit circle under U
+            Matrix u = ErrorEllipse.calculateU(sigmaX, sigmaY, rho);
+            for (int i = 0; i < 3600; i++) {
+                double t = i * Math.PI / 1800;
+                Matrix point = new Matrix(new double[]{Math.cos(t), Math.sin(t)}, 1).times(u).times(2);
+
+                minX = Math.min(minX, instance.getX() + point.get(0, 0));
+                maxX = Math.max(maxX, instance.getX() + point.get(0, 0));
+                minY = Math.min(minY, instance.getY() + point.get(0, 1));
+                maxY = Math.max(maxY, instance.getY() + point.get(0, 1));
+            }
+
+            double tolerance = 1e-4 * Math.max(sigmaX, sigmaY);
+            assertEquals(minX, instance.getMinX(2), tolerance);
+            assertEquals(maxX, instance.getMaxX(2), tolerance);
+            assertEquals(minY, instance.getMinY(2), tolerance);
+            assertEquals(maxY, instance.getMaxY(2), tolerance);
+        }
+    }
+
+    /**
+     * Test that the primitive kernel writes the same points as the matrix product it replaces.
+     */
+    @Test
+    public void testCalculateControlPointsMatchesMatrices() {
+        double[] coordinates = new double[ErrorEllipse.CONTROL_POINT_COORDINATES + 3];
+
+        for (int n = 0; n < 1000; n++) {
+            double x = Math.random();
+            double sigmaX = Math.random() * 10;
+            double y = Math.random();
+            double sigmaY = Math.random() * 10;
+            double rho = Math.random() * 2 - 1;
+            double confidenceLevel = Math.random() * 3;
+
+            ErrorEllipse.calculateControlPoints(x, sigmaX, y, sigmaY, rho, confidenceLevel, coordinates, 3);
+
+            Matrix expected = ErrorEllipse.CONTROL_POINTS_MATRIX.times(confidenceLevel)
+                    .times(ErrorEllipse.calculateU(sigmaX, sigmaY, rho))
+                    .plus(new Matrix(13, 1, 1).times(new Matrix(new double[]{x, y}, 1)));
+
+            for (int i = 0; i < 13; i++) {
+                assertEquals(expected.get(i, 0), coordinates[3 + 2 * i], 1e-12);
+                assertEquals(expected.get(i, 1), coordinates[3 + 2 * i + 1], 1e-12);
+            }
+        }
+    }
 }
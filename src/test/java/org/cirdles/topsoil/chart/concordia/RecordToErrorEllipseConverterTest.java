@@ -0,0 +1,82 @@
+/*
+ * Copyright 2014 CIRDLES.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cirdles.topsoil.chart.concordia;
+
+import java.util.Arrays;
+import javafx.scene.chart.XYChart.Data;
+import org.cirdles.topsoil.ExpressionType;
+import org.cirdles.topsoil.table.Field;
+import org.cirdles.topsoil.table.NumberField;
+import org.cirdles.topsoil.table.Record;
+import org.cirdles.topsoil.table.RecordStore;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author John Zeringue <john.joseph.zeringue@gmail.com>
+ */
+public class RecordToErrorEllipseConverterTest {
+
+    private final NumberField x = new NumberField("x");
+    private final NumberField sigmaX = new NumberField("sigma x");
+    private final NumberField y = new NumberField("y");
+    private final NumberField sigmaY = new NumberField("sigma y");
+    private final NumberField rho = new NumberField("rho");
+
+    /**
+     * Test that converted ellipses keep the values they were converted with, and that the revision tells when the
+     * record has changed since.
+     */
+    @Test
+    public void testConvertTakesSnapshot() {
+        Record record = new RecordStore(Arrays.<Field<?>>asList(x, sigmaX, y, sigmaY, rho)).newRecord();
+        record.setDouble(x, 1);
+        record.setDouble(sigmaX, 0.1);
+        record.setDouble(y, 2);
+        record.setDouble(sigmaY, 0.2);
+        record.setDouble(rho, 0.5);
+
+        RecordToErrorEllipseConverter converter = new RecordToErrorEllipseConverter(x, sigmaX, y, sigmaY, rho);
+        Data<Number, Number> data = new Data<>(0, 0, record);
+
+        ErrorEllipse errorEllipse = converter.convert(data);
+        long revision = converter.getRevision(data);
+        assertEquals(revision, converter.getRevision(data));
+
+        record.setDouble(x, 3);
+
+        assertEquals("the ellipse shouldn't follow the record", 1, errorEllipse.getX(), 0);
+        assertTrue("the revision should change with the record", revision != converter.getRevision(data));
+        assertEquals(3, converter.convert(data).getX(), 0);
+    }
+
+    /**
+     * Test that listeners are told when a setting changes the ellipses the converter creates.
+     */
+    @Test
+    public void testSettingsInvalidateConverter() {
+        RecordToErrorEllipseConverter converter = new RecordToErrorEllipseConverter(x, sigmaX, y, sigmaY, rho);
+
+        int[] invalidations = new int[1];
+        converter.addListener(observable -> invalidations[0]++);
+
+        converter.setErrorSizeSigmaX(2);
+        converter.setExpressionTypeSigmaY(ExpressionType.PERCENTAGE);
+
+        assertEquals(2, invalidations[0]);
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2014 CIRDLES.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cirdles.topsoil.chart.concordia;
+
+/**
+ * An error ellipse with fixed values, for tests.
+ *
+ * @author John Zeringue <john.joseph.zeringue@gmail.com>
+ */
+class SimpleErrorEllipse extends ErrorEllipse {
+
+    private final double x;
+    private final double sigmaX;
+    private final double y;
+    private final double sigmaY;
+    private final double rho;
+
+    SimpleErrorEllipse(double x, double sigmaX, double y, double sigmaY, double rho) {
+        this.x = x;
+        this.sigmaX = sigmaX;
+        this.y = y;
+        this.sigmaY = sigmaY;
+        this.rho = rho;
+    }
+
+    @Override
+    public double getX() {
+        return x;
+    }
+
+    @Override
+    public double getSigmaX() {
+        return sigmaX;
+    }
+
+    @Override
+    public double getY() {
+        return y;
+    }
+
+    @Override
+    public double getSigmaY() {
+        return sigmaY;
+    }
+
+    @Override
+    public double getRho() {
+        return rho;
+    }
+}
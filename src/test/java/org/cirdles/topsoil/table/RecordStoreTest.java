@@ -0,0 +1,125 @@
+/*
+ * Copyright 2014 CIRDLES.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cirdles.topsoil.table;
+
+import java.util.Arrays;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author CIRDLES
+ */
+public class RecordStoreTest {
+
+    @Test
+    public void testRecordsViewTheirRows() {
+        NumberField number = new NumberField("number");
+        TextField text = new TextField("text");
+        RecordStore store = new RecordStore(Arrays.asList(number, text));
+
+        Record[] records = new Record[100];
+        for (int i = 0; i < records.length; i++) {
+            records[i] = store.newRecord();
+            records[i].setDouble(number, i * 0.5);
+            records[i].setValue(text, "row " + i);
+        }
+
+        assertEquals(100, store.size());
+        for (int i = 0; i < records.length; i++) {
+            assertEquals(i * 0.5, records[i].getValue(number).doubleValue(), 0);
+            assertEquals(i * 0.5, records[i].getDouble(number), 0);
+            assertEquals("row " + i, records[i].getValue(text));
+        }
+    }
+
+    @Test
+    public void testEmptyCells() {
+        NumberField number = new NumberField("number");
+        RecordStore store = new RecordStore(Arrays.asList(number));
+
+        Record record = store.newRecord();
+        assertNull("new rows should hold no value", record.getValue(number));
+        assertTrue(Double.isNaN(record.getDouble(number)));
+
+        record.setValue(number, Double.NaN);
+        assertNotNull("NaN should be distinguishable from an empty cell", record.getValue(number));
+
+        record.setValue(number, null);
+        assertNull(record.getValue(number));
+    }
+
+    @Test
+    public void testFieldsOutsideTheStore() {
+        NumberField stored = new NumberField("stored");
+        NumberField extra = new NumberField("extra");
+        Record record = new RecordStore(Arrays.asList(stored)).newRecord();
+
+        record.setValue(extra, 3.);
+        assertEquals(3., record.getDouble(extra), 0);
+        assertEquals(2, record.getFields().size());
+
+        // records without a store behave like maps
+        Record standalone = new Record();
+        standalone.setValue(stored, 7.);
+        assertEquals(7., standalone.getValue(stored));
+    }
+
+    @Test
+    public void testAddField() {
+        NumberField first = new NumberField("first");
+        NumberField second = new NumberField("second");
+        RecordStore store = new RecordStore(Arrays.asList(first));
+
+        Record record = store.newRecord();
+        record.setDouble(first, 1);
+
+        store.addField(second);
+        assertNull(record.getValue(second));
+
+        record.setDouble(second, 2);
+        assertEquals(2., store.getDoubleColumn(second).getDouble(record.getIndex()), 0);
+    }
+
+    @Test
+    public void testCopyOf() {
+        NumberField number = new NumberField("number");
+        TextField text = new TextField("text");
+        RecordStore store = new RecordStore(Arrays.asList(number, text));
+
+        Record first = store.newRecord();
+        first.setDouble(number, 1.5);
+        first.setValue(text, "first");
+        Record second = store.newRecord();
+        second.setValue(text, "second");
+
+        RecordStore copy = RecordStore.copyOf(Arrays.asList(number, text), Arrays.asList(first, second));
+        NumberField copiedNumber = (NumberField) copy.getFields().get(0);
+        TextField copiedText = (TextField) copy.getFields().get(1);
+
+        // the original carries on changing
+        first.setDouble(number, 2.5);
+        second.setDouble(number, 3.5);
+        store.addField(new NumberField("added"));
+        number.setName("renamed");
+
+        assertEquals(2, copy.size());
+        assertEquals("number", copiedNumber.getName());
+        assertEquals(1.5, copy.getDoubleColumn(copiedNumber).getDouble(0), 0);
+        assertFalse(copy.asList().get(1).hasValue(copiedNumber));
+        assertEquals("second", copy.asList().get(1).getValue(copiedText));
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2014 CIRDLES.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cirdles.topsoil.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.cirdles.topsoil.table.Field;
+import org.cirdles.topsoil.table.NumberField;
+import org.cirdles.topsoil.table.Record;
+import org.cirdles.topsoil.table.RecordStore;
+import org.cirdles.topsoil.table.TextField;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author John Zeringue <john.joseph.zeringue@gmail.com>
+ */
+public class BinaryTableReaderTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Test that a table survives being written and read back, including empty cells, <code>NaN</code> and text that
+     * isn't ASCII.
+     */
+    @Test
+    public void testReadWhatWasWritten() throws IOException {
+        for (int rowCount : new int[]{0, 1, 64, 130}) {
+            TextField name = new TextField("name \u00e9");
+            NumberField x = new NumberField("x");
+            NumberField y = new NumberField("y");
+            List<Field<?>> fields = Arrays.<Field<?>>asList(name, x, y);
+
+            RecordStore store = new RecordStore(fields);
+            List<Record> rows = new ArrayList<>();
+            for (int i = 0; i < rowCount; i++) {
+                Record row = store.newRecord();
+                row.setValue(name, i % 5 == 0 ? null : "row \u03c3" + i);
+                row.setDouble(x, i % 3 == 0 ? Double.NaN : i * 0.25);
+                if (i % 7 != 0) {
+                    row.setDouble(y, -i);
+                }
+
+                rows.add(row);
+            }
+
+            // rows from a plain record take the slow path through the writer
+            if (rowCount > 0) {
+                Record standalone = new Record();
+                standalone.setValue(name, "standalone");
+                standalone.setValue(x, 1.5);
+                rows.set(rowCount - 1, standalone);
+            }
+
+            Path path = temporaryFolder.getRoot().toPath().resolve("session" + rowCount + ".bin");
+            new BinaryTableWriter().write(fields, rows, path);
+
+            CollectingListener listener = new CollectingListener();
+            new BinaryTableReader().read(path, listener);
+
+            assertEquals(3, listener.fields.size());
+            assertEquals("name \u00e9", listener.fields.get(0).getName());
+            assertTrue(listener.fields.get(0) instanceof TextField);
+            assertTrue(listener.fields.get(1) instanceof NumberField);
+            assertEquals(rowCount, listener.rows.size());
+
+            for (int i = 0; i < rowCount; i++) {
+                for (int j = 0; j < 3; j++) {
+                    assertEquals("cell " + i + ", " + j + " of " + rowCount,
+                                 rows.get(i).getValue(fields.get(j)),
+                                 listener.rows.get(i).getValue(listener.fields.get(j)));
+                }
+            }
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadRejectsOtherFiles() throws IOException {
+        Path path = temporaryFolder.newFile("table.tsv").toPath();
+        Files.write(path, "x\ty\n1\t2\n".getBytes("US-ASCII"));
+
+        new BinaryTableReader().read(path, new CollectingListener());
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadRejectsTruncatedFiles() throws IOException {
+        NumberField x = new NumberField("x");
+        RecordStore store = new RecordStore(Arrays.<Field<?>>asList(x));
+        List<Record> rows = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            rows.add(store.newRecord());
+        }
+
+        Path path = temporaryFolder.getRoot().toPath().resolve("truncated.bin");
+        new BinaryTableWriter().write(store.getFields(), rows, path);
+
+        byte[] bytes = Files.readAllBytes(path);
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - 8));
+
+        new BinaryTableReader().read(path, new CollectingListener());
+    }
+
+    /**
+     * Test that updating a file with edited and added rows gives the same file as writing the whole table again, both
+     * when numbers are overwritten in place and when the file has to be laid out again.
+     */
+    @Test
+    public void testUpdateMatchesWrite() throws IOException {
+        for (boolean withText : new boolean[]{false, true}) {
+            for (int appendedCount : new int[]{0, 70}) {
+                TextField name = new TextField("name");
+                NumberField x = new NumberField("x");
+                NumberField y = new NumberField("y");
+                List<Field<?>> fields = withText
+                                        ? Arrays.<Field<?>>asList(x, name, y)
+                                        : Arrays.<Field<?>>asList(x, y);
+
+                RecordStore store = new RecordStore(fields);
+                List<Record> rows = new ArrayList<>();
+                for (int i = 0; i < 130 + appendedCount; i++) {
+                    Record row = store.newRecord();
+                    row.setDouble(x, i * 0.25);
+                    if (i % 7 != 0) {
+                        row.setDouble(y, -i);
+                    }
+                    if (withText) {
+                        row.setValue(name, "row " + i);
+                    }
+                    rows.add(row);
+                }
+
+                String suffix = withText + "-" + appendedCount + ".bin";
+                Path updated = temporaryFolder.getRoot().toPath().resolve("updated-" + suffix);
+                new BinaryTableWriter().write(fields, rows.subList(0, 130), updated);
+
+                int[] edited = {0, 63, 64, 70, 129};
+                List<Record> editedRows = new ArrayList<>();
+                for (int row : edited) {
+                    rows.get(row).setValue(x, row == 63 ? null : (Number) (row * 1e10));
+                    rows.get(row).setDouble(y, 42);
+                    if (withText) {
+                        rows.get(row).setValue(name, "edited \u03c3");
+                    }
+                    editedRows.add(rows.get(row));
+                }
+
+                new BinaryTableWriter().update(fields, edited, editedRows, rows.subList(130, rows.size()), updated);
+
+                Path written = temporaryFolder.getRoot().toPath().resolve("written-" + suffix);
+                new BinaryTableWriter().write(fields, rows, written);
+
+                assertArrayEquals("with text " + withText + ", " + appendedCount + " rows added",
+                                  Files.readAllBytes(written), Files.readAllBytes(updated));
+            }
+        }
+    }
+
+    /**
+     * Test that a header asking for more rows, fields or text than the file holds is rejected before anything is
+     * allocated for it.
+     */
+    @Test
+    public void testReadRejectsCorruptHeaders() throws IOException {
+        byte[] name = "x".getBytes(StandardCharsets.UTF_8);
+
+        ByteBuffer tooManyRows = header(Integer.MAX_VALUE, 1);
+        tooManyRows.put(BinaryTableWriter.NUMBER_TYPE).putInt(name.length).put(name);
+
+        ByteBuffer tooManyFields = header(1, Integer.MAX_VALUE);
+
+        ByteBuffer longName = header(0, 1);
+        longName.put(BinaryTableWriter.TEXT_TYPE).putInt(Integer.MAX_VALUE);
+
+        ByteBuffer rowsWithoutFields = header(Integer.MAX_VALUE, 0);
+
+        ByteBuffer[] headers = {tooManyRows, tooManyFields, longName, rowsWithoutFields};
+        for (int i = 0; i < headers.length; i++) {
+            Path path = temporaryFolder.getRoot().toPath().resolve("corrupt" + i + ".bin");
+            Files.write(path, Arrays.copyOf(headers[i].array(), headers[i].position()));
+
+            try {
+                new BinaryTableReader().read(path, new CollectingListener());
+                fail("header " + i + " should be rejected");
+            } catch (IOException ex) {
+                // expected
+            }
+        }
+    }
+
+    private static ByteBuffer header(int rowCount, int fieldCount) {
+        return ByteBuffer.allocate(64)
+                .putInt(BinaryTableWriter.MAGIC)
+                .putInt(BinaryTableWriter.VERSION)
+                .putInt(rowCount)
+                .putInt(fieldCount);
+    }
+
+    private static class CollectingListener implements TableReadListener<Record> {
+
+        private List<Field<?>> fields;
+        private final List<Record> rows = new ArrayList<>();
+
+        @Override
+        public void fieldsRead(List<Field<?>> fields) {
+            this.fields = fields;
+        }
+
+        @Override
+        public void rowsRead(List<Record> rows) {
+            this.rows.addAll(rows);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2014 CIRDLES.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cirdles.topsoil.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author John Zeringue <john.joseph.zeringue@gmail.com>
+ */
+public class DoubleScannerTest {
+
+    private static final String[] NUMBERS = {
+        "0", "-0", "1", "+1", "29.165688743", "0.915025602", "-2e3", "1E-5", ".5", "5.", "007",
+        " 1.25 ", "1d", "2.5F", "NaN", "-Infinity", "0x1p3", "1e400", "1e-400", "123456789012345678901234",
+        "0.30000000000000004", "4.9e-324", "1.7976931348623157E308"
+    };
+
+    private static final String[] NOT_NUMBERS = {
+        "", " ", "-", ".", "e5", "1e", "1.2.3", "abc", "---", "1,5", "1 2", "Inf", "NaN1", "1x"
+    };
+
+    @Test
+    public void testScanAgreesWithParseDouble() {
+        DoubleScanner scanner = new DoubleScanner();
+
+        for (String number : NUMBERS) {
+            assertTrue(number, scan(scanner, number));
+            assertEquals(number, Double.doubleToLongBits(Double.parseDouble(number)),
+                         Double.doubleToLongBits(scanner.value()));
+        }
+
+        for (String notNumber : NOT_NUMBERS) {
+            assertFalse(notNumber, scan(scanner, notNumber));
+        }
+    }
+
+    @Test
+    public void testScanReportsEmptyCells() {
+        DoubleScanner scanner = new DoubleScanner();
+
+        assertEquals(DoubleScanner.EMPTY, scanner.scan((String) null));
+        assertEquals(DoubleScanner.EMPTY, scanner.scan(""));
+        assertEquals(DoubleScanner.EMPTY, scanner.scan(" \t"));
+        assertEquals(DoubleScanner.INVALID, scanner.scan("-"));
+        assertEquals(DoubleScanner.INVALID, scanner.scan("NaNa"));
+        assertEquals(DoubleScanner.NUMBER, scanner.scan("+NaN"));
+        assertTrue(Double.isNaN(scanner.value()));
+    }
+
+    @Test
+    public void testScanRoundTripsRandomValues() {
+        DoubleScanner scanner = new DoubleScanner();
+        Random random = new Random(0);
+
+        for (int i = 0; i < 100000; i++) {
+            double expected = random.nextGaussian() * Math.pow(10, random.nextInt(20) - 10);
+            String number = i % 2 == 0 ? Double.toString(expected) : String.format("%.9f", expected);
+
+            assertTrue(number, scan(scanner, number));
+            assertEquals(number, Double.parseDouble(number), scanner.value(), 0);
+        }
+    }
+
+    private static boolean scan(DoubleScanner scanner, String string) {
+        // pad the buffer to check that only the given range is read
+        ByteBuffer buffer = ByteBuffer.wrap(("9" + string + "9").getBytes(StandardCharsets.US_ASCII));
+        boolean found = scanner.scan(buffer, 1, buffer.limit() - 1) == DoubleScanner.NUMBER;
+
+        // the same characters must give the same answer
+        double value = scanner.value();
+        assertEquals(string, found, scanner.scan(string) == DoubleScanner.NUMBER);
+        if (found) {
+            assertEquals(string, Double.doubleToLongBits(value), Double.doubleToLongBits(scanner.value()));
+        }
+
+        return found;
+    }
+}
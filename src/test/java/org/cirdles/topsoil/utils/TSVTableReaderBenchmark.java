@@ -0,0 +1,111 @@
+/*
+ * Copyright 2014 CIRDLES.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cirdles.topsoil.utils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.cirdles.topsoil.table.Field;
+import org.cirdles.topsoil.table.Record;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures how the rows read per second scale with the parallelism of a {@link TSVTableReader}. Run it from the test
+ * classpath with <code>main</code>; it isn't part of the unit tests.
+ *
+ * @author John Zeringue <john.joseph.zeringue@gmail.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class TSVTableReaderBenchmark {
+
+    private static final int ROWS = 1_000_000;
+
+    @Param({"1", "2", "4", "8", "16", "32"})
+    public int threads;
+
+    private Path table;
+
+    @Setup(Level.Trial)
+    public void writeTable() throws IOException {
+        table = Files.createTempFile("topsoil-benchmark", ".tsv");
+
+        try (BufferedWriter writer = Files.newBufferedWriter(table, Charset.defaultCharset())) {
+            writer.write("Label\tx\t2sigma x\ty\t2sigma y\trho\n");
+
+            for (int i = 0; i < ROWS; i++) {
+                writer.write("sample " + i + "\t" + (i * 0.0173) + "\t" + (i % 97 * 0.01) + "\t"
+                        + (i * 0.00031) + "\t" + (i % 89 * 0.001) + "\t" + (i % 10 * 0.1) + "\n");
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteTable() throws IOException {
+        Files.deleteIfExists(table);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public int read() throws IOException {
+        RowCounter counter = new RowCounter();
+        new TSVTableReader(true, threads).read(table, counter);
+
+        return counter.rows;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(TSVTableReaderBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    private static class RowCounter implements TableReadListener<Record> {
+
+        int rows;
+
+        @Override
+        public void fieldsRead(List<Field<?>> fields) {
+        }
+
+        @Override
+        public void rowsRead(List<Record> rows) {
+            this.rows += rows.size();
+        }
+    }
+}
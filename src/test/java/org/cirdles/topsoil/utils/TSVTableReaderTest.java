@@ -15,9 +15,28 @@
  */
 package org.cirdles.topsoil.utils;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+import javafx.collections.ListChangeListener;
 import javafx.scene.control.TableView;
+import org.cirdles.topsoil.table.Field;
+import org.cirdles.topsoil.table.NumberField;
 import org.cirdles.topsoil.table.Record;
+import org.cirdles.topsoil.table.RecordStore;
+import org.cirdles.topsoil.table.TextField;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import static org.junit.Assert.*;
 
 /**
@@ -25,6 +44,9 @@ import static org.junit.Assert.*;
  * @author zeringue
  */
 public class TSVTableReaderTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
     
     public TSVTableReaderTest() {
     }
@@ -53,5 +75,373 @@ public class TSVTableReaderTest {
         assertEquals("dest should have one row", 1, dest.getItems().size());
         assertEquals("dest should have a three at the end of the first row", 3., dest.getColumns().get(2).getCellData(0));
     }
-    
+
+    /**
+     * Test that reading into a table replaces its rows with a single change, however many rows there are.
+     */
+    @Test
+    public void testReadReplacesItemsInOneChange() {
+        StringBuilder src = new StringBuilder("x\ty\n");
+        for (int i = 0; i < 10000; i++) {
+            src.append(i).append('\t').append(-i).append('\n');
+        }
+
+        TableView<Record> dest = new TableView<>();
+        dest.getItems().add(new Record());
+
+        int[] changes = new int[1];
+        dest.getItems().addListener((ListChangeListener.Change<? extends Record> change) -> changes[0]++);
+
+        new TSVTableReader(true).read(src.toString(), dest);
+
+        assertEquals("the items should change once", 1, changes[0]);
+        assertEquals(10000, dest.getItems().size());
+        assertEquals(2, dest.getColumns().size());
+    }
+
+    /**
+     * Test that a document is read as a stream: rows are reported in bounded batches while most of the document is
+     * still unread, so the whole document is never held in memory. The document is generated as it is read rather than
+     * written to disk.
+     */
+    @Test
+    public void testReadStreamsLargeDocument() throws IOException {
+        final int rowCount = TSVTableReader.BATCH_SIZE * 25;
+
+        GeneratingReader src = new GeneratingReader(
+                "207Pb*/235U\t2sigma (%)\t206Pb*/238U\t2sigma (%)\tcorr coef\n",
+                i -> "29.165688743\t1.519417676\t0.712165893\t1.395116767\t" + i + "\n",
+                rowCount);
+
+        long[] rowsRead = new long[1];
+        double[] lastValue = new double[1];
+        long[] linesGeneratedAtFirstBatch = {-1};
+
+        new TSVTableReader(true).read(src, new TableReadListener<Record>() {
+
+            private Field<Number> lastField;
+
+            @Override
+            public void fieldsRead(List<Field<?>> fields) {
+                assertEquals("there should be five fields", 5, fields.size());
+                assertTrue("the last field should be numeric", fields.get(4) instanceof NumberField);
+                lastField = (Field<Number>) fields.get(4);
+            }
+
+            @Override
+            public void rowsRead(List<Record> rows) {
+                assertTrue("batches should be bounded", rows.size() <= TSVTableReader.BATCH_SIZE);
+
+                if (linesGeneratedAtFirstBatch[0] < 0) {
+                    linesGeneratedAtFirstBatch[0] = src.lines;
+                }
+
+                rowsRead[0] += rows.size();
+                lastValue[0] = rows.get(rows.size() - 1).getValue(lastField).doubleValue();
+            }
+        });
+
+        assertEquals("every row should be read", rowCount, rowsRead[0]);
+        assertEquals("rows should be read in order", rowCount - 1, lastValue[0], 0);
+        assertTrue("rows should be reported before the document has been read",
+                   linesGeneratedAtFirstBatch[0] < rowCount / 10);
+    }
+
+    /**
+     * Test that memory-mapped reads agree with streaming reads, including when lines straddle mapping windows.
+     */
+    @Test
+    public void testMappedReadMatchesStreamingRead() throws IOException {
+        String src = "name\tx\t\"sigma\"\r\n"
+                + "a\t1.5\t0.25\r\n"
+                + "\"b\tc\"\t-2e3\t\n"
+                + "\n"
+                + "\"say \"\"hi\"\"\"\t3\tNaN\n"
+                + "short\t4\n"
+                + "last\t12345678901234567890\t.5";
+
+        Path path = temporaryFolder.newFile("mapped.tsv").toPath();
+        Files.write(path, src.getBytes(Charset.defaultCharset()));
+
+        CollectingListener streamed = new CollectingListener();
+        new TSVTableReader(true).read(new StringReader(src), streamed);
+
+        for (int windowSize : new int[]{MappedTSVReader.DEFAULT_WINDOW_SIZE, 64, 32}) {
+            CollectingListener mapped = new CollectingListener();
+            new MappedTSVReader(true, Charset.defaultCharset(), windowSize).read(path, mapped);
+
+            assertEquals(3, mapped.fields.size());
+            assertEquals("sigma", mapped.fields.get(2).getName());
+            assertTrue(mapped.fields.get(0) instanceof TextField);
+            assertTrue(mapped.fields.get(1) instanceof NumberField);
+            assertEquals("blank lines should be empty rows", 6, mapped.rows.size());
+
+            assertEquals(streamed.rows.size(), mapped.rows.size());
+            for (int i = 0; i < streamed.rows.size(); i++) {
+                for (int j = 0; j < 3; j++) {
+                    assertEquals("cell " + i + ", " + j,
+                                 streamed.rows.get(i).getValue(streamed.fields.get(j)),
+                                 mapped.rows.get(i).getValue(mapped.fields.get(j)));
+                }
+            }
+        }
+    }
+
+    /**
+     * Test that every way of reading a document turns a blank line into an empty row, as opencsv does, so that a row
+     * written with a single empty cell survives being read back.
+     */
+    @Test
+    public void testReadKeepsBlankLines() throws IOException {
+        String src = "x\ty\n1\t2\n\n3\t4\n";
+
+        Path path = temporaryFolder.newFile("blank.tsv").toPath();
+        Files.write(path, src.getBytes(Charset.defaultCharset()));
+
+        CollectingListener streamed = new CollectingListener();
+        new TSVTableReader(true).read(new StringReader(src), streamed);
+
+        CollectingListener mapped = new CollectingListener();
+        new MappedTSVReader(true, Charset.defaultCharset(), 8).read(path, mapped);
+
+        CollectingListener parallel = new CollectingListener();
+        new MappedTSVReader(true, Charset.defaultCharset(), MappedTSVReader.DEFAULT_WINDOW_SIZE, 4)
+                .read(path, parallel);
+
+        for (CollectingListener listener : new CollectingListener[]{streamed, mapped, parallel}) {
+            assertEquals(3, listener.rows.size());
+            assertEquals(2., listener.rows.get(0).getValue(listener.fields.get(1)));
+            assertNull(listener.rows.get(1).getValue(listener.fields.get(0)));
+            assertNull(listener.rows.get(1).getValue(listener.fields.get(1)));
+            assertEquals(3., listener.rows.get(2).getValue(listener.fields.get(0)));
+        }
+    }
+
+    /**
+     * Test that no reader writes to the store behind a batch once the batch has been reported, so that the rows can be
+     * handed to another thread while the read carries on.
+     */
+    @Test
+    public void testReadLeavesReportedBatchesAlone() throws IOException {
+        Path path = temporaryFolder.newFile("batches.tsv").toPath();
+        StringBuilder src = new StringBuilder("x\ty\n");
+        for (int i = 0; i < TSVTableReader.BATCH_SIZE * 20; i++) {
+            src.append(i).append('\t').append(-i).append('\n');
+        }
+
+        Files.write(path, src.toString().getBytes(Charset.defaultCharset()));
+
+        BatchListener streamed = new BatchListener();
+        new TSVTableReader(true).read(new StringReader(src.toString()), streamed);
+
+        BatchListener mapped = new BatchListener();
+        new MappedTSVReader(true, Charset.defaultCharset(), 1 << 16).read(path, mapped);
+
+        BatchListener parallel = new BatchListener();
+        new MappedTSVReader(true, Charset.defaultCharset(), MappedTSVReader.DEFAULT_WINDOW_SIZE, 4)
+                .read(path, parallel);
+
+        for (BatchListener listener : new BatchListener[]{streamed, mapped, parallel}) {
+            assertEquals(TSVTableReader.BATCH_SIZE * 20, listener.rows.size());
+
+            listener.storeSizes.forEach((store, size) -> {
+                assertEquals("a reported store shouldn't grow", (int) size, store.size());
+            });
+
+            for (int i = 0; i < listener.rows.size(); i++) {
+                assertEquals("rows should be read in order",
+                             (double) i, listener.rows.get(i).getValue(listener.fields.get(0)));
+            }
+        }
+    }
+
+    /**
+     * Test that parallel reads produce the same rows in the same order as sequential reads, both when the file can be
+     * split freely and when quoted newlines force the reader to fall back to a sequential read.
+     */
+    @Test
+    public void testParallelReadMatchesSequentialRead() throws IOException {
+        for (boolean quotedNewlines : new boolean[]{false, true}) {
+            Path path = temporaryFolder.newFile("parallel" + quotedNewlines + ".tsv").toPath();
+            try (BufferedWriter writer = Files.newBufferedWriter(path, Charset.defaultCharset())) {
+                writer.write("label\tx\ty\n");
+                for (int i = 0; i < 50000; i++) {
+                    String label = quotedNewlines && i % 1000 == 0 ? "\"row\n" + i + "\"" : "row " + i;
+                    writer.write(label + "\t" + i * 0.001 + "\t" + (i % 7 == 0 ? "" : Integer.toString(-i)) + "\n");
+                }
+            }
+
+            CollectingListener sequential = new CollectingListener();
+            new TSVTableReader(true).read(path, sequential);
+
+            for (int windowSize : new int[]{MappedTSVReader.DEFAULT_WINDOW_SIZE, 1 << 18}) {
+                CollectingListener parallel = new CollectingListener();
+                new MappedTSVReader(true, Charset.defaultCharset(), windowSize, 4).read(path, parallel);
+
+                assertEquals(50000, parallel.rows.size());
+                for (int i = 0; i < sequential.rows.size(); i++) {
+                    for (int j = 0; j < 3; j++) {
+                        assertEquals("cell " + i + ", " + j,
+                                     sequential.rows.get(i).getValue(sequential.fields.get(j)),
+                                     parallel.rows.get(i).getValue(parallel.fields.get(j)));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Test that column types are decided from several rows, so that one odd cell doesn't decide a column's type.
+     */
+    @Test
+    public void testReadInfersTypesFromSeveralRows() throws IOException {
+        String src = "name\tx\tid\n"
+                + "a\t-\t1\n"
+                + "b\t1.5\tfoo\n"
+                + "c\tNaN\tbar\n"
+                + "d\t\tbaz\n"
+                + "e\t2\tqux\n";
+
+        Path path = temporaryFolder.newFile("inferred.tsv").toPath();
+        Files.write(path, src.getBytes(Charset.defaultCharset()));
+
+        CollectingListener streamed = new CollectingListener();
+        new TSVTableReader(true).read(new StringReader(src), streamed);
+
+        CollectingListener mapped = new CollectingListener();
+        new MappedTSVReader(true, Charset.defaultCharset(), 16).read(path, mapped);
+
+        for (CollectingListener listener : new CollectingListener[]{streamed, mapped}) {
+            assertTrue(listener.fields.get(0) instanceof TextField);
+            assertTrue("a placeholder shouldn't make x text", listener.fields.get(1) instanceof NumberField);
+            assertTrue("one number shouldn't make id numeric", listener.fields.get(2) instanceof TextField);
+
+            assertEquals(5, listener.rows.size());
+            assertNull(listener.rows.get(0).getValue(listener.fields.get(1)));
+            assertEquals(1.5, listener.rows.get(1).getValue(listener.fields.get(1)));
+            assertTrue(Double.isNaN(((Number) listener.rows.get(2).getValue(listener.fields.get(1))).doubleValue()));
+            assertNull(listener.rows.get(3).getValue(listener.fields.get(1)));
+            assertEquals("1", listener.rows.get(0).getValue(listener.fields.get(2)));
+        }
+    }
+
+    /**
+     * Test that both readers report how far they have got, ending at the size of the source.
+     */
+    @Test
+    public void testReadReportsPosition() throws IOException {
+        StringBuilder src = new StringBuilder("x\ty\n");
+        for (int i = 0; i < 10000; i++) {
+            src.append(i).append('\t').append(-i).append('\n');
+        }
+
+        Path path = temporaryFolder.newFile("position.tsv").toPath();
+        Files.write(path, src.toString().getBytes(Charset.defaultCharset()));
+
+        PositionListener streamed = new PositionListener();
+        new TSVTableReader(true).read(new StringReader(src.toString()), streamed);
+        assertTrue("progress should be reported along the way", streamed.reports > 1);
+        assertEquals(src.length(), streamed.position);
+
+        PositionListener mapped = new PositionListener();
+        new TSVTableReader(true).read(path, mapped);
+        assertTrue("progress should be reported along the way", mapped.reports > 1);
+        assertEquals(Files.size(path), mapped.position);
+    }
+
+    /**
+     * Generates a document a line at a time as it is read.
+     */
+    private static class GeneratingReader extends Reader {
+
+        private final IntFunction<String> row;
+        private final int rowCount;
+
+        private String line;
+        private int offset;
+
+        // the number of rows generated so far
+        private int lines;
+
+        GeneratingReader(String header, IntFunction<String> row, int rowCount) {
+            this.row = row;
+            this.rowCount = rowCount;
+            this.line = header;
+        }
+
+        @Override
+        public int read(char[] buffer, int off, int len) {
+            if (offset == line.length()) {
+                if (lines == rowCount) {
+                    return -1;
+                }
+
+                line = row.apply(lines++);
+                offset = 0;
+            }
+
+            int count = Math.min(len, line.length() - offset);
+            line.getChars(offset, offset + count, buffer, off);
+            offset += count;
+
+            return count;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static class BatchListener implements TableReadListener<Record> {
+
+        private List<Field<?>> fields;
+        private final List<Record> rows = new ArrayList<>();
+
+        // the size of each store behind the rows when its first batch was reported
+        private final Map<RecordStore, Integer> storeSizes = new IdentityHashMap<>();
+
+        @Override
+        public void fieldsRead(List<Field<?>> fields) {
+            this.fields = fields;
+        }
+
+        @Override
+        public void rowsRead(List<Record> rows) {
+            this.rows.addAll(rows);
+
+            for (Record row : rows) {
+                storeSizes.putIfAbsent(row.getStore(), row.getStore().size());
+            }
+        }
+    }
+
+    private static class PositionListener extends CollectingListener {
+
+        private long position;
+        private int reports;
+
+        @Override
+        public void positionRead(long position) {
+            assertTrue("the position should never go back", position >= this.position);
+            this.position = position;
+            reports++;
+        }
+    }
+
+    private static class CollectingListener implements TableReadListener<Record> {
+
+        private List<Field<?>> fields;
+        private final List<Record> rows = new ArrayList<>();
+
+        @Override
+        public void fieldsRead(List<Field<?>> fields) {
+            this.fields = fields;
+        }
+
+        @Override
+        public void rowsRead(List<Record> rows) {
+            this.rows.addAll(rows);
+        }
+    }
+
 }
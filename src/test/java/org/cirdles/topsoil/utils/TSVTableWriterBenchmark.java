@@ -0,0 +1,127 @@
+/*
+ * Copyright 2014 CIRDLES.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cirdles.topsoil.utils;
+
+import au.com.bytecode.opencsv.CSVWriter;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.cirdles.topsoil.table.Field;
+import org.cirdles.topsoil.table.NumberField;
+import org.cirdles.topsoil.table.Record;
+import org.cirdles.topsoil.table.RecordStore;
+import org.cirdles.topsoil.table.TextField;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the rows written per second by {@link TSVTableWriter} with the way it used to write tables, through
+ * opencsv's <code>CSVWriter</code> with a <code>String</code> array per row. Run it from the test classpath with
+ * <code>main</code>; it isn't part of the unit tests.
+ *
+ * @author John Zeringue <john.joseph.zeringue@gmail.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class TSVTableWriterBenchmark {
+
+    private static final int ROWS = 1_000_000;
+
+    private List<Field<?>> fields;
+    private List<Record> rows;
+    private Path table;
+
+    @Setup(Level.Trial)
+    public void createRows() throws IOException {
+        fields = Arrays.<Field<?>>asList(new TextField("Label"), new NumberField("x"), new NumberField("2sigma x"),
+                                         new NumberField("y"), new NumberField("2sigma y"), new NumberField("rho"));
+
+        RecordStore store = new RecordStore(fields);
+        rows = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            Record row = store.newRecord();
+            row.setValue((Field<String>) fields.get(0), "sample " + i);
+            row.setDouble((Field<Number>) fields.get(1), i * 0.0173);
+            row.setDouble((Field<Number>) fields.get(2), i % 97 * 0.01);
+            row.setDouble((Field<Number>) fields.get(3), i * 0.00031);
+            row.setDouble((Field<Number>) fields.get(4), i % 89 * 0.001);
+            row.setDouble((Field<Number>) fields.get(5), i % 10 * 0.1);
+            rows.add(row);
+        }
+
+        table = Files.createTempFile("topsoil-benchmark", ".tsv");
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteTable() throws IOException {
+        Files.deleteIfExists(table);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void write() throws IOException {
+        new TSVTableWriter(true, 0).write(fields, rows, table);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void writeWithCSVWriter() throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(table, Charset.defaultCharset());
+             CSVWriter tsvWriter = new CSVWriter(writer, '\t')) {
+            String[] line = new String[fields.size()];
+
+            for (int j = 0; j < fields.size(); j++) {
+                line[j] = fields.get(j).getName();
+            }
+            tsvWriter.writeNext(line);
+
+            for (Record row : rows) {
+                for (int j = 0; j < fields.size(); j++) {
+                    line[j] = String.valueOf(row.getValue(fields.get(j)));
+                }
+                tsvWriter.writeNext(line);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(TSVTableWriterBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2014 CIRDLES.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cirdles.topsoil.utils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.cirdles.topsoil.table.Field;
+import org.cirdles.topsoil.table.NumberField;
+import org.cirdles.topsoil.table.Record;
+import org.cirdles.topsoil.table.RecordStore;
+import org.cirdles.topsoil.table.TextField;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author John Zeringue <john.joseph.zeringue@gmail.com>
+ */
+public class TSVTableWriterTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Test that appending rows to a file gives the same file as writing all of the rows, and that no temporary files
+     * are left behind.
+     */
+    @Test
+    public void testAppendMatchesWrite() throws IOException {
+        TextField name = new TextField("name");
+        NumberField x = new NumberField("x");
+        List<Field<?>> fields = Arrays.<Field<?>>asList(name, x);
+
+        RecordStore store = new RecordStore(fields);
+        List<Record> rows = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Record row = store.newRecord();
+            row.setValue(name, "row " + i);
+            row.setDouble(x, i * 0.5);
+            rows.add(row);
+        }
+
+        TSVTableWriter tableWriter = new TSVTableWriter(true, 3);
+
+        Path written = temporaryFolder.getRoot().toPath().resolve("written.tsv");
+        tableWriter.write(fields, rows, written);
+
+        Path appended = temporaryFolder.getRoot().toPath().resolve("appended.tsv");
+        tableWriter.write(fields, rows.subList(0, 40), appended);
+        tableWriter.append(fields, rows, 40, appended);
+
+        assertEquals(Files.readAllLines(written), Files.readAllLines(appended));
+        assertEquals("there should be a header and a line per row", 101, Files.readAllLines(written).size());
+        assertEquals("missing columns should be filled", "name\tx\tfill-1", Files.readAllLines(written).get(0));
+        assertEquals(2, temporaryFolder.getRoot().list().length);
+    }
+
+    /**
+     * Test that updating a file with edited and added rows gives the same file as writing the whole table again, for
+     * edits at either end of the file, in the middle and to an empty cell.
+     */
+    @Test
+    public void testUpdateMatchesWrite() throws IOException {
+        NumberField x = new NumberField("x");
+        NumberField y = new NumberField("y");
+        List<Field<?>> fields = Arrays.<Field<?>>asList(x, y);
+
+        RecordStore store = new RecordStore(fields);
+        List<Record> rows = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            Record row = store.newRecord();
+            row.setDouble(x, i * 0.5);
+            if (i % 3 != 0) {
+                row.setDouble(y, -i);
+            }
+            rows.add(row);
+        }
+
+        TSVTableWriter tableWriter = new TSVTableWriter(true, 3);
+        Path updated = temporaryFolder.getRoot().toPath().resolve("updated.tsv");
+        tableWriter.write(fields, rows.subList(0, 150), updated);
+
+        int[] edited = {0, 64, 75, 149};
+        List<Record> editedRows = new ArrayList<>();
+        for (int row : edited) {
+            rows.get(row).setDouble(x, row * 1e10);
+            rows.get(row).setValue(y, row == 75 ? null : (Number) 42.);
+            editedRows.add(rows.get(row));
+        }
+
+        tableWriter.update(fields, edited, editedRows, rows.subList(150, 200), updated);
+
+        Path written = temporaryFolder.getRoot().toPath().resolve("written.tsv");
+        tableWriter.write(fields, rows, written);
+
+        assertEquals(Files.readAllLines(written), Files.readAllLines(updated));
+        assertEquals(2, temporaryFolder.getRoot().list().length);
+    }
+
+    @Test(expected = IOException.class)
+    public void testUpdateRejectsRowsPastTheEnd() throws IOException {
+        NumberField x = new NumberField("x");
+        List<Field<?>> fields = Arrays.<Field<?>>asList(x);
+        List<Record> rows = Arrays.asList(new RecordStore(fields).newRecord());
+
+        TSVTableWriter tableWriter = new TSVTableWriter(true, 0);
+        Path path = temporaryFolder.getRoot().toPath().resolve("short.tsv");
+        tableWriter.write(fields, rows, path);
+
+        tableWriter.update(fields, new int[]{1}, rows, Collections.emptyList(), path);
+    }
+
+    /**
+     * Test that what is written reads back the same, including cells that need quoting and empty cells.
+     */
+    @Test
+    public void testWriteRoundTrips() throws IOException {
+        TextField name = new TextField("name");
+        NumberField x = new NumberField("x");
+        NumberField y = new NumberField("y");
+        List<Field<?>> fields = Arrays.<Field<?>>asList(name, x, y);
+
+        String[] names = {"plain", "tab\there", "say \"hi\"", "two\nlines", null};
+        RecordStore store = new RecordStore(fields);
+        List<Record> rows = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            Record row = store.newRecord();
+            row.setValue(name, names[i % names.length]);
+            row.setDouble(x, i * 0.1);
+            if (i % 3 != 0) {
+                row.setDouble(y, -1e-300 * i);
+            }
+            rows.add(row);
+        }
+
+        Path path = temporaryFolder.getRoot().toPath().resolve("round-trip.tsv");
+        new TSVTableWriter(true, 0).write(fields, rows, path);
+
+        List<Record> read = new ArrayList<>();
+        List<List<Field<?>>> readFields = new ArrayList<>();
+        new TSVTableReader(true).read(path, new TableReadListener<Record>() {
+
+            @Override
+            public void fieldsRead(List<Field<?>> fields) {
+                readFields.add(fields);
+            }
+
+            @Override
+            public void rowsRead(List<Record> rows) {
+                read.addAll(rows);
+            }
+        });
+
+        assertEquals(rows.size(), read.size());
+        for (int i = 0; i < rows.size(); i++) {
+            for (int j = 0; j < fields.size(); j++) {
+                Object expected = rows.get(i).getValue(fields.get(j));
+                if (expected == null && j == 0) {
+                    // empty text reads back as an empty string
+                    expected = "";
+                }
+
+                assertEquals("cell " + i + ", " + j, expected, read.get(i).getValue(readFields.get(0).get(j)));
+            }
+        }
+    }
+}
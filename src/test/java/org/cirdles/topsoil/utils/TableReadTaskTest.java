@@ -0,0 +1,233 @@
+/*
+ * Copyright 2014 CIRDLES.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cirdles.topsoil.utils;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javafx.application.Platform;
+import javafx.concurrent.Worker;
+import javafx.embed.swing.JFXPanel;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import org.cirdles.topsoil.table.Field;
+import org.cirdles.topsoil.table.NumberField;
+import org.cirdles.topsoil.table.Record;
+import org.cirdles.topsoil.table.RecordTableColumn;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author John Zeringue <john.joseph.zeringue@gmail.com>
+ */
+public class TableReadTaskTest {
+
+    private static final int ROW_COUNT = TSVTableReader.BATCH_SIZE * 10 + 7;
+
+    private TableView<Record> dest;
+    private List<TableColumn<Record, ?>> previousColumns;
+    private List<Record> previousItems;
+
+    @BeforeClass
+    public static void startToolkit() {
+        // starts the JavaFX Application Thread
+        new JFXPanel();
+    }
+
+    @Before
+    public void setUp() throws InterruptedException {
+        NumberField previous = new NumberField("previous");
+        Record record = new Record();
+        record.setValue(previous, 42.);
+
+        runAndWait(() -> {
+            dest = new TableView<>();
+            dest.getColumns().add(new RecordTableColumn<>(previous));
+            dest.getItems().add(record);
+
+            previousColumns = new ArrayList<>(dest.getColumns());
+            previousItems = new ArrayList<>(dest.getItems());
+        });
+    }
+
+    /**
+     * Test that rows reach the table in the order they were read, however the batches are coalesced.
+     */
+    @Test
+    public void testRowsKeepTheirOrder() throws InterruptedException {
+        TableReadTask task = new TableReadTask(new TSVTableReader(true), document(), dest);
+        task.run();
+        assertEquals(Worker.State.SUCCEEDED, task.getState());
+        assertEquals((Integer) ROW_COUNT, task.getValue());
+
+        runAndWait(() -> {
+            assertEquals(2, dest.getColumns().size());
+            assertEquals(ROW_COUNT, dest.getItems().size());
+
+            for (int i = 0; i < ROW_COUNT; i++) {
+                assertEquals("rows should keep their order", (double) i, dest.getColumns().get(0).getCellData(i));
+            }
+        });
+    }
+
+    /**
+     * Test that cancelling an import puts back the table as it was, even once some rows have been shown.
+     */
+    @Test
+    public void testCancelRestoresTable() throws InterruptedException {
+        CountDownLatch firstBatchRead = new CountDownLatch(1);
+        CountDownLatch cancelled = new CountDownLatch(1);
+
+        TSVTableReader reader = new TSVTableReader(true) {
+
+            @Override
+            public void read(Reader src, TableReadListener<Record> listener) throws IOException {
+                super.read(src, new ForwardingListener(listener) {
+
+                    @Override
+                    public void rowsRead(List<Record> rows) {
+                        super.rowsRead(rows);
+
+                        if (firstBatchRead.getCount() > 0) {
+                            firstBatchRead.countDown();
+                            await(cancelled);
+                        }
+                    }
+                });
+            }
+        };
+
+        TableReadTask task = new TableReadTask(reader, document(), dest);
+        Thread thread = new Thread(task);
+        thread.start();
+
+        assertTrue(firstBatchRead.await(10, TimeUnit.SECONDS));
+        runAndWait(() -> {
+            assertFalse("the import should have replaced the table", dest.getItems().equals(previousItems));
+            task.cancel();
+        });
+
+        cancelled.countDown();
+        thread.join(10000);
+        runAndWait(() -> {
+            assertEquals(Worker.State.CANCELLED, task.getState());
+            assertEquals(previousColumns, dest.getColumns());
+            assertEquals(previousItems, dest.getItems());
+        });
+    }
+
+    /**
+     * Test that a failed import puts back the table as it was.
+     */
+    @Test
+    public void testFailureRestoresTable() throws InterruptedException {
+        TSVTableReader reader = new TSVTableReader(true) {
+
+            @Override
+            public void read(Reader src, TableReadListener<Record> listener) throws IOException {
+                super.read(src, new ForwardingListener(listener) {
+
+                    @Override
+                    public void rowsRead(List<Record> rows) {
+                        super.rowsRead(rows);
+                        throw new IllegalStateException("malformed");
+                    }
+                });
+            }
+        };
+
+        TableReadTask task = new TableReadTask(reader, document(), dest);
+        task.run();
+        runAndWait(() -> {
+            assertEquals(Worker.State.FAILED, task.getState());
+            assertEquals(previousColumns, dest.getColumns());
+            assertEquals(previousItems, dest.getItems());
+        });
+    }
+
+    private static String document() {
+        StringBuilder src = new StringBuilder("x\ty\n");
+        for (int i = 0; i < ROW_COUNT; i++) {
+            src.append(i).append('\t').append(-i).append('\n');
+        }
+
+        return src.toString();
+    }
+
+    /**
+     * Runs something on the JavaFX Application Thread and waits for it, along with everything queued before it.
+     */
+    private static void runAndWait(Runnable runnable) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        Throwable[] thrown = new Throwable[1];
+
+        Platform.runLater(() -> {
+            try {
+                runnable.run();
+            } catch (Throwable ex) {
+                thrown[0] = ex;
+            } finally {
+                done.countDown();
+            }
+        });
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+
+        if (thrown[0] instanceof Error) {
+            throw (Error) thrown[0];
+        } else if (thrown[0] != null) {
+            throw new RuntimeException(thrown[0]);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class ForwardingListener implements TableReadListener<Record> {
+
+        private final TableReadListener<Record> listener;
+
+        ForwardingListener(TableReadListener<Record> listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void fieldsRead(List<Field<?>> fields) {
+            listener.fieldsRead(fields);
+        }
+
+        @Override
+        public void rowsRead(List<Record> rows) {
+            listener.rowsRead(rows);
+        }
+
+        @Override
+        public void positionRead(long position) {
+            listener.positionRead(position);
+        }
+    }
+}